@@ -0,0 +1,334 @@
+package pacovfor$jbc.analysis;
+
+import pacovfor$jbc.utils.Tuple;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Ball-Larus numbering ("Efficient path profiling", 1996) of the acyclic paths of a method cfg.
+ * <p>
+ * Back edges (found by a DFS from the root) are removed, and every back edge u -> v is replaced by
+ * two dummy edges: ENTRY -> v (a path starting at v after the back edge) and u -> EXIT (a path ending
+ * with the back edge). Every node without successors gets an edge to EXIT, and ENTRY has an edge to the
+ * root. Every node that can throw before its probe runs (see ProbePosition#canThrowBeforeProbe) gets an
+ * exceptional edge to EXIT, a path that ends with an exception thrown in the node, which is its first edge
+ * and thus has value 0. Each edge of the resulting DAG gets a value such that the sum of the values along a
+ * path from ENTRY to EXIT is a unique number in 0 .. getNumberOfPaths() - 1.
+ * <p>
+ * Instrumented code keeps the path number in a register: it starts at getEntryValue(), every DAG edge
+ * adds its value, a back edge u -> v counts "register + value of u -> EXIT" and resets the register to
+ * the value of ENTRY -> v, and a node without successors counts "register + value of node -> EXIT".
+ * An exception that leaves the method counts the register as it is, the path that ends with the
+ * exceptional edge of the node the exception was thrown in.
+ */
+public class BallLarusNumbering {
+
+    public static final int ENTRY = -2;
+    public static final int EXIT = -1;
+
+    public enum EdgeKind {
+        // ENTRY -> root
+        METHOD_ENTRY,
+        // edge of the cfg that is not a back edge
+        CFG_EDGE,
+        // ENTRY -> v of back edge u -> v
+        BACK_EDGE_START,
+        // u -> EXIT of back edge u -> v
+        BACK_EDGE_END,
+        // node without successors -> EXIT
+        METHOD_EXIT,
+        // node that can throw -> EXIT
+        EXCEPTIONAL_EXIT
+    }
+
+    public static class DagEdge {
+        private final EdgeKind kind;
+        private final int source;
+        private final int destination;
+        private final int backEdgeSource;
+        private final int backEdgeDestination;
+        private int value;
+
+        private DagEdge(EdgeKind kind, int source, int destination, int backEdgeSource, int backEdgeDestination) {
+            this.kind = kind;
+            this.source = source;
+            this.destination = destination;
+            this.backEdgeSource = backEdgeSource;
+            this.backEdgeDestination = backEdgeDestination;
+        }
+
+        public EdgeKind getKind() {
+            return kind;
+        }
+
+        public int getValue() {
+            return value;
+        }
+    }
+
+    private final int root;
+    private final Map<Integer, List<DagEdge>> outgoing; // sorted by value
+    private long numberOfPaths;
+
+    private BallLarusNumbering(int root) {
+        this.root = root;
+        this.outgoing = new HashMap<>();
+    }
+
+    private void addDagEdge(DagEdge edge) {
+        outgoing.computeIfAbsent(edge.source, source -> new ArrayList<>()).add(edge);
+    }
+
+    /**
+     * Numbers the acyclic paths of the cfg given by its root, edges (source id, destination id) and the
+     * nodes that can throw. Returns null if the number of paths does not fit into an int.
+     */
+    public static BallLarusNumbering number(int root, List<Tuple<Integer, Integer>> edges,
+                                            Set<Integer> throwingNodes) {
+        Map<Integer, List<Integer>> successors = new HashMap<>();
+        for (Tuple<Integer, Integer> edge : edges) {
+            successors.computeIfAbsent(edge.getT1(), source -> new ArrayList<>()).add(edge.getT2());
+        }
+
+        // find back edges and nodes reachable from the root with an iterative DFS
+        Set<Tuple<Integer, Integer>> backEdges = new HashSet<>();
+        Set<Integer> visited = new HashSet<>();
+        Set<Integer> onStack = new HashSet<>();
+        Deque<Tuple<Integer, Iterator<Integer>>> stack = new ArrayDeque<>();
+        visited.add(root);
+        onStack.add(root);
+        stack.push(new Tuple<>(root, successors.getOrDefault(root, Collections.emptyList()).iterator()));
+        while (!stack.isEmpty()) {
+            Tuple<Integer, Iterator<Integer>> top = stack.peek();
+            if (top.getT2().hasNext()) {
+                int successor = top.getT2().next();
+                if (onStack.contains(successor)) {
+                    backEdges.add(new Tuple<>(top.getT1(), successor));
+                } else if (visited.add(successor)) {
+                    onStack.add(successor);
+                    stack.push(new Tuple<>(successor,
+                            successors.getOrDefault(successor, Collections.emptyList()).iterator()));
+                }
+            } else {
+                onStack.remove(top.getT1());
+                stack.pop();
+            }
+        }
+
+        BallLarusNumbering numbering = new BallLarusNumbering(root);
+        numbering.addDagEdge(new DagEdge(EdgeKind.METHOD_ENTRY, ENTRY, root, EXIT, EXIT));
+        for (int node : visited) {
+            // the first edge of a node has value 0
+            if (throwingNodes.contains(node)) {
+                numbering.addDagEdge(new DagEdge(EdgeKind.EXCEPTIONAL_EXIT, node, EXIT, EXIT, EXIT));
+            }
+
+            List<Integer> nodeSuccessors = successors.getOrDefault(node, Collections.emptyList());
+            if (nodeSuccessors.isEmpty()) {
+                numbering.addDagEdge(new DagEdge(EdgeKind.METHOD_EXIT, node, EXIT, EXIT, EXIT));
+            }
+
+            for (int successor : nodeSuccessors) {
+                if (backEdges.contains(new Tuple<>(node, successor))) {
+                    numbering.addDagEdge(new DagEdge(EdgeKind.BACK_EDGE_END, node, EXIT, node, successor));
+                    numbering.addDagEdge(new DagEdge(EdgeKind.BACK_EDGE_START, ENTRY, successor, node, successor));
+                } else {
+                    numbering.addDagEdge(new DagEdge(EdgeKind.CFG_EDGE, node, successor, EXIT, EXIT));
+                }
+            }
+        }
+
+        return numbering.assignValues() ? numbering : null;
+    }
+
+    /**
+     * Assigns edge values in reverse topological order of the DAG. Returns false on overflow.
+     */
+    private boolean assignValues() {
+        Map<Integer, Long> pathsFrom = new HashMap<>();
+        pathsFrom.put(EXIT, 1L);
+
+        // post order of the DAG from ENTRY
+        List<Integer> postOrder = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>();
+        Deque<Tuple<Integer, Iterator<DagEdge>>> stack = new ArrayDeque<>();
+        visited.add(ENTRY);
+        stack.push(new Tuple<>(ENTRY, outgoing.get(ENTRY).iterator()));
+        while (!stack.isEmpty()) {
+            Tuple<Integer, Iterator<DagEdge>> top = stack.peek();
+            if (top.getT2().hasNext()) {
+                int destination = top.getT2().next().destination;
+                if (destination != EXIT && visited.add(destination)) {
+                    stack.push(new Tuple<>(destination, outgoing.get(destination).iterator()));
+                }
+            } else {
+                postOrder.add(top.getT1());
+                stack.pop();
+            }
+        }
+
+        for (int node : postOrder) {
+            long paths = 0;
+            for (DagEdge edge : outgoing.get(node)) {
+                edge.value = (int) paths;
+                paths += pathsFrom.get(edge.destination);
+                if (paths > Integer.MAX_VALUE) {
+                    return false;
+                }
+            }
+            pathsFrom.put(node, paths);
+        }
+
+        this.numberOfPaths = pathsFrom.get(ENTRY);
+        return true;
+    }
+
+    public long getNumberOfPaths() {
+        return numberOfPaths;
+    }
+
+    /**
+     * Finds a DAG edge of kind. source and destination are the endpoints of the cfg edge for CFG_EDGE
+     * and of the back edge for BACK_EDGE_START and BACK_EDGE_END.
+     */
+    private DagEdge findEdge(EdgeKind kind, int source, int destination) {
+        int dagSource = kind == EdgeKind.BACK_EDGE_START || kind == EdgeKind.METHOD_ENTRY ? ENTRY : source;
+        for (DagEdge edge : outgoing.getOrDefault(dagSource, Collections.emptyList())) {
+            if (edge.kind != kind) {
+                continue;
+            }
+
+            boolean isBackEdgeKind = kind == EdgeKind.BACK_EDGE_START || kind == EdgeKind.BACK_EDGE_END;
+            if (isBackEdgeKind ? edge.backEdgeSource == source && edge.backEdgeDestination == destination :
+                    edge.destination == destination) {
+                return edge;
+            }
+        }
+
+        throw new IllegalArgumentException(kind + " edge (" + source + ", " + destination + ") does not exist");
+    }
+
+    public int getEntryValue() {
+        return findEdge(EdgeKind.METHOD_ENTRY, ENTRY, root).value;
+    }
+
+    public boolean isBackEdge(int source, int destination) {
+        return outgoing.getOrDefault(source, Collections.emptyList()).stream().
+                anyMatch(edge -> edge.kind == EdgeKind.BACK_EDGE_END && edge.backEdgeDestination == destination);
+    }
+
+    /**
+     * Returns the value added on the (non-back) cfg edge source -> destination.
+     */
+    public int getEdgeValue(int source, int destination) {
+        return findEdge(EdgeKind.CFG_EDGE, source, destination).value;
+    }
+
+    /**
+     * Returns the value added to the register before counting the path that ends with the back edge.
+     */
+    public int getBackEdgeEndValue(int source, int destination) {
+        return findEdge(EdgeKind.BACK_EDGE_END, source, destination).value;
+    }
+
+    /**
+     * Returns the value the register is reset to after the back edge.
+     */
+    public int getBackEdgeStartValue(int source, int destination) {
+        return findEdge(EdgeKind.BACK_EDGE_START, source, destination).value;
+    }
+
+    /**
+     * Returns the value added to the register before counting the path that ends at node (a node
+     * without successors).
+     */
+    public int getExitValue(int node) {
+        return findEdge(EdgeKind.METHOD_EXIT, node, EXIT).value;
+    }
+
+    /**
+     * Returns the sequence of node ids of path number pathId. A path that starts after a back edge
+     * begins with the source of that back edge, and a path that ends with a back edge ends with its
+     * destination, so that edges and edge-pairs across back edges are part of the decoded paths. A path
+     * that ends with an exception ends before the node that threw it, whose probe did not run.
+     */
+    public List<Integer> decode(int pathId) {
+        if (pathId < 0 || pathId >= numberOfPaths) {
+            throw new IllegalArgumentException("path id " + pathId + " does not exist");
+        }
+
+        List<Integer> path = new ArrayList<>();
+        int node = ENTRY;
+        long remaining = pathId;
+        while (node != EXIT) {
+            List<DagEdge> edges = outgoing.get(node);
+            DagEdge taken = edges.get(0);
+            for (DagEdge edge : edges) {
+                if (edge.value <= remaining) {
+                    taken = edge;
+                }
+            }
+            remaining -= taken.value;
+
+            switch (taken.kind) {
+                case METHOD_ENTRY:
+                    path.add(taken.destination);
+                    break;
+                case BACK_EDGE_START:
+                    path.add(taken.backEdgeSource);
+                    path.add(taken.destination);
+                    break;
+                case CFG_EDGE:
+                    path.add(taken.destination);
+                    break;
+                case BACK_EDGE_END:
+                    path.add(taken.backEdgeDestination);
+                    break;
+                case METHOD_EXIT:
+                    break;
+                case EXCEPTIONAL_EXIT:
+                    path.remove(path.size() - 1);
+                    break;
+            }
+            node = taken.destination;
+        }
+
+        return path;
+    }
+
+    /**
+     * Print the numbering with a pre-defined format that can be read by "readFrom".
+     */
+    public void printTo(PrintStream out) {
+        List<DagEdge> edges = new ArrayList<>();
+        outgoing.values().forEach(edges::addAll);
+
+        out.println(root);
+        out.println(numberOfPaths);
+        out.println(edges.size());
+        for (DagEdge edge : edges) {
+            out.printf("%s %d %d %d %d %d%n", edge.kind, edge.source, edge.destination, edge.value,
+                    edge.backEdgeSource, edge.backEdgeDestination);
+        }
+    }
+
+    public static BallLarusNumbering readFrom(BufferedReader br) throws IOException {
+        BallLarusNumbering numbering = new BallLarusNumbering(Integer.parseInt(br.readLine()));
+        numbering.numberOfPaths = Long.parseLong(br.readLine());
+
+        int numberOfEdges = Integer.parseInt(br.readLine());
+        for (int i = 0; i < numberOfEdges; i++) {
+            String[] fields = br.readLine().split(" ");
+            DagEdge edge = new DagEdge(EdgeKind.valueOf(fields[0]), Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2]), Integer.parseInt(fields[4]), Integer.parseInt(fields[5]));
+            edge.value = Integer.parseInt(fields[3]);
+            numbering.addDagEdge(edge);
+        }
+
+        numbering.outgoing.values().forEach(edges -> edges.sort(Comparator.comparingInt(DagEdge::getValue)));
+        return numbering;
+    }
+}
@@ -81,6 +81,7 @@ public class CfgBuilder {
             }
         }
 
+        simpleCfg.freeze();
         return simpleCfg;
     }
 
@@ -223,6 +224,7 @@ public class CfgBuilder {
             }
         }
 
+        basicBlockCfg.freeze();
         return basicBlockCfg;
     }
 
@@ -449,6 +451,7 @@ public class CfgBuilder {
             }
         });
 
+        uniqueProbePositionCfg.freeze();
         return uniqueProbePositionCfg;
     }
 
@@ -0,0 +1,563 @@
+package pacovfor$jbc.analysis;
+
+import pacovfor$jbc.analysis.graphtypes.ProbePositionCfg;
+import pacovfor$jbc.analysis.nodetypes.BasicBlock;
+import pacovfor$jbc.analysis.nodetypes.ProbePosition;
+import pacovfor$jbc.analysis.testrequirements.CoverageBits;
+import pacovfor$jbc.analysis.testrequirements.DefUseTR;
+import pacovfor$jbc.backend.asmadapters.InstructionAdapter;
+import pacovfor$jbc.backend.asmadapters.MethodAdapter;
+import pacovfor$jbc.graph.Edge;
+import pacovfor$jbc.graph.Node;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * Def-use pairs of the local variables of a method (all-defs and all-uses coverage).
+ * <p>
+ * The pairs are computed at instrumentation time with a bit-vector reaching-definitions worklist solver
+ * over the ProbePositionCfg (one bit per definition; parameters are defined at method entry). The
+ * instructions of a basic block belong to its exit probe position. An exceptional edge leaving a probe
+ * position also carries every definition of its basic block, since the exception can be thrown after any
+ * of them.
+ * <p>
+ * At runtime no extra probes are needed: the probe path of an execution is replayed keeping the
+ * active definition of each variable. A pair is covered when its use is executed while its definition is
+ * active. A basic block that is entered but not completed (an exception was thrown) is conservatively
+ * treated as a redefinition of every variable it defines, so its definitions are never reported as
+ * reaching a use.
+ * <p>
+ * The pairs are numbered in the order they are stored. The analysis only reads its tables when covering,
+ * so it can be shared by every method with the same cfg shape; coverage is kept per method in CoverageBits.
+ */
+public class DefUseAnalysis {
+
+    // probe position of the definitions of the parameters
+    private static final int METHOD_ENTRY = -1;
+    private static final int[] NONE = new int[0];
+
+    // active definition of every variable while a path is replayed (see cover), reused by the calls of a thread
+    private static final ThreadLocal<int[]> activeDefs = ThreadLocal.withInitial(() -> NONE);
+
+    private final int[] defVariables;
+    private final int[] defPositions;
+    private final boolean[] defDownwardExposed;
+    private final int[] useVariables;
+    private final int[] usePositions;
+    private final boolean[] useUpwardExposed;
+    private final List<int[]> pairs; // (def, use, 1 if def and use are in the same block else 0)
+    private final Map<Integer, int[]> killedOnAbruptExit; // entry-only probe position -> variables of its block
+    private final Map<Integer, Integer> exitOfEntry; // entry-only probe position -> exit probe position
+
+    // runtime data derived from the above (see createRequirements), indexed by probe position id, or by use
+    private int[][] upwardUsesAt;
+    private int[][] downwardDefsAt;
+    private int[][] localPairsAt;
+    private int[][] killedAt; // null for probe positions that are not entry-only
+    private int[] exitAt;
+    private int[][] reachingDefsOfUse; // sorted definitions that pair with an upward exposed use
+    private int[][] pairNumbersOfUse; // the number of the pair of every definition in reachingDefsOfUse
+    private int[] parameterDefs;
+    private int numberOfVariables;
+
+    private DefUseAnalysis(int[] defVariables, int[] defPositions, boolean[] defDownwardExposed,
+                           int[] useVariables, int[] usePositions, boolean[] useUpwardExposed, List<int[]> pairs,
+                           Map<Integer, int[]> killedOnAbruptExit, Map<Integer, Integer> exitOfEntry) {
+        this.defVariables = defVariables;
+        this.defPositions = defPositions;
+        this.defDownwardExposed = defDownwardExposed;
+        this.useVariables = useVariables;
+        this.usePositions = usePositions;
+        this.useUpwardExposed = useUpwardExposed;
+        this.pairs = pairs;
+        this.killedOnAbruptExit = killedOnAbruptExit;
+        this.exitOfEntry = exitOfEntry;
+    }
+
+    /**
+     * Computes the def-use pairs of the local variables of methodAdapter. Must be called before the
+     * method is instrumented.
+     */
+    public static DefUseAnalysis analyze(MethodAdapter methodAdapter, ProbePositionCfg pbCfg) {
+        List<Node<ProbePosition>> nodes = new ArrayList<>(pbCfg.getAllNodes());
+        nodes.sort(Comparator.comparingInt(node -> node.getData().getId()));
+        int n = nodes.size();
+        Map<Node<ProbePosition>, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            indexOf.put(nodes.get(i), i);
+        }
+
+        // number the definitions and uses: parameters first, then the instructions of every exit probe position
+        List<Integer> defVariables = new ArrayList<>();
+        List<Integer> defPositions = new ArrayList<>();
+        List<Integer> useVariables = new ArrayList<>();
+        List<Integer> usePositions = new ArrayList<>();
+        List<Boolean> useUpwardExposed = new ArrayList<>();
+        List<int[]> pairs = new ArrayList<>();
+
+        for (int parameter : methodAdapter.getParameterLocalVariables()) {
+            defVariables.add(parameter);
+            defPositions.add(METHOD_ENTRY);
+        }
+
+        // per probe position: the definitions generated at its end (the last definition of each variable),
+        // the variables it defines, and its upward exposed uses
+        List<Map<Integer, Integer>> lastDefs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            lastDefs.add(new HashMap<>());
+        }
+
+        Map<BasicBlock, ProbePosition> entryOnlyPositionOf = new HashMap<>();
+        for (Node<ProbePosition> node : nodes) {
+            if (node.getData().isEntry() && !node.getData().isExit()) {
+                entryOnlyPositionOf.put(node.getData().containingBasicBlock(), node.getData());
+            }
+        }
+
+        Map<Integer, int[]> killedOnAbruptExit = new HashMap<>();
+        Map<Integer, Integer> exitOfEntry = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ProbePosition probePosition = nodes.get(i).getData();
+            if (!probePosition.isExit()) {
+                continue;
+            }
+
+            Map<Integer, Integer> blockDefs = lastDefs.get(i);
+            for (InstructionAdapter instruction : probePosition.containingBasicBlock().getInstructions()) {
+                boolean isUse = instruction.isLocalVariableLoad() || instruction.isLocalVariableIncrement();
+                boolean isDef = instruction.isLocalVariableStore() || instruction.isLocalVariableIncrement();
+                if (!isUse && !isDef) {
+                    continue;
+                }
+
+                int variable = instruction.getLocalVariableIndex();
+                if (isUse) {
+                    int use = useVariables.size();
+                    useVariables.add(variable);
+                    usePositions.add(probePosition.getId());
+                    useUpwardExposed.add(!blockDefs.containsKey(variable));
+                    if (blockDefs.containsKey(variable)) {
+                        pairs.add(new int[]{blockDefs.get(variable), use, 1});
+                    }
+                }
+                if (isDef) {
+                    blockDefs.put(variable, defVariables.size());
+                    defVariables.add(variable);
+                    defPositions.add(probePosition.getId());
+                }
+            }
+
+            // the entry probe position of the same block (if any) kills the block's variables on an abrupt exit
+            ProbePosition entry = entryOnlyPositionOf.get(probePosition.containingBasicBlock());
+            if (entry != null) {
+                killedOnAbruptExit.put(entry.getId(), blockDefs.keySet().stream().mapToInt(v -> v).toArray());
+                exitOfEntry.put(entry.getId(), probePosition.getId());
+            }
+        }
+
+        int numberOfDefs = defVariables.size();
+        Map<Integer, BitSet> defsOfVariable = new HashMap<>();
+        for (int def = 0; def < numberOfDefs; def++) {
+            defsOfVariable.computeIfAbsent(defVariables.get(def), v -> new BitSet(numberOfDefs)).set(def);
+        }
+
+        // gen, kill and all definitions of every probe position
+        BitSet[] gen = new BitSet[n];
+        BitSet[] kill = new BitSet[n];
+        BitSet[] blockDefs = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            gen[i] = new BitSet(numberOfDefs);
+            kill[i] = new BitSet(numberOfDefs);
+            blockDefs[i] = new BitSet(numberOfDefs);
+            for (Map.Entry<Integer, Integer> lastDef : lastDefs.get(i).entrySet()) {
+                gen[i].set(lastDef.getValue());
+                kill[i].or(defsOfVariable.get(lastDef.getKey()));
+            }
+        }
+        for (int def = 0; def < numberOfDefs; def++) {
+            if (defPositions.get(def) != METHOD_ENTRY) {
+                blockDefs[indexOfId(nodes, defPositions.get(def))].set(def);
+            }
+        }
+        // an entry-only probe position carries the definitions of its block on its exceptional edges
+        for (int i = 0; i < n; i++) {
+            Integer exit = exitOfEntry.get(nodes.get(i).getData().getId());
+            if (exit != null) {
+                blockDefs[i].or(blockDefs[indexOfId(nodes, exit)]);
+            }
+        }
+
+        // worklist solver: IN(v) = U OUT(u) over normal edges u -> v, and U (IN(u) | OUT(u) | defs of u's block)
+        // over exceptional edges u -> v; OUT(v) = GEN(v) | (IN(v) - KILL(v)).
+        BitSet[] in = new BitSet[n];
+        BitSet[] out = new BitSet[n];
+        for (int i = 0; i < n; i++) {
+            in[i] = new BitSet(numberOfDefs);
+            out[i] = new BitSet(numberOfDefs);
+        }
+        int root = indexOf.get(pbCfg.getRoot());
+        for (int def = 0; def < numberOfDefs; def++) {
+            if (defPositions.get(def) == METHOD_ENTRY) {
+                in[root].set(def);
+            }
+        }
+
+        Deque<Integer> worklist = new ArrayDeque<>();
+        boolean[] inWorklist = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            worklist.add(i);
+            inWorklist[i] = true;
+        }
+        while (!worklist.isEmpty()) {
+            int i = worklist.poll();
+            inWorklist[i] = false;
+
+            BitSet newOut = (BitSet) in[i].clone();
+            newOut.andNot(kill[i]);
+            newOut.or(gen[i]);
+            out[i] = newOut;
+
+            for (Edge<ProbePosition, FlowType> edge : pbCfg.outgoingEdges(nodes.get(i))) {
+                int successor = indexOf.get(edge.getDestination());
+                BitSet newIn = (BitSet) in[successor].clone();
+                newIn.or(out[i]);
+                if (edge.getData() == FlowType.EXCEPTIONAL_FLOW) {
+                    newIn.or(in[i]);
+                    newIn.or(blockDefs[i]);
+                }
+
+                if (!newIn.equals(in[successor])) {
+                    in[successor] = newIn;
+                    if (!inWorklist[successor]) {
+                        worklist.add(successor);
+                        inWorklist[successor] = true;
+                    }
+                }
+            }
+        }
+
+        // every upward exposed use pairs with the reaching definitions of its variable
+        for (int use = 0; use < useVariables.size(); use++) {
+            if (!useUpwardExposed.get(use)) {
+                continue;
+            }
+
+            BitSet reaching = (BitSet) in[indexOfId(nodes, usePositions.get(use))].clone();
+            reaching.and(defsOfVariable.getOrDefault(useVariables.get(use), new BitSet()));
+            for (int def = reaching.nextSetBit(0); def >= 0; def = reaching.nextSetBit(def + 1)) {
+                pairs.add(new int[]{def, use, 0});
+            }
+        }
+
+        boolean[] defDownwardExposed = new boolean[numberOfDefs];
+        for (int def = 0; def < numberOfDefs; def++) {
+            defDownwardExposed[def] = defPositions.get(def) == METHOD_ENTRY ||
+                    gen[indexOfId(nodes, defPositions.get(def))].get(def);
+        }
+
+        boolean[] upwardExposed = new boolean[useUpwardExposed.size()];
+        for (int use = 0; use < upwardExposed.length; use++) {
+            upwardExposed[use] = useUpwardExposed.get(use);
+        }
+
+        return new DefUseAnalysis(toArray(defVariables), toArray(defPositions), defDownwardExposed,
+                toArray(useVariables), toArray(usePositions), upwardExposed, pairs, killedOnAbruptExit, exitOfEntry);
+    }
+
+    private static int indexOfId(List<Node<ProbePosition>> sortedNodes, int id) {
+        int low = 0;
+        int high = sortedNodes.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = sortedNodes.get(middle).getData().getId();
+            if (middleId == id) {
+                return middle;
+            } else if (middleId < id) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        throw new IllegalArgumentException("probe position " + id + " does not exist");
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        return list.stream().mapToInt(i -> i).toArray();
+    }
+
+    /**
+     * Creates the tables used to cover the def-use requirements (one per pair).
+     */
+    public void createRequirements() {
+        int numberOfPositions = 0;
+        for (int position : defPositions) {
+            numberOfPositions = Math.max(numberOfPositions, position + 1);
+        }
+        for (int position : usePositions) {
+            numberOfPositions = Math.max(numberOfPositions, position + 1);
+        }
+        for (Map.Entry<Integer, Integer> entry : exitOfEntry.entrySet()) {
+            numberOfPositions = Math.max(numberOfPositions, Math.max(entry.getKey(), entry.getValue()) + 1);
+        }
+
+        List<List<Integer>> localPairs = listsOf(numberOfPositions);
+        List<List<int[]>> pairsOfUse = new ArrayList<>();
+        for (int use = 0; use < useVariables.length; use++) {
+            pairsOfUse.add(new ArrayList<>());
+        }
+        for (int pairNumber = 0; pairNumber < pairs.size(); pairNumber++) {
+            int[] pair = pairs.get(pairNumber);
+            if (pair[2] == 1) {
+                localPairs.get(usePositions[pair[1]]).add(pairNumber);
+            } else {
+                pairsOfUse.get(pair[1]).add(new int[]{pair[0], pairNumber});
+            }
+        }
+        localPairsAt = toArrays(localPairs);
+        reachingDefsOfUse = new int[useVariables.length][];
+        pairNumbersOfUse = new int[useVariables.length][];
+        for (int use = 0; use < useVariables.length; use++) {
+            List<int[]> defPairs = pairsOfUse.get(use);
+            defPairs.sort(Comparator.comparingInt(defPair -> defPair[0]));
+            reachingDefsOfUse[use] = defPairs.stream().mapToInt(defPair -> defPair[0]).toArray();
+            pairNumbersOfUse[use] = defPairs.stream().mapToInt(defPair -> defPair[1]).toArray();
+        }
+
+        List<List<Integer>> upwardUses = listsOf(numberOfPositions);
+        for (int use = 0; use < useVariables.length; use++) {
+            if (useUpwardExposed[use]) {
+                upwardUses.get(usePositions[use]).add(use);
+            }
+        }
+        upwardUsesAt = toArrays(upwardUses);
+
+        List<List<Integer>> downwardDefs = listsOf(numberOfPositions);
+        List<Integer> parameters = new ArrayList<>();
+        numberOfVariables = 0;
+        for (int def = 0; def < defVariables.length; def++) {
+            numberOfVariables = Math.max(numberOfVariables, defVariables[def] + 1);
+            if (defPositions[def] == METHOD_ENTRY) {
+                parameters.add(def);
+            } else if (defDownwardExposed[def]) {
+                downwardDefs.get(defPositions[def]).add(def);
+            }
+        }
+        for (int variable : useVariables) {
+            numberOfVariables = Math.max(numberOfVariables, variable + 1);
+        }
+        downwardDefsAt = toArrays(downwardDefs);
+        parameterDefs = toArray(parameters);
+
+        killedAt = new int[numberOfPositions][];
+        exitAt = new int[numberOfPositions];
+        Arrays.fill(exitAt, -1);
+        killedOnAbruptExit.forEach((entry, variables) -> {
+            killedAt[entry] = variables;
+            exitAt[entry] = exitOfEntry.get(entry);
+        });
+    }
+
+    private static List<List<Integer>> listsOf(int size) {
+        List<List<Integer>> lists = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] arrays = new int[lists.size()][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = lists.get(i).isEmpty() ? NONE : toArray(lists.get(i));
+        }
+        return arrays;
+    }
+
+    public boolean hasRequirements() {
+        return upwardUsesAt != null;
+    }
+
+    public int getNumberOfPairs() {
+        return pairs.size();
+    }
+
+    /**
+     * Returns the definition of pair number pairNumber.
+     */
+    public int getDefinitionOfPair(int pairNumber) {
+        return pairs.get(pairNumber)[0];
+    }
+
+    /**
+     * Returns the probe position id of definition def, or -1 for a parameter.
+     */
+    int getPositionOfDefinition(int def) {
+        return defPositions[def];
+    }
+
+    /**
+     * Returns the probe position id of use.
+     */
+    int getPositionOfUse(int use) {
+        return usePositions[use];
+    }
+
+    /**
+     * Materializes the def-use requirements with the coverage in covered (e.g., to list the uncovered
+     * ones). Meant for reports only; the requirements are not kept.
+     */
+    public List<DefUseTR> getRequirements(CoverageBits covered) {
+        List<DefUseTR> requirements = new ArrayList<>();
+        for (int pairNumber = 0; pairNumber < pairs.size(); pairNumber++) {
+            int[] pair = pairs.get(pairNumber);
+            DefUseTR requirement = new DefUseTR(defVariables[pair[0]], pair[0], pair[1]);
+            requirement.setCovered(covered.get(pairNumber));
+            requirements.add(requirement);
+        }
+        return requirements;
+    }
+
+    /**
+     * Covers (in covered) the def-use pairs exercised by an executed path of probe position ids that
+     * starts at the root if startsAtMethodEntry is true. Returns false if a pair was exercised that is not
+     * a requirement (this should not happen, since reaching definitions over-approximate executions).
+     */
+    public boolean cover(int[] path, boolean startsAtMethodEntry, CoverageBits covered) {
+        boolean allPairsExist = true;
+        int[] activeDef = activeDefs.get();
+        if (activeDef.length < numberOfVariables) {
+            activeDef = new int[numberOfVariables];
+            activeDefs.set(activeDef);
+        }
+        Arrays.fill(activeDef, 0, numberOfVariables, -1);
+        if (startsAtMethodEntry) {
+            for (int def : parameterDefs) {
+                activeDef[defVariables[def]] = def;
+            }
+        }
+
+        for (int i = 0; i < path.length; i++) {
+            int position = path[i];
+            if (position >= upwardUsesAt.length) {
+                // a probe position with no definition or use
+                continue;
+            }
+
+            int[] killed = killedAt[position];
+            if (killed != null) {
+                // the block is completed iff its exit probe position follows
+                if (i + 1 >= path.length || path[i + 1] != exitAt[position]) {
+                    for (int variable : killed) {
+                        activeDef[variable] = -1;
+                    }
+                }
+                continue;
+            }
+
+            for (int use : upwardUsesAt[position]) {
+                int def = activeDef[useVariables[use]];
+                if (def >= 0) {
+                    int slot = Arrays.binarySearch(reachingDefsOfUse[use], def);
+                    if (slot < 0) {
+                        allPairsExist = false;
+                    } else {
+                        covered.set(pairNumbersOfUse[use][slot]);
+                    }
+                }
+            }
+
+            for (int pairNumber : localPairsAt[position]) {
+                covered.set(pairNumber);
+            }
+
+            for (int def : downwardDefsAt[position]) {
+                activeDef[defVariables[def]] = def;
+            }
+        }
+
+        return allPairsExist;
+    }
+
+    /**
+     * Print the analysis with a pre-defined format that can be read by "readFrom".
+     */
+    public void printTo(PrintStream out) {
+        out.println(defVariables.length);
+        for (int def = 0; def < defVariables.length; def++) {
+            out.printf("%d %d %b%n", defVariables[def], defPositions[def], defDownwardExposed[def]);
+        }
+
+        out.println(useVariables.length);
+        for (int use = 0; use < useVariables.length; use++) {
+            out.printf("%d %d %b%n", useVariables[use], usePositions[use], useUpwardExposed[use]);
+        }
+
+        out.println(pairs.size());
+        for (int[] pair : pairs) {
+            out.printf("%d %d %d%n", pair[0], pair[1], pair[2]);
+        }
+
+        // entry-only probe position, its exit probe position, and the variables killed on an abrupt exit
+        out.println(killedOnAbruptExit.size());
+        new TreeMap<>(killedOnAbruptExit).forEach((entry, variables) -> {
+            out.print(entry + " " + exitOfEntry.get(entry));
+            for (int variable : variables) {
+                out.print(" " + variable);
+            }
+            out.println();
+        });
+    }
+
+    public static DefUseAnalysis readFrom(BufferedReader br) throws IOException {
+        int numberOfDefs = Integer.parseInt(br.readLine());
+        int[] defVariables = new int[numberOfDefs];
+        int[] defPositions = new int[numberOfDefs];
+        boolean[] defDownwardExposed = new boolean[numberOfDefs];
+        for (int def = 0; def < numberOfDefs; def++) {
+            String[] fields = br.readLine().split(" ");
+            defVariables[def] = Integer.parseInt(fields[0]);
+            defPositions[def] = Integer.parseInt(fields[1]);
+            defDownwardExposed[def] = Boolean.parseBoolean(fields[2]);
+        }
+
+        int numberOfUses = Integer.parseInt(br.readLine());
+        int[] useVariables = new int[numberOfUses];
+        int[] usePositions = new int[numberOfUses];
+        boolean[] useUpwardExposed = new boolean[numberOfUses];
+        for (int use = 0; use < numberOfUses; use++) {
+            String[] fields = br.readLine().split(" ");
+            useVariables[use] = Integer.parseInt(fields[0]);
+            usePositions[use] = Integer.parseInt(fields[1]);
+            useUpwardExposed[use] = Boolean.parseBoolean(fields[2]);
+        }
+
+        int numberOfPairs = Integer.parseInt(br.readLine());
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < numberOfPairs; i++) {
+            String[] fields = br.readLine().split(" ");
+            pairs.add(new int[]{Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[2])});
+        }
+
+        int numberOfEntries = Integer.parseInt(br.readLine());
+        Map<Integer, int[]> killedOnAbruptExit = new HashMap<>();
+        Map<Integer, Integer> exitOfEntry = new HashMap<>();
+        for (int i = 0; i < numberOfEntries; i++) {
+            String[] fields = br.readLine().split(" ");
+            int entry = Integer.parseInt(fields[0]);
+            exitOfEntry.put(entry, Integer.parseInt(fields[1]));
+            int[] variables = new int[fields.length - 2];
+            for (int j = 2; j < fields.length; j++) {
+                variables[j - 2] = Integer.parseInt(fields[j]);
+            }
+            killedOnAbruptExit.put(entry, variables);
+        }
+
+        return new DefUseAnalysis(defVariables, defPositions, defDownwardExposed, useVariables, usePositions,
+                useUpwardExposed, pairs, killedOnAbruptExit, exitOfEntry);
+    }
+}
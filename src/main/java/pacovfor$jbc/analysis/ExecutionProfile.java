@@ -0,0 +1,95 @@
+package pacovfor$jbc.analysis;
+
+import pacovfor$jbc.utils.Tuple;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-method edge execution counts of a prior run. Every non-empty line of a profile file
+ * has the format "relativeFilePathOfMethod srcProbePositionID destProbePositionID count",
+ * where relativeFilePathOfMethod is the name of the cfg file of the method (i.e.,
+ * "package.ClassName/methodID"). Lines starting with "#" are ignored.
+ * <p>
+ * Profiles are written by runs with Config.executionCounts (see printTo).
+ */
+public class ExecutionProfile {
+
+    private final Map<String, Map<Tuple<Integer, Integer>, Long>> edgeCounts;
+
+    public ExecutionProfile() {
+        this.edgeCounts = new HashMap<>();
+    }
+
+    /**
+     * Adds count executions of the edge (src probe position id, dest probe position id) of the given method.
+     */
+    public void addEdgeCount(String relativeFilePathOfMethod, int src, int dest, long count) {
+        edgeCounts.computeIfAbsent(relativeFilePathOfMethod, method -> new LinkedHashMap<>()).
+                merge(new Tuple<>(src, dest), count, Long::sum);
+    }
+
+    public static ExecutionProfile readProfileFromFile(String fileName) {
+        BufferedReader br;
+        try {
+            br = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), StandardCharsets.UTF_8));
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+
+        ExecutionProfile profile = new ExecutionProfile();
+        try (br) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] methodSrcDestCount = line.split("\\s+");
+                if (methodSrcDestCount.length != 4) {
+                    throw new IllegalStateException(fileName + ": malformed profile line: " + line);
+                }
+
+                Tuple<Integer, Integer> edge = new Tuple<>(Integer.parseInt(methodSrcDestCount[1]),
+                        Integer.parseInt(methodSrcDestCount[2]));
+                long count = Long.parseLong(methodSrcDestCount[3]);
+
+                profile.edgeCounts.computeIfAbsent(methodSrcDestCount[0], method -> new HashMap<>()).
+                        merge(edge, count, Long::sum);
+            }
+        } catch (IOException | NumberFormatException | IllegalStateException e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+
+        return profile;
+    }
+
+    /**
+     * Returns the execution count of every (src probe id, dest probe id) edge of the given method,
+     * or an empty map if the method was not profiled.
+     */
+    public Map<Tuple<Integer, Integer>, Long> getEdgeCounts(String relativeFilePathOfMethod) {
+        return Collections.unmodifiableMap(edgeCounts.getOrDefault(relativeFilePathOfMethod, Collections.emptyMap()));
+    }
+
+    /**
+     * Print the profile with the format read by "readProfileFromFile", methods sorted by name.
+     */
+    public void printTo(PrintStream out) {
+        new TreeMap<>(edgeCounts).forEach((method, counts) -> counts.forEach((edge, count) ->
+                out.println(method + " " + edge.getT1() + " " + edge.getT2() + " " + count)));
+    }
+}
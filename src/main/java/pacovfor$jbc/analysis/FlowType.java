@@ -1,5 +1,19 @@
 package pacovfor$jbc.analysis;
 
 public enum FlowType {
-    NORMAL_FLOW, EXCEPTIONAL_FLOW
+    NORMAL_FLOW, EXCEPTIONAL_FLOW;
+
+    /**
+     * Returns the flow type byte of an edge in a CsrGraph: 1 + ordinal, so that 0 stays "no flow type".
+     */
+    public byte toByte() {
+        return (byte) (ordinal() + 1);
+    }
+
+    public static FlowType fromByte(byte flowType) {
+        if (flowType < 1 || flowType > values().length) {
+            throw new IllegalArgumentException("flow type byte: " + flowType + " does not exist");
+        }
+        return values()[flowType - 1];
+    }
 }
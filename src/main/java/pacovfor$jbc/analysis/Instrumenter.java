@@ -1,16 +1,42 @@
 package pacovfor$jbc.analysis;
 
 import pacovfor$jbc.analysis.graphtypes.ProbePositionCfg;
+import pacovfor$jbc.analysis.graphtypes.ProbePositionIDCfg;
+import pacovfor$jbc.analysis.nodetypes.BasicBlock;
 import pacovfor$jbc.analysis.nodetypes.ProbePosition;
 import pacovfor$jbc.backend.asmadapters.ClassAdapter;
+import pacovfor$jbc.backend.asmadapters.InstructionAdapter;
 import pacovfor$jbc.backend.asmadapters.MethodAdapter;
+import pacovfor$jbc.config.Config;
+import pacovfor$jbc.config.CoverageLevel;
+import pacovfor$jbc.graph.Edge;
 import pacovfor$jbc.graph.Node;
+import pacovfor$jbc.utils.Tuple;
+import pacovfor$jbc.utils.Utils;
 
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class Instrumenter {
 
+    private static ExecutionProfile profile;
+
+    /**
+     * Returns the execution profile given by Config.profileFile (loaded once), or null if there is none.
+     */
+    private static synchronized ExecutionProfile getProfile() {
+        if (profile == null && Config.profileFile != null) {
+            profile = ExecutionProfile.readProfileFromFile(Config.profileFile);
+        }
+
+        return profile;
+    }
+
     public static void instrument(ClassAdapter classAdapter) {
         // instrument class by adding creating a class initializer (if not already exists) and
         // adding instructions at the beginning to load the cfg of all the methods in the class
@@ -24,13 +50,121 @@ public class Instrumenter {
 
     }
 
+    /**
+     * Instruments a class for tiered coverage (see TieredAgent): methods in escalatedMethodIds are instrumented
+     * as by instrument, and their cfgs are saved, while the others only escalate themselves when they are
+     * first entered (see MethodAdapter#addEscalationInstructions). An instrumented method runs a copy of its
+     * original body until its coverage is bound (see Escalator), so a method too large to be copied is not
+     * instrumented and keeps escalating itself. Returns the ids of the instrumented methods.
+     */
+    public static Set<Integer> instrumentTiered(ClassAdapter classAdapter, Set<Integer> escalatedMethodIds) {
+        classAdapter.addLoadTieredCoverageInstns();
+
+        Set<Integer> instrumentedMethodIds = new HashSet<>();
+        for (MethodAdapter methodAdapter : classAdapter.getMethods()) {
+            if (escalatedMethodIds.contains(methodAdapter.getID()) && methodAdapter.saveUninstrumentedBody()) {
+                instrument(methodAdapter, true, true);
+                instrumentedMethodIds.add(methodAdapter.getID());
+            } else {
+                methodAdapter.addEscalationInstructions();
+            }
+        }
+        return instrumentedMethodIds;
+    }
+
     public static void instrument(MethodAdapter methodAdapter, boolean saveMethodCfgToFile) {
-        // build a ProbePositionCfg and a ProbePositionIDCfg
-        ProbePositionCfg pbCfg = CfgBuilder.buildProbePositionCfg(methodAdapter, true, true);
+        instrument(methodAdapter, saveMethodCfgToFile, false);
+    }
+
+    /**
+     * @param tiered - whether the method is escalated in tiered instrumentation, whose uninstrumented body is
+     *               already saved (see instrumentTiered)
+     */
+    private static void instrument(MethodAdapter methodAdapter, boolean saveMethodCfgToFile, boolean tiered) {
+        CoverageLevel coverageLevel = Config.coverageLevel;
+        boolean exceptionalFlows = Config.exceptionalFlows;
+
+        // build a ProbePositionCfg and a ProbePositionIDCfg. Without exceptional flows, every basic block
+        // gets a single (exit) probe position and there are no exceptional edges.
+        ProbePositionCfg pbCfg = CfgBuilder.buildProbePositionCfg(methodAdapter, exceptionalFlows, exceptionalFlows);
+
+        // at method level, the only probe marks the method as entered
+        if (coverageLevel == CoverageLevel.METHOD) {
+            methodAdapter.addEnterMethodInstructions(Config.coverageSwitch);
+            if (tiered) {
+                methodAdapter.addUninstrumentedBodyBranches(true, false, false, false);
+            }
+
+            if (saveMethodCfgToFile) {
+                ProbePositionIDCfg probePositionIDCfg = toProbePositionIDCfg(methodAdapter, pbCfg);
+                probePositionIDCfg.printToFile();
+            }
+            return;
+        }
+
+        // in sampling mode, if probes disable themselves, or with the coverage switch, keep a copy of the original
+        // bytecode that unsampled invocations, invocations after the probes are switched off and invocations
+        // while coverage is disabled run instead of the instrumented method (see
+        // MethodAdapter#addUninstrumentedBodyBranches). An escalated method always has a copy.
+        int sampleRate = Config.sampleRates.getRate(methodAdapter.getClassAdapter().getName());
+        boolean isCopied = tiered || (sampleRate > 1 || Config.selfDisablingProbes || Config.coverageSwitch) &&
+                methodAdapter.saveUninstrumentedBody();
+        sampleRate = isCopied ? sampleRate : 1;
+
+        // the line table is computed from the original bytecode, i.e., before instrumentation
+        LineTable lineTable = LineTable.build(methodAdapter, pbCfg);
+
+        // def-use pairs are computed from the original bytecode, i.e., before instrumentation. They are
+        // covered by replaying probe paths, so they can not be measured when probes are dropped for node coverage.
+        DefUseAnalysis defUseAnalysis = Config.defUseCoverage && coverageLevel.includes(CoverageLevel.EDGE) ?
+                DefUseAnalysis.analyze(methodAdapter, pbCfg) : null;
+
+        // in path profiling mode, number the acyclic paths of the method and count path ids instead of
+        // recording probe ids. Methods with exception handlers (or too many paths) fall back to recording.
+        BallLarusNumbering numbering = Config.pathProfiling && coverageLevel.includes(CoverageLevel.EDGE) ?
+                getBallLarusNumbering(methodAdapter, pbCfg) : null;
+        if (numbering != null) {
+            instrumentPaths(methodAdapter, pbCfg, numbering);
+
+            // paths are only counted when they end, so the method is marked as entered in its prologue
+            methodAdapter.addEnterMethodInstructions(Config.coverageSwitch);
+
+            // path counts are only mapped to requirements when coverage is reported, so there is no probe switch
+            if (isCopied && (tiered || sampleRate > 1 || Config.coverageSwitch)) {
+                methodAdapter.addUninstrumentedBodyBranches(tiered, Config.coverageSwitch, false, sampleRate > 1);
+            }
+
+            if (saveMethodCfgToFile) {
+                ProbePositionIDCfg probePositionIDCfg = toProbePositionIDCfg(methodAdapter, pbCfg);
+                probePositionIDCfg.setSampleRate(sampleRate);
+                probePositionIDCfg.setLineTable(lineTable);
+                probePositionIDCfg.setBallLarusNumbering(numbering);
+                probePositionIDCfg.setDefUseAnalysis(defUseAnalysis);
+                probePositionIDCfg.printToFile();
+            }
+            return;
+        }
+
+        // in online coverage mode, probes cover their requirements as they are hit and no path is recorded
+        boolean online = Config.onlineCoverage;
+
+        // if only node coverage is measured, drop the probe positions whose coverage is implied by other
+        // probes. Otherwise, if a profile of a prior run exists and paths are recorded, leave the hottest probe
+        // positions that can be reconstructed offline without a probe.
+        Map<Integer, Set<Integer>> impliedPositions = Collections.emptyMap();
+        Set<Integer> unprobedPositions = Collections.emptySet();
+        ExecutionProfile executionProfile = getProfile();
+        if (coverageLevel == CoverageLevel.NODE) {
+            impliedPositions = SuperblockAnalysis.getImpliedPositions(pbCfg);
+        } else if (executionProfile != null && !online) {
+            unprobedPositions = ProbePlacement.getUnprobedPositions(pbCfg,
+                    executionProfile.getEdgeCounts(Utils.getRelativeFilePathOfMethod(methodAdapter)));
+        }
 
-        // add one local variable that keeps track of path at the beginning of the method
-        // and get the local variable index
-        int localVariableIndex = methodAdapter.addLocalVariableAtMethodEntry();
+        // add the local variables that keep track of the path (or of the last two probe ids in online mode)
+        // at the beginning of the method and get the index of the first
+        int localVariableIndex = online ? methodAdapter.addOnlineCoverageLocalsAtMethodEntry() :
+                methodAdapter.addLocalVariableAtMethodEntry();
 
         // get all probe positions and instrument either before or after the probe position
         // depending on whether it is an entry probe position or exit probe position
@@ -48,33 +182,171 @@ public class Instrumenter {
            if the instruction is a return, throw, jump instruction, instrumentation should happen
            before the instruction. Otherwise, instrumentation should happen after the instruction. */
         for (ProbePosition probePosition : probePositions) {
+            if (unprobedPositions.contains(probePosition.getId()) ||
+                    impliedPositions.containsKey(probePosition.getId())) {
+                continue;
+            }
 
             // if probePosition is both an entry and an exit, entry takes precedence.
             if (probePosition.isEntry()) {
                 // entry takes precedence. instrument before the instruction.
-                methodAdapter.insertAddToPathInstructions(probePosition.getInstruction(), localVariableIndex,
-                        probePosition.getId(), before);
+                insertProbe(methodAdapter, probePosition, localVariableIndex, online, before);
             } else if (probePosition.isExit()) {
                 if (probePosition.getInstruction().isJumpInstruction() ||
                         probePosition.getInstruction().isReturnInstruction() ||
                         probePosition.getInstruction().isThrowInstruction()) {
-                    methodAdapter.insertAddToPathInstructions(probePosition.getInstruction(), localVariableIndex,
-                            probePosition.getId(), before);
+                    insertProbe(methodAdapter, probePosition, localVariableIndex, online, before);
                 } else {
-                    methodAdapter.insertAddToPathInstructions(probePosition.getInstruction(), localVariableIndex,
-                            probePosition.getId(), after);
+                    insertProbe(methodAdapter, probePosition, localVariableIndex, online, after);
                 }
             }
         }
 
-        // add a try-finally block where the finally block calls GraphAdapter.cover(methodName, path),
-        // where methodName is the filename that includes the cfg of the method being instrumented.
-        methodAdapter.addTryFinallyBlockInstructions(localVariableIndex);
+        // add a try-finally block where the finally block calls GraphAdapter.cover(coverage[id], path),
+        // where coverage[id] is the coverage of the method being instrumented (see ClassAdapter#addLoadCfgsInstns).
+        // Online probes have already covered everything when the method exits.
+        if (!online) {
+            methodAdapter.addTryFinallyBlockInstructions(localVariableIndex);
+        }
+
+        // invocations of an escalated method before its coverage is bound, invocations while coverage is
+        // disabled, after the probes are switched off and unsampled invocations branch to the copy of the
+        // original bytecode before any probe
+        boolean probeSwitch = isCopied && Config.selfDisablingProbes;
+        if (isCopied) {
+            methodAdapter.addUninstrumentedBodyBranches(tiered, Config.coverageSwitch, probeSwitch, sampleRate > 1);
+        }
 
 //        System.out.println(pbCfg.getAllNodes().size());
 
         if (saveMethodCfgToFile) {
-            pbCfg.toProbePositionIDCfg(methodAdapter).printToFile();
+            ProbePositionIDCfg probePositionIDCfg = toProbePositionIDCfg(methodAdapter, pbCfg);
+            probePositionIDCfg.setUnprobedNodes(unprobedPositions);
+            probePositionIDCfg.setImpliedNodes(impliedPositions);
+            probePositionIDCfg.setSampleRate(sampleRate);
+            probePositionIDCfg.setProbeSwitch(probeSwitch);
+            probePositionIDCfg.setLineTable(lineTable);
+            probePositionIDCfg.setDefUseAnalysis(online ? null : defUseAnalysis);
+            probePositionIDCfg.setOnlineCoverage(online);
+            probePositionIDCfg.printToFile();
+        }
+    }
+
+    /**
+     * Inserts the probe of probePosition before or after its instruction: it adds the probe position id to
+     * the path of the invocation, or covers it directly in online mode.
+     */
+    private static void insertProbe(MethodAdapter methodAdapter, ProbePosition probePosition, int localVariableIndex,
+                                    boolean online, boolean before) {
+        if (online) {
+            methodAdapter.insertCoverStepInstructions(probePosition.getInstruction(), localVariableIndex,
+                    probePosition.getId(), before);
+        } else {
+            methodAdapter.insertAddToPathInstructions(probePosition.getInstruction(), localVariableIndex,
+                    probePosition.getId(), before);
+        }
+    }
+
+    /**
+     * Converts pbCfg to a ProbePositionIDCfg with the coverage level and exceptional flows of Config.
+     */
+    private static ProbePositionIDCfg toProbePositionIDCfg(MethodAdapter methodAdapter, ProbePositionCfg pbCfg) {
+        ProbePositionIDCfg probePositionIDCfg = pbCfg.toProbePositionIDCfg(methodAdapter);
+        probePositionIDCfg.setCoverageLevel(Config.coverageLevel);
+        probePositionIDCfg.setExceptionalFlows(Config.exceptionalFlows);
+        return probePositionIDCfg;
+    }
+
+    /**
+     * Returns the Ball-Larus numbering of pbCfg, or null if the method has exception handlers (a path
+     * would then continue in a handler from any instruction that throws) or more paths than fit into an int.
+     */
+    private static BallLarusNumbering getBallLarusNumbering(MethodAdapter methodAdapter, ProbePositionCfg pbCfg) {
+        if (!methodAdapter.getExceptionEntries().isEmpty()) {
+            return null;
+        }
+
+        // edges in a canonical order, so methods with the same cfg shape get the same numbering
+        List<Tuple<Integer, Integer>> edges = pbCfg.getAllEdges().stream().
+                map(edge -> new Tuple<>(edge.getSource().getData().getId(), edge.getDestination().getData().getId())).
+                sorted(Comparator.<Tuple<Integer, Integer>>comparingInt(Tuple::getT1).thenComparingInt(Tuple::getT2)).
+                collect(Collectors.toList());
+        Set<Integer> throwingNodes = pbCfg.getAllNodes().stream().
+                map(Node::getData).
+                filter(ProbePosition::canThrowBeforeProbe).
+                map(ProbePosition::getId).
+                collect(Collectors.toSet());
+        return BallLarusNumbering.number(pbCfg.getRoot().getData().getId(), edges, throwingNodes);
+    }
+
+    /**
+     * Instruments the edges of pbCfg with path register updates. Without exception handlers every
+     * probe position is the exit of its basic block, so an edge leaves a block at its last instruction:
+     * <p>
+     * - a block without successors (return or throw) counts the path before its last instruction.
+     * - an edge that is the only edge of its block is instrumented before the last instruction if it is
+     * a jump, and after it otherwise.
+     * - the fall-through edge of a conditional jump is instrumented after the jump, and a jump to a
+     * label is instrumented on a trampoline (see MethodAdapter#insertPathRegisterUpdateOnJump).
+     * <p>
+     * Edges with value 0 need no update, and back edges count the path and reset the register. A path counted
+     * at a node without successors resets the register to -1, and a handler of any exception counts the
+     * register unless it is -1 and rethrows the exception, since the exceptional edge of every node that can
+     * throw has value 0 (see MethodAdapter#addPathCountingHandlerInstructions).
+     */
+    private static void instrumentPaths(MethodAdapter methodAdapter, ProbePositionCfg pbCfg,
+                                        BallLarusNumbering numbering) {
+        int register = methodAdapter.addPathRegisterAtMethodEntry(numbering.getEntryValue());
+
+        final boolean before = true;
+        final boolean after = false;
+        for (Node<ProbePosition> node : pbCfg.getAllNodes()) {
+            ProbePosition source = node.getData();
+            InstructionAdapter lastInstruction = source.getInstruction();
+            List<Edge<ProbePosition, FlowType>> outgoingEdges = pbCfg.outgoingEdges(node);
+
+            if (outgoingEdges.isEmpty()) {
+                methodAdapter.insertPathRegisterUpdate(lastInstruction, register,
+                        numbering.getExitValue(source.getId()), true, -1, before);
+                continue;
+            }
+
+            for (Edge<ProbePosition, FlowType> edge : outgoingEdges) {
+                int sourceId = source.getId();
+                int destinationId = edge.getDestination().getData().getId();
+                boolean isBackEdge = numbering.isBackEdge(sourceId, destinationId);
+                int increment = isBackEdge ? numbering.getBackEdgeEndValue(sourceId, destinationId) :
+                        numbering.getEdgeValue(sourceId, destinationId);
+                int resetValue = isBackEdge ? numbering.getBackEdgeStartValue(sourceId, destinationId) : 0;
+                if (!isBackEdge && increment == 0) {
+                    continue;
+                }
+
+                if (outgoingEdges.size() == 1) {
+                    methodAdapter.insertPathRegisterUpdate(lastInstruction, register, increment, isBackEdge,
+                            resetValue, lastInstruction.isJumpInstruction());
+                    continue;
+                }
+
+                // INVARIANT: a block with several normal successors ends with a conditional jump or a switch
+                BasicBlock destinationBlock = edge.getDestination().getData().containingBasicBlock();
+                List<InstructionAdapter> targetLabels = lastInstruction.getTargetLabels().stream().
+                        filter(destinationBlock::hasInstruction).
+                        distinct().
+                        collect(Collectors.toList());
+                for (InstructionAdapter targetLabel : targetLabels) {
+                    methodAdapter.insertPathRegisterUpdateOnJump(lastInstruction, targetLabel, register, increment,
+                            isBackEdge, resetValue);
+                }
+
+                if (lastInstruction.isIF_X() &&
+                        destinationBlock.hasInstruction(methodAdapter.firstInstructionAfter(lastInstruction))) {
+                    methodAdapter.insertPathRegisterUpdate(lastInstruction, register, increment, isBackEdge,
+                            resetValue, after);
+                }
+            }
         }
+
+        methodAdapter.addPathCountingHandlerInstructions(register);
     }
 }
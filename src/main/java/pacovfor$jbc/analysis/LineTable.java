@@ -0,0 +1,195 @@
+package pacovfor$jbc.analysis;
+
+import pacovfor$jbc.analysis.graphtypes.ProbePositionCfg;
+import pacovfor$jbc.analysis.nodetypes.ProbePosition;
+import pacovfor$jbc.backend.asmadapters.InstructionAdapter;
+import pacovfor$jbc.backend.asmadapters.MethodAdapter;
+import pacovfor$jbc.graph.Edge;
+import pacovfor$jbc.graph.Node;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.IntPredicate;
+
+/**
+ * Source lines of a method, used to derive line and branch coverage from node and edge coverage after
+ * the run, without extra probes.
+ * <p>
+ * An exit probe position is covered iff its basic block completed, so it owns the lines of every instruction
+ * of the block; an entry probe position only proves that the first instruction of its block was executed,
+ * so it owns the line of that instruction. A line is covered if a probe position owning it is covered.
+ * <p>
+ * A branch is a conditional jump or switch; its outcomes are the distinct normal outgoing edges of its exit
+ * probe position, and each outcome is covered iff its edge is covered.
+ * <p>
+ * Lines differ between methods with the same cfg shape, so the table is stored with the method, not
+ * with the shape.
+ */
+public class LineTable {
+
+    private final Map<Integer, int[]> linesOfProbePosition; // probe position id -> sorted distinct lines
+    private final List<int[]> branches; // (line, source probe position id, destination probe position ids...)
+
+    private LineTable(Map<Integer, int[]> linesOfProbePosition, List<int[]> branches) {
+        this.linesOfProbePosition = linesOfProbePosition;
+        this.branches = branches;
+    }
+
+    /**
+     * Builds the line table of methodAdapter from the line number entries of its bytecode. Must be called
+     * before the method is instrumented. Methods compiled without line numbers get an empty table.
+     */
+    public static LineTable build(MethodAdapter methodAdapter, ProbePositionCfg pbCfg) {
+        // line of every real instruction (but labels, which precede their line number entry): the last line
+        // number entry before it
+        Map<InstructionAdapter, Integer> lineOf = new HashMap<>();
+        int currentLine = -1;
+        for (InstructionAdapter instruction : methodAdapter.getInstructions()) {
+            if (instruction.isLineNumber()) {
+                currentLine = instruction.getLineNumber();
+            } else if (currentLine >= 0 && instruction.isRealInstruction() && !instruction.isLabel()) {
+                lineOf.put(instruction, currentLine);
+            }
+        }
+
+        Map<Integer, int[]> linesOfProbePosition = new TreeMap<>();
+        List<int[]> branches = new ArrayList<>();
+        for (Node<ProbePosition> node : pbCfg.getAllNodes()) {
+            ProbePosition probePosition = node.getData();
+
+            SortedSet<Integer> lines = new TreeSet<>();
+            if (probePosition.isExit()) {
+                probePosition.containingBasicBlock().getInstructions().stream().
+                        map(lineOf::get).
+                        filter(Objects::nonNull).
+                        forEach(lines::add);
+            } else if (lineOf.containsKey(probePosition.getInstruction())) {
+                lines.add(lineOf.get(probePosition.getInstruction()));
+            }
+            if (!lines.isEmpty()) {
+                linesOfProbePosition.put(probePosition.getId(), lines.stream().mapToInt(line -> line).toArray());
+            }
+
+            InstructionAdapter instruction = probePosition.getInstruction();
+            boolean isBranch = instruction.isIF_X() || instruction.isLookupSwitch() || instruction.isTableSwitch();
+            if (probePosition.isExit() && isBranch && lineOf.containsKey(instruction)) {
+                int[] destinations = pbCfg.outgoingEdges(node).stream().
+                        filter(edge -> edge.getData() == FlowType.NORMAL_FLOW).
+                        map(Edge::getDestination).
+                        mapToInt(destination -> destination.getData().getId()).
+                        sorted().
+                        toArray();
+
+                int[] branch = new int[destinations.length + 2];
+                branch[0] = lineOf.get(instruction);
+                branch[1] = probePosition.getId();
+                System.arraycopy(destinations, 0, branch, 2, destinations.length);
+                branches.add(branch);
+            }
+        }
+        branches.sort(Comparator.<int[]>comparingInt(branch -> branch[0]).thenComparingInt(branch -> branch[1]));
+
+        return new LineTable(linesOfProbePosition, branches);
+    }
+
+    /**
+     * Returns the lines of the method that have instructions.
+     */
+    public SortedSet<Integer> getLines() {
+        SortedSet<Integer> lines = new TreeSet<>();
+        linesOfProbePosition.values().forEach(probePositionLines -> Arrays.stream(probePositionLines).forEach(lines::add));
+        return lines;
+    }
+
+    /**
+     * Returns the lines owned by a probe position for which isCovered(probe position id) is true.
+     */
+    public SortedSet<Integer> getCoveredLines(IntPredicate isCovered) {
+        SortedSet<Integer> lines = new TreeSet<>();
+        linesOfProbePosition.forEach((probePositionId, probePositionLines) -> {
+            if (isCovered.test(probePositionId)) {
+                Arrays.stream(probePositionLines).forEach(lines::add);
+            }
+        });
+        return lines;
+    }
+
+    /**
+     * Returns the number of branch outcomes, i.e., the outgoing edges of all branches.
+     */
+    public int getNumberOfBranches() {
+        return branches.stream().mapToInt(branch -> branch.length - 2).sum();
+    }
+
+    /**
+     * Returns the number of branch outcomes for which isCovered(source id, destination id) is true.
+     */
+    public int getNumberOfCoveredBranches(BiPredicate<Integer, Integer> isCovered) {
+        int covered = 0;
+        for (int[] branch : branches) {
+            for (int i = 2; i < branch.length; i++) {
+                if (isCovered.test(branch[1], branch[i])) {
+                    covered++;
+                }
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * Print the table with a pre-defined format that can be read by "readFrom". Lines are printed as
+     * ranges, e.g., "12-14 17".
+     */
+    public void printTo(PrintStream out) {
+        out.println(linesOfProbePosition.size());
+        linesOfProbePosition.forEach((probePositionId, lines) -> {
+            out.print(probePositionId);
+            for (int i = 0; i < lines.length; i++) {
+                int first = lines[i];
+                while (i + 1 < lines.length && lines[i + 1] == lines[i] + 1) {
+                    i++;
+                }
+                out.print(first == lines[i] ? " " + first : " " + first + "-" + lines[i]);
+            }
+            out.println();
+        });
+
+        out.println(branches.size());
+        for (int[] branch : branches) {
+            StringBuilder line = new StringBuilder();
+            for (int value : branch) {
+                line.append(line.length() == 0 ? "" : " ").append(value);
+            }
+            out.println(line);
+        }
+    }
+
+    public static LineTable readFrom(BufferedReader br) throws IOException {
+        int numberOfProbePositions = Integer.parseInt(br.readLine());
+        Map<Integer, int[]> linesOfProbePosition = new TreeMap<>();
+        for (int i = 0; i < numberOfProbePositions; i++) {
+            String[] fields = br.readLine().split(" ");
+            List<Integer> lines = new ArrayList<>();
+            for (int j = 1; j < fields.length; j++) {
+                String[] range = fields[j].split("-");
+                int first = Integer.parseInt(range[0]);
+                int last = range.length == 1 ? first : Integer.parseInt(range[1]);
+                for (int line = first; line <= last; line++) {
+                    lines.add(line);
+                }
+            }
+            linesOfProbePosition.put(Integer.parseInt(fields[0]), lines.stream().mapToInt(line -> line).toArray());
+        }
+
+        int numberOfBranches = Integer.parseInt(br.readLine());
+        List<int[]> branches = new ArrayList<>();
+        for (int i = 0; i < numberOfBranches; i++) {
+            branches.add(Arrays.stream(br.readLine().split(" ")).mapToInt(Integer::parseInt).toArray());
+        }
+
+        return new LineTable(linesOfProbePosition, branches);
+    }
+}
@@ -0,0 +1,156 @@
+package pacovfor$jbc.analysis;
+
+import pacovfor$jbc.analysis.graphtypes.ProbePositionCfg;
+import pacovfor$jbc.analysis.nodetypes.ProbePosition;
+import pacovfor$jbc.graph.Edge;
+import pacovfor$jbc.graph.Node;
+import pacovfor$jbc.utils.Tuple;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Profile-guided probe placement. Given the edge execution counts of a prior run, decides which
+ * probe positions of a method can be left without a probe so that the remaining probes land on
+ * the coldest positions.
+ * <p>
+ * The runtime records the sequence of probe ids a method executes, so a probe can only be omitted
+ * if the recorded path can still be expanded to the full path offline. A probe position is left
+ * unprobed only if:
+ * - it has exactly one outgoing edge, and that edge is a normal flow edge, and
+ * - following unprobed positions from it always reaches a probed position (no unprobed cycles), and
+ * - for every probe position, no two of its successors lead (through unprobed positions) to the same
+ * probed position, i.e., the gap between two consecutive recorded probes is filled by a unique chain.
+ * <p>
+ * Candidates are considered hottest first, so the probes that remain are on the cold positions.
+ * Note: if a method exits abruptly (uncaught exception) while executing a chain of unprobed positions,
+ * that trailing chain is not recorded.
+ */
+public class ProbePlacement {
+
+    private final Map<Integer, List<Integer>> successors;
+    private final Map<Integer, List<Integer>> predecessors;
+    private final Set<Integer> unprobed;
+
+    private ProbePlacement(ProbePositionCfg probePositionCfg) {
+        this.successors = new HashMap<>();
+        this.predecessors = new HashMap<>();
+        this.unprobed = new HashSet<>();
+
+        for (Node<ProbePosition> node : probePositionCfg.getAllNodes()) {
+            successors.put(node.getData().getId(), new ArrayList<>());
+            predecessors.put(node.getData().getId(), new ArrayList<>());
+        }
+
+        for (Edge<ProbePosition, FlowType> edge : probePositionCfg.getAllEdges()) {
+            int src = edge.getSource().getData().getId();
+            int dest = edge.getDestination().getData().getId();
+            successors.get(src).add(dest);
+            predecessors.get(dest).add(src);
+        }
+    }
+
+    /**
+     * Returns the ids of the probe positions that should not be instrumented. Returns an empty
+     * set if there are no execution counts for the method.
+     */
+    public static Set<Integer> getUnprobedPositions(ProbePositionCfg probePositionCfg,
+                                                    Map<Tuple<Integer, Integer>, Long> edgeCounts) {
+        if (edgeCounts.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        ProbePlacement placement = new ProbePlacement(probePositionCfg);
+
+        // candidates are positions with a single, normal, executed outgoing edge; the weight
+        // of such a position is the count of its outgoing edge.
+        Map<Integer, Long> candidateWeights = new HashMap<>();
+        for (Node<ProbePosition> node : probePositionCfg.getAllNodes()) {
+            List<Edge<ProbePosition, FlowType>> outgoing = probePositionCfg.outgoingEdges(node);
+            if (outgoing.size() != 1 || outgoing.get(0).getData() != FlowType.NORMAL_FLOW) {
+                continue;
+            }
+
+            int src = node.getData().getId();
+            int dest = outgoing.get(0).getDestination().getData().getId();
+            long count = edgeCounts.getOrDefault(new Tuple<>(src, dest), 0L);
+            if (count > 0) {
+                candidateWeights.put(src, count);
+            }
+        }
+
+        List<Integer> candidates = candidateWeights.keySet().stream().
+                sorted(Comparator.comparing((Integer id) -> candidateWeights.get(id)).reversed().
+                        thenComparing(Comparator.naturalOrder())).
+                collect(Collectors.toList());
+
+        for (int candidate : candidates) {
+            placement.unprobed.add(candidate);
+            if (!placement.isReconstructible(candidate)) {
+                placement.unprobed.remove(candidate);
+            }
+        }
+
+        return placement.unprobed;
+    }
+
+    /**
+     * Returns the first probed position reached from position (position itself if it is probed),
+     * or null if the unprobed positions form a cycle.
+     */
+    private Integer probedDestinationOf(int position) {
+        Set<Integer> visited = new HashSet<>();
+        int current = position;
+        while (unprobed.contains(current)) {
+            if (!visited.add(current)) {
+                return null;
+            }
+            current = successors.get(current).get(0);
+        }
+
+        return current;
+    }
+
+    /**
+     * Checks the reconstruction invariants after the newly unprobed position was added.
+     */
+    private boolean isReconstructible(int newlyUnprobed) {
+        if (probedDestinationOf(newlyUnprobed) == null) {
+            return false;
+        }
+
+        // all unprobed positions whose chain runs through the new one changed their destination
+        Set<Integer> affected = new HashSet<>();
+        Deque<Integer> worklist = new ArrayDeque<>();
+        worklist.add(newlyUnprobed);
+        while (!worklist.isEmpty()) {
+            int position = worklist.poll();
+            if (!affected.add(position)) {
+                continue;
+            }
+
+            for (int predecessor : predecessors.get(position)) {
+                if (unprobed.contains(predecessor)) {
+                    worklist.add(predecessor);
+                }
+            }
+        }
+
+        // the successors of every predecessor of an affected position must still lead to distinct
+        // probed positions
+        Set<Integer> predecessorsToCheck = affected.stream().
+                flatMap(position -> predecessors.get(position).stream()).
+                collect(Collectors.toSet());
+
+        for (int predecessor : predecessorsToCheck) {
+            Set<Integer> destinations = new HashSet<>();
+            for (int successor : successors.get(predecessor)) {
+                if (!destinations.add(probedDestinationOf(successor))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,224 @@
+package pacovfor$jbc.analysis;
+
+import pacovfor$jbc.analysis.graphtypes.ProbePositionCfg;
+import pacovfor$jbc.analysis.nodetypes.ProbePosition;
+import pacovfor$jbc.graph.CsrGraph;
+import pacovfor$jbc.graph.DominatorTree;
+import pacovfor$jbc.graph.Node;
+import pacovfor$jbc.graph.StronglyConnectedComponents;
+
+import java.util.*;
+
+/**
+ * Superblock analysis (Agrawal, "Dominators, super blocks, and program coverage") of a ProbePositionCfg
+ * used to drop probes whose node coverage is implied by other probes.
+ * <p>
+ * If a node is executed, its dominators were executed, and, if the method completes, its post-dominators
+ * will be executed. Nodes that imply each other in the union of the dominator and post-dominator trees form
+ * a superblock; one probe answers node coverage of the whole superblock. A superblock does not need a probe
+ * at all if every complete path through it passes a probed node it dominates or post-dominates.
+ * <p>
+ * The method may also be left by an exception of any instruction that can throw (see
+ * ProbePosition#canThrowBeforeProbe and #canThrowAfterProbe). Post-dominators and exits are therefore computed
+ * on the cfg with an abrupt exit node, which has an edge from every position whose probe may be the last one
+ * to run before such an exception: a position that can throw after its probe, and the predecessors of a
+ * position that can throw before its probe.
+ */
+public class SuperblockAnalysis {
+
+    private final int n;
+    private final int root;
+    private final int[] ids; // probe position id of each index
+    private final CsrGraph cfg;
+    private final int abruptExit; // node of exitCfg every exception that leaves the method flows to
+    private final CsrGraph exitCfg; // cfg with the abrupt exit
+
+    private SuperblockAnalysis(ProbePositionCfg probePositionCfg) {
+        List<Node<ProbePosition>> nodes = new ArrayList<>(probePositionCfg.getAllNodes());
+        nodes.sort(Comparator.comparingInt(node -> node.getData().getId()));
+
+        this.n = nodes.size();
+        this.ids = new int[n];
+        Map<Node<ProbePosition>, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ids[i] = nodes.get(i).getData().getId();
+            indexOf.put(nodes.get(i), i);
+        }
+
+        this.cfg = CsrGraph.of(probePositionCfg, indexOf);
+        this.root = indexOf.get(probePositionCfg.getRoot());
+        this.abruptExit = n;
+        this.exitCfg = withAbruptExit(nodes);
+    }
+
+    private CsrGraph withAbruptExit(List<Node<ProbePosition>> nodes) {
+        BitSet throwing = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            ProbePosition probePosition = nodes.get(i).getData();
+            if (probePosition.canThrowAfterProbe()) {
+                throwing.set(i);
+            }
+            if (probePosition.canThrowBeforeProbe()) {
+                for (int p = cfg.predecessorsStart(i); p < cfg.predecessorsEnd(i); p++) {
+                    throwing.set(cfg.predecessorAt(p));
+                }
+            }
+        }
+
+        int edgeCount = cfg.edgeCount() + throwing.cardinality();
+        int[] sources = new int[edgeCount];
+        int[] destinations = new int[edgeCount];
+        for (int e = 0; e < cfg.edgeCount(); e++) {
+            sources[e] = cfg.edgeSource(e);
+            destinations[e] = cfg.edgeDestination(e);
+        }
+        int e = cfg.edgeCount();
+        for (int i = throwing.nextSetBit(0); i >= 0; i = throwing.nextSetBit(i + 1), e++) {
+            sources[e] = i;
+            destinations[e] = abruptExit;
+        }
+
+        return new CsrGraph(n + 1, sources, destinations);
+    }
+
+    /**
+     * Returns, for every probe position that does not need a probe, the ids of the probed positions
+     * that imply it. i.e., the position is covered iff at least one of these positions is covered.
+     */
+    public static Map<Integer, Set<Integer>> getImpliedPositions(ProbePositionCfg probePositionCfg) {
+        return new SuperblockAnalysis(probePositionCfg).impliedPositions();
+    }
+
+    private Map<Integer, Set<Integer>> impliedPositions() {
+        DominatorTree dominators = DominatorTree.dominatorsOf(cfg, root);
+        DominatorTree postDominators = DominatorTree.postDominatorsOf(exitCfg);
+
+        // union of dominator and post-dominator trees: parent -> child, where the child implies the parent
+        List<Integer> parents = new ArrayList<>();
+        List<Integer> children = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int idom = dominators.immediateDominator(i);
+            if (idom >= 0) {
+                parents.add(idom);
+                children.add(i);
+            }
+
+            int ipdom = postDominators.immediateDominator(i);
+            if (ipdom >= 0 && ipdom != postDominators.getEntry() && ipdom != abruptExit) {
+                parents.add(ipdom);
+                children.add(i);
+            }
+        }
+
+        CsrGraph implications = new CsrGraph(n, parents.stream().mapToInt(Integer::intValue).toArray(),
+                children.stream().mapToInt(Integer::intValue).toArray());
+        StronglyConnectedComponents superblocks = StronglyConnectedComponents.of(implications);
+
+        // superblocks are in reverse topological order (children first).
+        BitSet[] probedDescendants = new BitSet[superblocks.componentCount()];
+        BitSet probed = new BitSet(n);
+        for (int s = 0; s < superblocks.componentCount(); s++) {
+            BitSet descendants = new BitSet(n);
+            int[] members = superblocks.membersOf(s);
+            for (int node : members) {
+                for (int e = implications.successorsStart(node); e < implications.successorsEnd(node); e++) {
+                    int child = implications.successorAt(e);
+                    int childSuperblock = superblocks.componentOf(child);
+                    if (childSuperblock != s) {
+                        descendants.or(probedDescendants[childSuperblock]);
+                        for (int childNode : superblocks.membersOf(childSuperblock)) {
+                            if (probed.get(childNode)) {
+                                descendants.set(childNode);
+                            }
+                        }
+                    }
+                }
+            }
+            probedDescendants[s] = descendants;
+
+            // nodes that are unreachable or can not reach an exit are always probed
+            int representative = members[0];
+            boolean hasNoCompletePath = !dominators.isReachable(representative) ||
+                    !postDominators.isReachable(representative);
+            if (hasNoCompletePath || hasCompletePathAvoiding(representative, descendants)) {
+                probed.set(representative);
+            }
+        }
+
+        Map<Integer, Set<Integer>> implied = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (probed.get(i)) {
+                continue;
+            }
+
+            // probed nodes of the same superblock or of a descendant superblock imply the node
+            int s = superblocks.componentOf(i);
+            BitSet implying = new BitSet(n);
+            for (int node : superblocks.membersOf(s)) {
+                implying.set(node);
+            }
+            implying.and(probed);
+            implying.or(probedDescendants[s]);
+
+            Set<Integer> implyingIds = new TreeSet<>();
+            implying.stream().forEach(index -> implyingIds.add(ids[index]));
+            implied.put(ids[i], implyingIds);
+        }
+
+        return implied;
+    }
+
+    /**
+     * Checks whether a path from the root through node to an exit, possibly the abrupt exit, exists that avoids
+     * all nodes in avoid.
+     */
+    private boolean hasCompletePathAvoiding(int node, BitSet avoid) {
+        return isReachableAvoiding(root, node, avoid) && reachesExitAvoiding(node, avoid);
+    }
+
+    private boolean reachesExitAvoiding(int from, BitSet avoid) {
+        BitSet visited = new BitSet(n + 1);
+        Deque<Integer> worklist = new ArrayDeque<>();
+        worklist.push(from);
+        visited.set(from);
+        while (!worklist.isEmpty()) {
+            int current = worklist.pop();
+            if (exitCfg.outDegree(current) == 0) {
+                return true;
+            }
+            for (int e = exitCfg.successorsStart(current); e < exitCfg.successorsEnd(current); e++) {
+                int successor = exitCfg.successorAt(e);
+                if (!visited.get(successor) && !avoid.get(successor)) {
+                    visited.set(successor);
+                    worklist.push(successor);
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isReachableAvoiding(int from, int to, BitSet avoid) {
+        if (avoid.get(from)) {
+            return false;
+        }
+
+        BitSet visited = new BitSet(n);
+        Deque<Integer> worklist = new ArrayDeque<>();
+        worklist.push(from);
+        visited.set(from);
+        while (!worklist.isEmpty()) {
+            int current = worklist.pop();
+            if (current == to) {
+                return true;
+            }
+            for (int e = cfg.successorsStart(current); e < cfg.successorsEnd(current); e++) {
+                int successor = cfg.successorAt(e);
+                if (!visited.get(successor) && !avoid.get(successor)) {
+                    visited.set(successor);
+                    worklist.push(successor);
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -21,6 +21,11 @@ public class BasicBlockCfg extends Graph<BasicBlock, FlowType> {
         super();
     }
 
+    @Override
+    protected byte flowTypeOf(FlowType flowType) {
+        return flowType.toByte();
+    }
+
     public boolean hasOutgoingExceptionalEdgesFrom(Node<BasicBlock> fromNode) {
         return this.outgoingEdges(fromNode).stream().anyMatch(edge ->
                 edge.getData() == FlowType.EXCEPTIONAL_FLOW);
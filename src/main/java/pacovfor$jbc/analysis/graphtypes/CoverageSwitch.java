@@ -0,0 +1,48 @@
+package pacovfor$jbc.analysis.graphtypes;
+
+import pacovfor$jbc.config.Config;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+
+/**
+ * Runtime-wide switch that turns coverage on and off (see Config.coverageEnabled). Methods instrumented with
+ * the switch (see Config.coverageSwitch) check it on entry through an invokedynamic call site linked to a
+ * single MutableCallSite that returns a constant, so the JIT folds the check and a disabled method runs its
+ * uninstrumented copy with no other cost; turning the switch deoptimizes the methods compiled with the old
+ * constant. The runtime checks the switch on every call as well, for methods without a copy.
+ */
+public class CoverageSwitch {
+
+    private static final MutableCallSite callSite = new MutableCallSite(
+            MethodHandles.constant(boolean.class, Config.coverageEnabled));
+    private static volatile boolean isEnabled = Config.coverageEnabled;
+
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Turns coverage on or off for all threads; use GraphAdapter#setCoverageEnabled, which also starts the
+     * runtime when coverage is enabled for the first time.
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled == isEnabled) {
+            return;
+        }
+
+        isEnabled = enabled;
+        callSite.setTarget(MethodHandles.constant(boolean.class, enabled));
+        MutableCallSite.syncAll(new MutableCallSite[]{callSite});
+    }
+
+    /**
+     * Bootstrap method of the coverage switch of an instrumented method (see
+     * MethodAdapter#addUninstrumentedBodyBranches): links every method to the same call site.
+     */
+    public static CallSite bootstrap(MethodHandles.Lookup lookup, String name, MethodType type) {
+        return callSite;
+    }
+}
@@ -0,0 +1,23 @@
+package pacovfor$jbc.analysis.graphtypes;
+
+/**
+ * How far the coverage of a method is reduced at runtime to bound its overhead (see OverheadGovernor), from
+ * no reduction to none at all. Each degradation keeps the reductions of the ones before it.
+ */
+public enum Degradation {
+    // every requirement of the coverage level is covered
+    NONE,
+    // only nodes are covered; edges, edge-pairs, prime paths and def-use pairs are not
+    NODES_ONLY,
+    // only one in Config.governorSampleRate invocations (or probe hits in online mode) is covered
+    SAMPLED,
+    // nothing is covered; only whether the method was entered is kept
+    OFF;
+
+    /**
+     * Returns the name of the degradation in lower case and with '-' for '_' (e.g., "nodes-only").
+     */
+    public String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
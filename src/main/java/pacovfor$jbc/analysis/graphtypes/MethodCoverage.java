@@ -0,0 +1,474 @@
+package pacovfor$jbc.analysis.graphtypes;
+
+import pacovfor$jbc.analysis.BallLarusNumbering;
+import pacovfor$jbc.analysis.LineTable;
+import pacovfor$jbc.analysis.testrequirements.CoverageBits;
+import pacovfor$jbc.analysis.testrequirements.StripedCounters;
+import pacovfor$jbc.config.Config;
+import pacovfor$jbc.config.CoverageLevel;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.invoke.SwitchPoint;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runtime coverage state of one method. The graph and the test requirements live in the cfg shape of the
+ * method (a ProbePositionIDCfg shared by every method with the same shape, see ProbePositionIDCfg#printToFile);
+ * the method only keeps whether it was entered, one coverage bit per requirement, its path counts in
+ * path profiling mode, the execution counts of its nodes and edges if they are counted, its sampling
+ * state if it is sampled, its overhead and degradation if the overhead is governed, and the switch of its
+ * probes if they disable themselves.
+ */
+public class MethodCoverage {
+
+    // methods with at most this many paths count them in an array, others in a map
+    private final static int MAX_PATHS_COUNTED_IN_ARRAY = 4096;
+
+    private final String filePath;
+    private final String fullMethodName;
+    private final ProbePositionIDCfg shape;
+    private final LineTable lineTable;
+
+    private final CoverageBits coveredNodes;
+    private final CoverageBits coveredEdges;
+    private final CoverageBits coveredEdgePairs;
+    private final CoverageBits coveredPrimePaths;
+    private final CoverageBits coveredDefUsePairs;
+
+    private final AtomicLongArray pathCounts;
+    private final ConcurrentHashMap<Integer, LongAdder> sparsePathCounts;
+
+    // executions by node index and edge id of the shape (see Config.executionCounts); null if not counted
+    private final StripedCounters nodeExecutions;
+    private final StripedCounters edgeExecutions;
+
+    // sampling state (see Config.sampleRates and Sampler): a sampler per thread, and all of them to add up
+    // their counts; samplers are used by sampled methods and by governed methods once degraded to SAMPLED
+    private final int sampleRate;
+    private final int degradedSampleRate; // the sample rate once the method is degraded to SAMPLED
+    private final ThreadLocal<Sampler> samplers;
+    private final Queue<Sampler> allSamplers;
+
+    // cost of the calls of the method into the runtime (see Config.overheadBudget); null if not governed
+    private final OverheadMeter overheadMeter;
+    private volatile Degradation degradation = Degradation.NONE;
+
+    // switch of the probes of the method (see Config.selfDisablingProbes), invalidated once the method is
+    // saturated; null if the method has none
+    private final SwitchPoint probeSwitch;
+    private volatile boolean isProbeSwitchOn;
+    private volatile long changesAtLastSaturationCheck = -1;
+
+    /**
+     * a field indicating whether the method was entered.
+     * Note: volatile; should not affect the probes as it will read last.
+     */
+    private volatile boolean isEntered;
+
+    /**
+     * @param shape     - cfg shape of the method; its test requirements should be updated
+     * @param lineTable  - source lines of the method, or null if they are unknown
+     * @param sampleRate  - the method records one in sampleRate invocations; 1 if it is not sampled
+     * @param probeSwitch - whether the probes of the method can be switched off (see isProbeSwitchOn)
+     */
+    public MethodCoverage(String filePath, String fullMethodName, ProbePositionIDCfg shape, LineTable lineTable,
+                          int sampleRate, boolean probeSwitch) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("sample rate should be positive: " + sampleRate);
+        }
+
+        this.filePath = filePath;
+        this.fullMethodName = fullMethodName;
+        this.shape = shape;
+        this.lineTable = lineTable;
+        this.isEntered = false;
+        this.sampleRate = sampleRate;
+
+        this.coveredNodes = new CoverageBits(shape.getNumberOfNodeRequirements(), Config.coverageStripes);
+        this.coveredEdges = new CoverageBits(shape.getNumberOfEdgeRequirements(), Config.coverageStripes);
+        this.coveredEdgePairs = new CoverageBits(shape.getNumberOfEdgePairRequirements(), Config.coverageStripes);
+        this.coveredPrimePaths = new CoverageBits(shape.getNumberOfPrimePathRequirements(), Config.coverageStripes);
+        this.coveredDefUsePairs = new CoverageBits(shape.getNumberOfDefUseRequirements(), Config.coverageStripes);
+
+        BallLarusNumbering numbering = shape.getBallLarusNumbering();
+        if (numbering != null && numbering.getNumberOfPaths() <= MAX_PATHS_COUNTED_IN_ARRAY) {
+            this.pathCounts = new AtomicLongArray((int) numbering.getNumberOfPaths());
+            this.sparsePathCounts = null;
+        } else if (numbering != null) {
+            this.pathCounts = null;
+            this.sparsePathCounts = new ConcurrentHashMap<>();
+        } else {
+            this.pathCounts = null;
+            this.sparsePathCounts = null;
+        }
+
+        if (Config.executionCounts && shape.getCoverageLevel() != CoverageLevel.METHOD && numbering == null) {
+            this.nodeExecutions = new StripedCounters(shape.getCsr().nodeCount(), Config.coverageStripes);
+            this.edgeExecutions = new StripedCounters(shape.getCsr().edgeCount(), Config.coverageStripes);
+        } else {
+            this.nodeExecutions = null;
+            this.edgeExecutions = null;
+        }
+
+        boolean isGoverned = Config.overheadBudget > 0 && shape.getCoverageLevel() != CoverageLevel.METHOD;
+        this.degradedSampleRate = (int) Math.min(Integer.MAX_VALUE, (long) sampleRate * Config.governorSampleRate);
+        if (sampleRate > 1 || isGoverned) {
+            this.allSamplers = new ConcurrentLinkedQueue<>();
+            this.samplers = ThreadLocal.withInitial(() -> {
+                Sampler sampler = new Sampler();
+                allSamplers.add(sampler);
+                return sampler;
+            });
+        } else {
+            this.allSamplers = null;
+            this.samplers = null;
+        }
+        this.overheadMeter = isGoverned ? new OverheadMeter(Config.coverageStripes) : null;
+        this.probeSwitch = probeSwitch ? new SwitchPoint() : null;
+        this.isProbeSwitchOn = probeSwitch;
+    }
+
+    /**
+     * Reads the method file written by ProbePositionIDCfg#printToFile: the file path, the full method
+     * name, isEntered, the relative file path of the shape, which is resolved with loadShape, the sample
+     * rate, whether there is a probe switch and the line table.
+     */
+    public static MethodCoverage readFromFile(String fileName, Function<String, ProbePositionIDCfg> loadShape) {
+        String relativeFilePathOfMethod;
+        String fullMethodName;
+        String relativeFilePathOfShape;
+        int sampleRate;
+        boolean probeSwitch;
+        LineTable lineTable = null;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(Config.cfgsDir + File.separator + fileName), StandardCharsets.UTF_8))) {
+            relativeFilePathOfMethod = br.readLine(); // relative file path of method
+            fullMethodName = br.readLine(); // full method name
+            br.readLine(); // read isEntered and ignore
+            relativeFilePathOfShape = br.readLine(); // relative file path of shape
+            sampleRate = Integer.parseInt(br.readLine()); // sample rate
+            probeSwitch = Boolean.parseBoolean(br.readLine()); // whether there is a probe switch
+
+            // parse line table
+            if (Boolean.parseBoolean(br.readLine())) {
+                lineTable = LineTable.readFrom(br);
+            }
+
+            // sanity check
+            if (br.readLine() != null) {
+                throw new IllegalStateException(fileName + ": there should be no more lines");
+            }
+        } catch (IOException | NumberFormatException | IllegalStateException e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+
+        return new MethodCoverage(relativeFilePathOfMethod, fullMethodName, loadShape.apply(relativeFilePathOfShape),
+                lineTable, sampleRate, probeSwitch);
+    }
+
+    /**
+     * Sampling state of one thread for one method. Only its thread writes it, so it needs no synchronization;
+     * its counts are read without synchronization when they are reported.
+     */
+    private static final class Sampler {
+
+        // invocations until the next sampled one; the first invocation of a thread is sampled
+        private int countdown = 1;
+        private long invocations;
+        private long sampledInvocations;
+
+        /**
+         * Returns true, restarting the countdown at rate, when it runs out.
+         */
+        private boolean countDown(int rate) {
+            if (countdown > 1) {
+                countdown--;
+                return false;
+            }
+
+            countdown = rate;
+            return true;
+        }
+    }
+
+    /**
+     * Decides whether the current invocation of a sampled method records its path: every thread records the
+     * first of its invocations and then one in sampleRate (see Sampler). Called on entry of sampled methods
+     * (see MethodAdapter#addUninstrumentedBodyBranches), so that unsampled invocations run no probe; the
+     * method is marked as entered here, so that it is even if none of its invocations is sampled.
+     */
+    public boolean sample() {
+        if (!isEntered && CoverageSwitch.isEnabled()) {
+            isEntered = true;
+        }
+
+        Degradation current = degradation;
+        if (current == Degradation.OFF) {
+            return false;
+        } else if (sampleRate <= 1) {
+            return true;
+        }
+
+        Sampler sampler = samplers.get();
+        sampler.invocations++;
+        if (!sampler.countDown(current == Degradation.SAMPLED ? degradedSampleRate : sampleRate)) {
+            return false;
+        }
+
+        sampler.sampledInvocations++;
+        return true;
+    }
+
+    /**
+     * Returns true if the recorded path (or path count) of the current invocation should be covered, i.e.,
+     * unless the method is degraded (see Degradation): nothing is covered when it is off, and only one in
+     * Config.governorSampleRate invocations of every thread when it is degraded to SAMPLED without an
+     * uninstrumented body to run instead (see sample).
+     */
+    public boolean shouldCover() {
+        Degradation current = degradation;
+        if (current.compareTo(Degradation.SAMPLED) < 0) {
+            return true;
+        } else if (current == Degradation.OFF) {
+            return false;
+        }
+
+        return sampleRate > 1 || samplers.get().countDown(Config.governorSampleRate);
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Returns the number of invocations of a sampled method while coverage was enabled, sampled or not, or -1
+     * if the method is not sampled.
+     */
+    public long getInvocations() {
+        return sampleRate <= 1 ? -1 : allSamplers.stream().mapToLong(sampler -> sampler.invocations).sum();
+    }
+
+    /**
+     * Returns the number of invocations that were sampled, or -1 if the method is not sampled.
+     */
+    public long getSampledInvocations() {
+        return sampleRate <= 1 ? -1 : allSamplers.stream().mapToLong(sampler -> sampler.sampledInvocations).sum();
+    }
+
+    /**
+     * Returns the cost of the calls of the method into the runtime, or null if it is not measured (see
+     * Config.overheadBudget).
+     */
+    public OverheadMeter getOverheadMeter() {
+        return overheadMeter;
+    }
+
+    public Degradation getDegradation() {
+        return degradation;
+    }
+
+    public void setDegradation(Degradation degradation) {
+        this.degradation = degradation;
+    }
+
+    public void setEntered(boolean isEntered) {
+        this.isEntered = isEntered;
+    }
+
+    public boolean isEntered() {
+        return isEntered;
+    }
+
+    /**
+     * Covers the test requirements that the path ids[0 .. length - 1] of probe position ids covers.
+     * ids may be overwritten.
+     */
+    public void coverTestRequirements(int[] ids, int length) {
+        if (overheadMeter == null || !overheadMeter.startCall()) {
+            shape.coverTestRequirements(ids, length, this);
+        } else {
+            long start = System.nanoTime();
+            shape.coverTestRequirements(ids, length, this);
+            overheadMeter.endMeasuredCall(System.nanoTime() - start);
+        }
+
+        if (probeSwitch != null) {
+            checkSaturation();
+        }
+    }
+
+    /**
+     * Covers the requirements of one probe hit of a method instrumented for online coverage and returns the
+     * edge the probe keeps for the next hit (see ProbePositionIDCfg#coverStep), -1 if the hit is not covered.
+     * Called by the probes, so a degraded method also checks shouldCover here, and a method without an
+     * uninstrumented copy the coverage switch (see CoverageSwitch).
+     */
+    public int coverStep(int previousEdge, int last, int id) {
+        int edge;
+        if (!CoverageSwitch.isEnabled()) {
+            return -1;
+        } else if (overheadMeter == null) {
+            edge = shape.coverStep(previousEdge, last, id, this);
+        } else if (!shouldCover()) {
+            return -1;
+        } else if (!overheadMeter.startCall()) {
+            edge = shape.coverStep(previousEdge, last, id, this);
+        } else {
+            long start = System.nanoTime();
+            edge = shape.coverStep(previousEdge, last, id, this);
+            overheadMeter.endMeasuredCall(System.nanoTime() - start);
+        }
+
+        if (probeSwitch != null) {
+            checkSaturation();
+        }
+        return edge;
+    }
+
+    /**
+     * Switches the probes of the method off if it is saturated (see ProbePositionIDCfg#isSaturated). The
+     * saturation is only computed again when a coverage bit was set since the last check, which becomes rare
+     * as coverage grows. Methods whose executions are counted keep their probes.
+     */
+    private void checkSaturation() {
+        if (!isProbeSwitchOn || nodeExecutions != null) {
+            return;
+        }
+
+        long changes = coveredNodes.getNumberOfChanges() + coveredEdges.getNumberOfChanges() +
+                coveredEdgePairs.getNumberOfChanges() + coveredPrimePaths.getNumberOfChanges() +
+                coveredDefUsePairs.getNumberOfChanges();
+        if (changes == changesAtLastSaturationCheck) {
+            return;
+        }
+
+        changesAtLastSaturationCheck = changes;
+        if (shape.isSaturated(this)) {
+            switchProbesOff();
+        }
+    }
+
+    private synchronized void switchProbesOff() {
+        if (isProbeSwitchOn) {
+            isProbeSwitchOn = false;
+            SwitchPoint.invalidateAll(new SwitchPoint[]{probeSwitch});
+        }
+    }
+
+    /**
+     * Returns the switch of the probes of the method, which is valid until the method is saturated, or null
+     * if the method has none (see Config.selfDisablingProbes).
+     */
+    public SwitchPoint getProbeSwitch() {
+        return probeSwitch;
+    }
+
+    /**
+     * Returns true until the probes of a method with a probe switch are switched off. Checked on entry of
+     * instrumented methods of class files that can not use invokedynamic (see getProbeSwitch).
+     */
+    public boolean isProbeSwitchOn() {
+        return isProbeSwitchOn;
+    }
+
+    /**
+     * Counts one execution of path pathId (path profiling mode only).
+     */
+    public void countPath(int pathId) {
+        if (overheadMeter == null || !overheadMeter.startCall()) {
+            incrementPathCount(pathId);
+            return;
+        }
+
+        long start = System.nanoTime();
+        incrementPathCount(pathId);
+        overheadMeter.endMeasuredCall(System.nanoTime() - start);
+    }
+
+    private void incrementPathCount(int pathId) {
+        if (pathCounts != null) {
+            pathCounts.incrementAndGet(pathId);
+        } else {
+            sparsePathCounts.computeIfAbsent(pathId, id -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Returns the number of executions of each executed path (path profiling mode only).
+     */
+    public Map<Integer, Long> getExecutedPaths() {
+        Map<Integer, Long> executedPaths = new HashMap<>();
+        if (pathCounts != null) {
+            for (int pathId = 0; pathId < pathCounts.length(); pathId++) {
+                if (pathCounts.get(pathId) > 0) {
+                    executedPaths.put(pathId, pathCounts.get(pathId));
+                }
+            }
+        } else if (sparsePathCounts != null) {
+            sparsePathCounts.forEach((pathId, count) -> executedPaths.put(pathId, count.sum()));
+        }
+
+        return executedPaths;
+    }
+
+    public Map<String, Integer> getCoverageInfoKeyPairs() {
+        return shape.getCoverageInfoKeyPairs(this);
+    }
+
+    public LineTable getLineTable() {
+        return lineTable;
+    }
+
+    public ProbePositionIDCfg getShape() {
+        return shape;
+    }
+
+    CoverageBits getCoveredNodes() {
+        return coveredNodes;
+    }
+
+    CoverageBits getCoveredEdges() {
+        return coveredEdges;
+    }
+
+    CoverageBits getCoveredEdgePairs() {
+        return coveredEdgePairs;
+    }
+
+    CoverageBits getCoveredPrimePaths() {
+        return coveredPrimePaths;
+    }
+
+    CoverageBits getCoveredDefUsePairs() {
+        return coveredDefUsePairs;
+    }
+
+    StripedCounters getNodeExecutions() {
+        return nodeExecutions;
+    }
+
+    StripedCounters getEdgeExecutions() {
+        return edgeExecutions;
+    }
+
+    public String getRelativeFilePath() {
+        return filePath;
+    }
+
+    public String getFullMethodName() {
+        return fullMethodName;
+    }
+}
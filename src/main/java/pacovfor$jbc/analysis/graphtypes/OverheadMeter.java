@@ -0,0 +1,72 @@
+package pacovfor$jbc.analysis.graphtypes;
+
+import pacovfor$jbc.analysis.testrequirements.StripedCounters;
+import pacovfor$jbc.analysis.testrequirements.Stripes;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the calls of a method into the coverage runtime (covering a path, a probe hit or a path count)
+ * and the time they take (see Config.overheadBudget). Only the last of every MEASURED_CALL_PERIOD calls is
+ * timed; the others only decrement a countdown of their thread, which is striped like the coverage bits (see
+ * Config.coverageStripes) and read and written without synchronization. The first, cold calls of a method
+ * are never timed, so a method called only a few times is estimated to cost nothing.
+ */
+public class OverheadMeter {
+
+    private static final int MEASURED_CALL_PERIOD = 64;
+    // ints from the countdown of a stripe to that of the next
+    private static final int COUNTDOWN_STRIDE = Stripes.CACHE_LINE_INTS;
+
+    private static final int MEASURED_CALLS = 0;
+    private static final int MEASURED_NANOS = 1;
+
+    private final int stripeMask;
+    private final int[] countdowns;
+    private final StripedCounters measured;
+
+    /**
+     * @param stripes - number of stripes, a power of two (see Stripes)
+     */
+    public OverheadMeter(int stripes) {
+        int numberOfStripes = Stripes.checkStripes(stripes);
+        this.stripeMask = numberOfStripes - 1;
+        this.countdowns = new int[numberOfStripes * COUNTDOWN_STRIDE];
+        Arrays.fill(this.countdowns, MEASURED_CALL_PERIOD);
+        this.measured = new StripedCounters(2, numberOfStripes);
+    }
+
+    /**
+     * Returns true if the current call should be timed and its time passed to endMeasuredCall.
+     */
+    public boolean startCall() {
+        int slot = Stripes.stripeOfCurrentThread(stripeMask) * COUNTDOWN_STRIDE;
+        int countdown = countdowns[slot];
+        if (countdown > 1) {
+            countdowns[slot] = countdown - 1;
+            return false;
+        }
+
+        countdowns[slot] = MEASURED_CALL_PERIOD;
+        return true;
+    }
+
+    public void endMeasuredCall(long nanos) {
+        measured.increment(MEASURED_CALLS);
+        measured.add(MEASURED_NANOS, nanos);
+    }
+
+    /**
+     * Returns the estimated number of calls so far.
+     */
+    public long getCalls() {
+        return measured.get(MEASURED_CALLS) * MEASURED_CALL_PERIOD;
+    }
+
+    /**
+     * Returns the estimated time of all calls so far in nanoseconds.
+     */
+    public long getNanos() {
+        return measured.get(MEASURED_NANOS) * MEASURED_CALL_PERIOD;
+    }
+}
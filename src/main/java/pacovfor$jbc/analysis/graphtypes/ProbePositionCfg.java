@@ -25,6 +25,11 @@ public class ProbePositionCfg extends Graph<ProbePosition, FlowType> {
         super();
     }
 
+    @Override
+    protected byte flowTypeOf(FlowType flowType) {
+        return flowType.toByte();
+    }
+
     private String getDotNodeID(ProbePosition pb) {
         String isEntry = pb.isEntry() ? " isEntry" : "";
         String isExit = pb.isExit() ? " isExit" : "";
@@ -55,6 +60,7 @@ public class ProbePositionCfg extends Graph<ProbePosition, FlowType> {
             );
         }
 
+        newCfg.freeze();
         return newCfg;
     }
 
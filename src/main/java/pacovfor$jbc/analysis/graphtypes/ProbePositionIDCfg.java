@@ -1,29 +1,51 @@
 package pacovfor$jbc.analysis.graphtypes;
 
+import pacovfor$jbc.analysis.BallLarusNumbering;
+import pacovfor$jbc.analysis.DefUseAnalysis;
 import pacovfor$jbc.analysis.FlowType;
+import pacovfor$jbc.analysis.LineTable;
 import pacovfor$jbc.analysis.nodetypes.ProbePositionID;
-import pacovfor$jbc.analysis.testrequirements.NodeTR;
+import pacovfor$jbc.analysis.testrequirements.CoverageBits;
+import pacovfor$jbc.analysis.testrequirements.PrimePathTrie;
+import pacovfor$jbc.analysis.testrequirements.StripedCounters;
 import pacovfor$jbc.config.Config;
+import pacovfor$jbc.config.CoverageLevel;
+import pacovfor$jbc.graph.CsrGraph;
 import pacovfor$jbc.graph.Edge;
 import pacovfor$jbc.graph.Graph;
 import pacovfor$jbc.graph.Node;
-import pacovfor$jbc.analysis.testrequirements.AbstractTestRequirement;
-import pacovfor$jbc.analysis.testrequirements.EdgePairTR;
-import pacovfor$jbc.analysis.testrequirements.EdgeTR;
 import pacovfor$jbc.utils.Tuple;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static pacovfor$jbc.analysis.FlowType.NORMAL_FLOW;
 import static pacovfor$jbc.analysis.FlowType.EXCEPTIONAL_FLOW;
 
+/**
+ * Probe position cfg of a method together with its test requirements.
+ * <p>
+ * Many methods have the same cfg shape (getters, one-if guards, generated equals/hashCode, ...), so the
+ * cfg is stored once per distinct shape (see printToFile) and, at runtime, one ProbePositionIDCfg is
+ * loaded per shape and shared by all its methods. Requirements are numbered densely and only read when
+ * covering; the coverage bits of each method are kept in its MethodCoverage.
+ */
 public class ProbePositionIDCfg extends Graph<ProbePositionID, FlowType> {
 
+    // directory (relative to Config.cfgsDir) of the shape files; '#' can not appear in a class name
+    public final static String SHAPES_DIR = "#shapes";
+
     private final String filePath;
 
+    public final static String METHOD_ENTERED = "METHOD_ENTERED";
+
     public final static String NODES_COVERED = "NODES_COVERED";
     public final static String TOTAL_NODES = "TOTAL_NODES";
 
@@ -33,47 +55,229 @@ public class ProbePositionIDCfg extends Graph<ProbePositionID, FlowType> {
     public final static String EDGE_PAIRS_COVERED = "EDGE_PAIRS_COVERED";
     public final static String TOTAL_EDGE_PAIRS = "TOTAL_EDGE_PAIRS";
 
-    private final Map<NodeTR<ProbePositionID>, NodeTR<ProbePositionID>> nodeReqs = new HashMap<>();
-    private final Map<EdgeTR<ProbePositionID>, EdgeTR<ProbePositionID>> edgesReqs = new HashMap<>();
-    private final Map<EdgePairTR<ProbePositionID>, EdgePairTR<ProbePositionID>> edgePairsReqs = new HashMap<>();
+    public final static String PRIME_PATHS_COVERED = "PRIME_PATHS_COVERED";
+    public final static String TOTAL_PRIME_PATHS = "TOTAL_PRIME_PATHS";
+    public final static String PRIME_PATHS_TRUNCATED = "PRIME_PATHS_TRUNCATED";
+
+    public final static String DEFS_COVERED = "DEFS_COVERED";
+    public final static String TOTAL_DEFS = "TOTAL_DEFS";
+    public final static String DEF_USE_PAIRS_COVERED = "DEF_USE_PAIRS_COVERED";
+    public final static String TOTAL_DEF_USE_PAIRS = "TOTAL_DEF_USE_PAIRS";
+
+    public final static String LINES_COVERED = "LINES_COVERED";
+    public final static String TOTAL_LINES = "TOTAL_LINES";
+    public final static String BRANCHES_COVERED = "BRANCHES_COVERED";
+    public final static String TOTAL_BRANCHES = "TOTAL_BRANCHES";
+
+    public final static String PATHS_COVERED = "PATHS_COVERED";
+    public final static String TOTAL_PATHS = "TOTAL_PATHS";
+
+    // number of node, edge and edge-pair requirements; numbered when the shape is printed and read with it
+    // (see printRequirementsTo)
+    private int numberOfNodeReqs;
+    private int numberOfEdgeReqs;
+    private long numberOfEdgePairReqs;
     private final String fullMethodName;
 
+    // prime-path requirements (see Config.primePathCoverage); null if they are not measured
+    private PrimePathTrie primePathReqs;
+
+    // def-use pairs of local variables (see Config.defUseCoverage); null if they are not measured
+    private DefUseAnalysis defUseAnalysis;
+
+    /**
+     * probe positions that are not instrumented (see ProbePlacement). They never appear in a recorded
+     * path and are re-inserted into the path before covering test requirements.
+     */
+    private final Set<Node<ProbePositionID>> unprobedNodes = new HashSet<>();
+
+    /**
+     * the level the method is instrumented for; only the requirements of this level are created and covered.
+     * At node level, nodes in impliedNodes are not instrumented; each is covered iff one of the nodes that
+     * imply it is covered (see SuperblockAnalysis).
+     */
+    private CoverageLevel coverageLevel = CoverageLevel.EDGE_PAIR;
+    private final Map<Node<ProbePositionID>, Set<Node<ProbePositionID>>> impliedNodes = new HashMap<>();
+
+    /**
+     * Ball-Larus numbering of the method if it is instrumented in path profiling mode, null otherwise.
+     * Executed path ids are counted at runtime (see MethodCoverage) and mapped to test requirements when
+     * coverage is reported.
+     */
+    private BallLarusNumbering ballLarusNumbering;
+
+    /**
+     * if false, the cfg has no exceptional edges and basic blocks have a single probe position. A recorded
+     * path then jumps between two nodes that are not connected where an exception was caught; each part of
+     * the path is covered on its own.
+     */
+    private boolean exceptionalFlows = true;
+
     /**
-     * a field indicating whether the method represented by the cfg was entered.
-     * Note: volatile; should not affect the probes as it will read last.
+     * if true, the method is instrumented to cover nodes, edges and edge-pairs at every probe (see
+     * coverStep) instead of recording its path. Prime paths and def-use pairs are then not measured.
      */
-    private volatile boolean isEntered;
+    private boolean onlineCoverage = false;
+
+    // source lines of the method; printed to the method file since lines are not part of the shape
+    private LineTable lineTable;
+
+    // the method records one in sampleRate invocations (see Config.sampleRates), and whether its probes can
+    // be switched off (see Config.selfDisablingProbes); printed to the method file
+    private int sampleRate = 1;
+    private boolean probeSwitch = false;
+
+    // dense lookup tables by node index in getCsr() (see updateLookupTables); -1 where there is none. A
+    // shape read from a file keeps the order of the file, so the node requirement of node v is v and the
+    // edge requirement of an edge is its edge id; the edge-pairs through node v are numbered from
+    // edgePairOffsetOfIndex[v], which is read with the shape
+    private int[] indexOfId;
+    private int[] idOfIndex;
+    private long[] edgePairOffsetOfIndex;
+    private boolean[] isUnprobedIndex;
 
     public ProbePositionIDCfg(String filePath, String fullMethodName) {
         this.fullMethodName = fullMethodName;
         this.filePath = filePath;
-        this.isEntered = false;
     }
 
-    public void setEntered(boolean isEntered) {
-        this.isEntered = isEntered;
+    @Override
+    protected byte flowTypeOf(FlowType flowType) {
+        return flowType.toByte();
+    }
+
+    public void setUnprobedNodes(Set<Integer> unprobedProbePositionIDs) {
+        this.unprobedNodes.clear();
+        unprobedProbePositionIDs.forEach(id -> this.unprobedNodes.add(new Node<>(new ProbePositionID(id))));
+    }
+
+    public Set<Node<ProbePositionID>> getUnprobedNodes() {
+        return Collections.unmodifiableSet(unprobedNodes);
     }
 
-    public boolean isEntered() {
-        return isEntered;
+    public void setCoverageLevel(CoverageLevel coverageLevel) {
+        this.coverageLevel = coverageLevel;
+    }
+
+    public CoverageLevel getCoverageLevel() {
+        return coverageLevel;
+    }
+
+    public void setExceptionalFlows(boolean exceptionalFlows) {
+        this.exceptionalFlows = exceptionalFlows;
+    }
+
+    public boolean hasExceptionalFlows() {
+        return exceptionalFlows;
+    }
+
+    public void setOnlineCoverage(boolean onlineCoverage) {
+        this.onlineCoverage = onlineCoverage;
+    }
+
+    public boolean hasOnlineCoverage() {
+        return onlineCoverage;
+    }
+
+    public void setImpliedNodes(Map<Integer, Set<Integer>> impliedProbePositionIDs) {
+        this.impliedNodes.clear();
+        impliedProbePositionIDs.forEach((id, implyingIds) -> this.impliedNodes.put(
+                new Node<>(new ProbePositionID(id)),
+                implyingIds.stream().map(implyingId -> new Node<>(new ProbePositionID(implyingId))).
+                        collect(Collectors.toSet())));
+    }
+
+    public void setBallLarusNumbering(BallLarusNumbering ballLarusNumbering) {
+        this.ballLarusNumbering = ballLarusNumbering;
+    }
+
+    public void setLineTable(LineTable lineTable) {
+        this.lineTable = lineTable;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        if (sampleRate <= 0) {
+            throw new IllegalArgumentException("sample rate should be positive: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    public void setProbeSwitch(boolean probeSwitch) {
+        this.probeSwitch = probeSwitch;
+    }
+
+    public void setDefUseAnalysis(DefUseAnalysis defUseAnalysis) {
+        this.defUseAnalysis = defUseAnalysis;
+    }
+
+    public BallLarusNumbering getBallLarusNumbering() {
+        return ballLarusNumbering;
+    }
+
+    private static List<Node<ProbePositionID>> sortedById(Collection<Node<ProbePositionID>> nodes) {
+        List<Node<ProbePositionID>> sortedNodes = new ArrayList<>(nodes);
+        sortedNodes.sort(Comparator.comparingInt(node -> node.getData().getId()));
+        return sortedNodes;
     }
 
     /**
-     * Print cfg to a file with a pre-defined format that can be read by the
-     * "read" factory function.
+     * Print the cfg to two files: a shape file with the cfg and everything derived from it, and a method
+     * file that refers to it and holds the sample rate, the probe switch and the line table (if any). Both
+     * have a pre-defined format; the shape file can be read by the "read" factory function and the method
+     * file by MethodCoverage#readFromFile.
+     * <p>
+     * The shape is printed in a canonical order (nodes, edges, ... sorted by id) and named after the hash of
+     * its text, so methods with the same shape share one shape file, which is written only once.
      */
     public void printToFile() {
-        String targetDir = Config.cfgsDir;
-        File dirFile = new File( targetDir + File.separator +
-                filePath.substring(0, filePath.indexOf(File.separator)));
+        ByteArrayOutputStream shapeBytes = new ByteArrayOutputStream();
+        PrintStream shapeOut = new PrintStream(shapeBytes, false, StandardCharsets.UTF_8);
+        printShapeTo(shapeOut);
+        shapeOut.flush();
 
+        String shapeId = hash(shapeBytes.toByteArray());
+        String shapeFilePath = SHAPES_DIR + File.separator + shapeId;
+        File shapeFile = new File(Config.cfgsDir + File.separator + shapeFilePath);
+        if (!shapeFile.exists()) {
+            // write to a temporary file and rename it, so a shape file is either complete or missing
+            File tempFile = new File(shapeFile.getPath() + ".tmp" + System.nanoTime());
+            printToFile(tempFile, shapeFilePath, shapeId, out -> out.write(shapeBytes.toByteArray(), 0, shapeBytes.size()));
+            try {
+                Files.move(tempFile.toPath(), shapeFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                e.printStackTrace();
+                throw new RuntimeException(e);
+            }
+        }
+
+        // print relative file path of the shape, the sample rate and whether there is a probe switch followed
+        // by whether there is a line table and the table
+        printToFile(new File(Config.cfgsDir + File.separator + filePath), filePath, fullMethodName, out -> {
+            out.println(shapeFilePath);
+            out.println(sampleRate);
+            out.println(probeSwitch);
+            out.println(lineTable != null);
+            if (lineTable != null) {
+                lineTable.printTo(out);
+            }
+        });
+    }
+
+    /**
+     * Prints the header (file path, full method name and isEntered, which is false until the method is
+     * entered at runtime) followed by the body to file.
+     */
+    private static void printToFile(File file, String filePath, String fullMethodName,
+                                    Consumer<PrintStream> body) {
+        File dirFile = file.getParentFile();
         if (!dirFile.exists() && !dirFile.mkdirs()) {
             throw new IllegalArgumentException("dir: " + dirFile + " is not correct");
         }
 
         PrintStream out;
         try {
-            out = new PrintStream(targetDir + File.separator + filePath, StandardCharsets.UTF_8);
+            out = new PrintStream(file, StandardCharsets.UTF_8);
         } catch (IOException e) {
             e.printStackTrace();
             throw new RuntimeException(e);
@@ -86,25 +290,126 @@ public class ProbePositionIDCfg extends Graph<ProbePositionID, FlowType> {
         out.println(fullMethodName);
 
         // print isEntered
-        out.println(isEntered());
+        out.println(false);
+
+        body.accept(out);
+
+        out.flush();
+        out.close();
+    }
 
+    private static String hash(byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(bytes)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Prints everything but the header of the cfg file in a canonical order.
+     */
+    private void printShapeTo(PrintStream out) {
         // print number of nodes followed by all node ids
-        Set<Node<ProbePositionID>> nodes = this.getAllNodes();
+        List<Node<ProbePositionID>> nodes = sortedById(this.getAllNodes());
         out.println(nodes.size());
         for (Node<ProbePositionID> node : nodes) {
             out.println(node.getData().getId());
         }
 
         // print number of edges followed by all edges (src-node-id, dest-node-id (normal|exceptional))
-        List<Edge<ProbePositionID, FlowType>> edges = this.getAllEdges();
+        List<Edge<ProbePositionID, FlowType>> edges = new ArrayList<>(this.getAllEdges());
+        edges.sort(Comparator.<Edge<ProbePositionID, FlowType>>comparingInt(edge -> edge.getSource().getData().getId()).
+                thenComparingInt(edge -> edge.getDestination().getData().getId()).
+                thenComparing(Edge::getData));
         out.println(edges.size());
         for (Edge<ProbePositionID, FlowType> edge : edges) {
             out.printf("%d %d %s%n", edge.getSource().getData().getId(), edge.getDestination().getData().getId(),
                     edge.getData() == NORMAL_FLOW ? "normal" : "exceptional");
         }
 
-        out.flush();
-        out.close();
+        // print root node id
+        out.println(this.getRoot().getData().getId());
+
+        // print number of unprobed nodes followed by their ids
+        out.println(unprobedNodes.size());
+        for (Node<ProbePositionID> node : sortedById(unprobedNodes)) {
+            out.println(node.getData().getId());
+        }
+
+        // print the coverage level
+        out.println(coverageLevel);
+
+        // print whether exceptional flows are measured
+        out.println(exceptionalFlows);
+
+        // print whether requirements are covered online
+        out.println(onlineCoverage);
+
+        // print number of implied nodes followed by each implied node id and the ids implying it
+        out.println(impliedNodes.size());
+        for (Node<ProbePositionID> node : sortedById(impliedNodes.keySet())) {
+            out.print(node.getData().getId());
+            sortedById(impliedNodes.get(node)).forEach(implyingNode -> out.print(" " + implyingNode.getData().getId()));
+            out.println();
+        }
+
+        // print the node, edge and edge-pair requirements
+        printRequirementsTo(out, nodes);
+
+        // print whether the method is instrumented in path profiling mode followed by its numbering
+        out.println(ballLarusNumbering != null);
+        if (ballLarusNumbering != null) {
+            ballLarusNumbering.printTo(out);
+        }
+
+        // print whether def-use pairs are measured followed by the def-use analysis
+        out.println(defUseAnalysis != null);
+        if (defUseAnalysis != null) {
+            defUseAnalysis.printTo(out);
+        }
+    }
+
+    /**
+     * Numbers the node, edge and edge-pair requirements of the coverage level, so that the runtime loads
+     * them as they are: none at method level, nodes at node level, nodes and edges at edge level, and all
+     * three at edge-pair level. Prints the number of node, edge and edge-pair requirements followed by the
+     * number of nodes with edge-pairs, and the id and the first edge-pair of each.
+     * <p>
+     * Nodes and edges are numbered in the order they are printed in (sorted by id), which the graph keeps
+     * when it is read (see readCfgFromFile). The edge-pairs through node v are numbered first + in-position
+     * * out-degree + out-position, where the positions are those of the edges in the adjacency of v in
+     * getCsr(); none is materialized. Edges must be unique, which is checked here, once per method.
+     */
+    private void printRequirementsTo(PrintStream out, List<Node<ProbePositionID>> nodes) {
+        if (graphNotHaveUniqueEdges()) {
+            throw new IllegalStateException(this.filePath + ": graph should have unique edges for numbering its test reqs");
+        }
+
+        CsrGraph csr = getCsr();
+        List<String> edgePairOffsets = new ArrayList<>();
+        long numberOfEdgePairs = 0;
+        for (Node<ProbePositionID> node : nodes) {
+            int v = indexOf(node);
+            if (coverageLevel == CoverageLevel.EDGE_PAIR && csr.inDegree(v) > 0 && csr.outDegree(v) > 0) {
+                edgePairOffsets.add(node.getData().getId() + " " + numberOfEdgePairs);
+                numberOfEdgePairs += (long) csr.inDegree(v) * csr.outDegree(v);
+            }
+        }
+
+        out.println(coverageLevel.includes(CoverageLevel.NODE) ? nodes.size() : 0);
+        out.println(coverageLevel.includes(CoverageLevel.EDGE) ? csr.edgeCount() : 0);
+        out.println(numberOfEdgePairs);
+        out.println(edgePairOffsets.size());
+        edgePairOffsets.forEach(out::println);
     }
 
     public static ProbePositionIDCfg readCfgFromFile(String fileName) {
@@ -139,10 +444,12 @@ public class ProbePositionIDCfg extends Graph<ProbePositionID, FlowType> {
 
             // parse nodes
             int numberOfNodes = Integer.parseInt(br.readLine());
+            List<Node<ProbePositionID>> nodes = new ArrayList<>(numberOfNodes);
             for (int i = 0; i < numberOfNodes; i++) {
                 String node = br.readLine();
                 int probePositionId = Integer.parseInt(node);
-                probePositionIDCfg.addNode(new Node<>(new ProbePositionID(probePositionId)));
+                nodes.add(new Node<>(new ProbePositionID(probePositionId)));
+                probePositionIDCfg.addNode(nodes.get(i));
             }
 
             // parse edges
@@ -161,6 +468,73 @@ public class ProbePositionIDCfg extends Graph<ProbePositionID, FlowType> {
                 probePositionIDCfg.addEdge(srcNode, destNode, flowType);
             }
 
+            // parse root
+            int root = Integer.parseInt(br.readLine());
+            probePositionIDCfg.setRoot(new Node<>(new ProbePositionID(root)));
+
+            // keep the order of the file: node i is the i-th node and, as edges are sorted by source, edge e
+            // is the e-th edge (see printRequirementsTo)
+            probePositionIDCfg.freeze(nodes);
+
+            // parse unprobed nodes
+            int numberOfUnprobedNodes = Integer.parseInt(br.readLine());
+            for (int i = 0; i < numberOfUnprobedNodes; i++) {
+                int probePositionId = Integer.parseInt(br.readLine());
+                probePositionIDCfg.unprobedNodes.add(new Node<>(new ProbePositionID(probePositionId)));
+            }
+
+            // parse coverage level
+            probePositionIDCfg.coverageLevel = CoverageLevel.valueOf(br.readLine());
+
+            // parse exceptional flows
+            probePositionIDCfg.exceptionalFlows = Boolean.parseBoolean(br.readLine());
+
+            // parse online coverage
+            probePositionIDCfg.onlineCoverage = Boolean.parseBoolean(br.readLine());
+
+            // parse implied nodes
+            int numberOfImpliedNodes = Integer.parseInt(br.readLine());
+            for (int i = 0; i < numberOfImpliedNodes; i++) {
+                String[] ids = br.readLine().split(" ");
+                Set<Node<ProbePositionID>> implyingNodes = new HashSet<>();
+                for (int j = 1; j < ids.length; j++) {
+                    implyingNodes.add(new Node<>(new ProbePositionID(Integer.parseInt(ids[j]))));
+                }
+                probePositionIDCfg.impliedNodes.put(new Node<>(new ProbePositionID(Integer.parseInt(ids[0]))),
+                        implyingNodes);
+            }
+
+            // parse number of node, edge and edge-pair requirements followed by the first edge-pair of nodes
+            probePositionIDCfg.numberOfNodeReqs = Integer.parseInt(br.readLine());
+            probePositionIDCfg.numberOfEdgeReqs = Integer.parseInt(br.readLine());
+            probePositionIDCfg.numberOfEdgePairReqs = Long.parseLong(br.readLine());
+            if ((probePositionIDCfg.numberOfNodeReqs != 0 && probePositionIDCfg.numberOfNodeReqs != numberOfNodes) ||
+                    (probePositionIDCfg.numberOfEdgeReqs != 0 && probePositionIDCfg.numberOfEdgeReqs != numberOfEdges)) {
+                throw new IllegalStateException(fileName + ": requirements do not match the graph");
+            }
+            long[] edgePairOffsetOfIndex = new long[numberOfNodes];
+            Arrays.fill(edgePairOffsetOfIndex, -1);
+            int numberOfNodesWithEdgePairs = Integer.parseInt(br.readLine());
+            for (int i = 0; i < numberOfNodesWithEdgePairs; i++) {
+                String[] idOffset = br.readLine().split(" ");
+                int index = probePositionIDCfg.indexOf(new Node<>(new ProbePositionID(Integer.parseInt(idOffset[0]))));
+                if (index < 0) {
+                    throw new IllegalStateException(fileName + ": node " + idOffset[0] + " does not exist");
+                }
+                edgePairOffsetOfIndex[index] = Long.parseLong(idOffset[1]);
+            }
+            probePositionIDCfg.edgePairOffsetOfIndex = edgePairOffsetOfIndex;
+
+            // parse Ball-Larus numbering
+            if (Boolean.parseBoolean(br.readLine())) {
+                probePositionIDCfg.setBallLarusNumbering(BallLarusNumbering.readFrom(br));
+            }
+
+            // parse def-use analysis
+            if (Boolean.parseBoolean(br.readLine())) {
+                probePositionIDCfg.defUseAnalysis = DefUseAnalysis.readFrom(br);
+            }
+
             // sanity check
             String currentLine = br.readLine();
             if (currentLine != null) {
@@ -190,126 +564,351 @@ public class ProbePositionIDCfg extends Graph<ProbePositionID, FlowType> {
 
 
     /**
-     * Update edge-pair requirements (this includes even individual edges
-     * as well. This is done to make edge-pairs test requirements subsume edges test
-     * requirements).
-     * <p>
-     * Note that the edge pairs that already exist are not changed. i.e., if the edge-pairs
-     * were covered, this will not change, and if the edge-pairs were not covered, they will
-     * remain uncovered. Only new edge-pairs can be added, but the old ones remain the same.
+     * Prepares a shape read from a file for covering: builds the lookup tables and, at edge level and above,
+     * the prime-path (see Config.primePathCoverage, a runtime option) and def-use requirements. Node, edge
+     * and edge-pair requirements are numbered when the shape is printed and read with it (see
+     * printRequirementsTo). Later calls do nothing.
      */
-    private void updateEdgePairRequirements() {
-        // add all nodes
-        for (Node<ProbePositionID> node : getAllNodes()) {
-            NodeTR<ProbePositionID> nodeReq = new NodeTR<>(node);
-            nodeReqs.putIfAbsent(nodeReq, nodeReq);
-        }
-
-        // add all edges
-        for (Edge<ProbePositionID, FlowType> edge : getAllEdges()) {
-            EdgeTR<ProbePositionID> edgeReq = new EdgeTR<>(new Edge<>(edge.getSource(), edge.getDestination()));
-            edgesReqs.putIfAbsent(edgeReq, edgeReq);
-        }
-
-        // add all (incoming, outgoing) pairs in edgePairsTestRequirements
-        for (Node<ProbePositionID> node : getAllNodes()) {
-            for (Edge<ProbePositionID, FlowType> incoming : incomingEdges(node)) {
-                for (Edge<ProbePositionID, FlowType> outgoing : outgoingEdges(node)) {
-                    EdgePairTR<ProbePositionID> edgePair = new EdgePairTR<>(
-                            new Edge<>(incoming.getSource(), incoming.getDestination()),
-                            new Edge<>(outgoing.getSource(), outgoing.getDestination())
-                    );
-                    edgePairsReqs.putIfAbsent(edgePair, edgePair);
-                }
+    public void updateTestRequirements() {
+        if (indexOfId != null) {
+            return;
+        }
+
+        updateLookupTables();
+        if (coverageLevel.includes(CoverageLevel.EDGE) && !onlineCoverage) {
+            if (Config.primePathCoverage && primePathReqs == null) {
+                updatePrimePathRequirements();
+            }
+
+            if (defUseAnalysis != null && !defUseAnalysis.hasRequirements()) {
+                defUseAnalysis.createRequirements();
             }
         }
     }
 
     /**
-     * Update all test requirements of type:
-     * <p>
-     * - edge-pair (this includes even individual edges
-     * as well. This is done to make edge-pairs test requirements subsume edges test
-     * requirements).
-     * <p>
-     * Update edge-pair requirements. Note that the edge pairs that already exist are
-     * not changed. i.e., if the edge-pairs were covered, this will not change, and
-     * if the edge-pairs were not covered, they will remain uncovered. Only new edge-pairs
-     * can be added, but the old ones remain the same.
+     * Builds the dense tables used while covering recorded paths, so that covering a path only reads
+     * int arrays: probe position id -> node index (in getCsr()) and back, and node index -> unprobed flag.
      */
-    public void updateTestRequirements() {
-        if (graphNotHaveUniqueEdges()) {
-            throw new IllegalStateException(this.filePath + ": graph should have unique edges for updating test reqs to work");
+    private void updateLookupTables() {
+        CsrGraph csr = getCsr();
+
+        int maxId = -1;
+        for (int v = 0; v < csr.nodeCount(); v++) {
+            maxId = Math.max(maxId, nodeAt(v).getData().getId());
+        }
+
+        indexOfId = new int[maxId + 1];
+        Arrays.fill(indexOfId, -1);
+        idOfIndex = new int[csr.nodeCount()];
+        isUnprobedIndex = new boolean[csr.nodeCount()];
+        for (int v = 0; v < csr.nodeCount(); v++) {
+            Node<ProbePositionID> node = nodeAt(v);
+            idOfIndex[v] = node.getData().getId();
+            indexOfId[idOfIndex[v]] = v;
+            isUnprobedIndex[v] = unprobedNodes.contains(node);
+        }
+    }
+
+    /**
+     * Enumerates the prime paths of the cfg (at most Config.maxPrimePaths).
+     */
+    private void updatePrimePathRequirements() {
+        List<Node<ProbePositionID>> nodes = new ArrayList<>(getAllNodes());
+        nodes.sort(Comparator.comparingInt(node -> node.getData().getId()));
+
+        int[] ids = new int[nodes.size()];
+        Map<Node<ProbePositionID>, Integer> indexOf = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            ids[i] = nodes.get(i).getData().getId();
+            indexOf.put(nodes.get(i), i);
         }
 
-        updateEdgePairRequirements();
+        primePathReqs = PrimePathTrie.enumerate(CsrGraph.of(this, indexOf), ids, Config.maxPrimePaths);
+        if (primePathReqs.isTruncated()) {
+            printToErr(this.filePath + ":[WARNING-PPC]: prime path enumeration stopped after " +
+                    primePathReqs.size() + " prime paths");
+        }
+    }
+
+    private int indexOfId(int id) {
+        return id >= 0 && id < indexOfId.length ? indexOfId[id] : -1;
+    }
+
+    private int nodeReqOfIndex(int index) {
+        return index < numberOfNodeReqs ? index : -1;
+    }
+
+    private int nodeReqOfId(int id) {
+        int index = indexOfId(id);
+        return index < 0 ? -1 : nodeReqOfIndex(index);
     }
 
     /**
-     * Cover edge-pair test requirements that path covers.
+     * Covers the node, edge and edge-pair test requirements of the segment of path[from .. to - 1], a path of
+     * node indices, that starts at from in coverage (depending on the coverage level; only nodes if nodesOnly),
+     * and returns the end of the segment. Without exceptional edges, a segment ends before a step that is not
+     * an edge, where an exception was caught. Every edge of the segment is looked up once.
      */
-    private void coverEdgePairs(List<Node<ProbePositionID>> path) {
-//        printToOut("path: ");
-//        printToOut(path.toString());
+    private int coverSegment(int[] path, int from, int to, MethodCoverage coverage, boolean nodesOnly) {
+        CsrGraph csr = getCsr();
+        boolean edges = coverageLevel.includes(CoverageLevel.EDGE) && !nodesOnly;
+        boolean edgePairs = coverageLevel == CoverageLevel.EDGE_PAIR && !nodesOnly;
+        CoverageBits coveredNodes = coverage.getCoveredNodes();
+        StripedCounters nodeExecutions = coverage.getNodeExecutions();
+        CoverageBits coveredEdges = coverage.getCoveredEdges();
+        StripedCounters edgeExecutions = coverage.getEdgeExecutions();
+        CoverageBits coveredEdgePairs = coverage.getCoveredEdgePairs();
 
-        // cover all nodes
-        for (Node<ProbePositionID> node : path) {
-            NodeTR<ProbePositionID> nodeReq = nodeReqs.get(new NodeTR<>(node));
+        int previousEdge = -1;
+        for (int i = from; i < to; i++) {
+            int edge = edges && i > from ? csr.edgeBetween(path[i - 1], path[i]) : -1;
+            if (edges && i > from && edge < 0 && !exceptionalFlows) {
+                return i;
+            }
 
-            if (nodeReq == null) {
-                printToErr(this.filePath + ":[ERROR-NC]: node: " + node);
+            // cover (and count) the node
+            int nodeReq = nodeReqOfIndex(path[i]);
+            if (nodeReq < 0) {
+                printToErr(coverage.getRelativeFilePath() + ":[ERROR-NC]: node: " + idOfIndex[path[i]]);
             } else {
-                nodeReq.setCovered(true);
+                coveredNodes.set(nodeReq);
+                if (nodeExecutions != null) {
+                    nodeExecutions.increment(path[i]);
+                }
             }
-        }
 
-        // cover all edges - This should be printed.
-        for (int i = 1; i < path.size(); i++) {
-            Edge<ProbePositionID, Object> key = new Edge<>(path.get(i - 1), path.get(i));
-            EdgeTR<ProbePositionID> edge = edgesReqs.get(new EdgeTR<>(key));
+            if (!edges || i == from) {
+                continue;
+            }
 
-            if (edge == null) {
-                printToErr(this.filePath + ":[ERROR-EC]: edge: (" + path.get(i - 1) + "," + path.get(i) + ") does not exist");
+            // cover (and count) the edge from the previous node
+            if (edge < 0) {
+                printToErr(coverage.getRelativeFilePath() + ":[ERROR-EC]: edge: (" + idOfIndex[path[i - 1]] + "," +
+                        idOfIndex[path[i]] + ") does not exist");
             } else {
-                edge.setCovered(true);
+                coveredEdges.set(edge);
+                if (edgeExecutions != null) {
+                    edgeExecutions.increment(edge);
+                }
+            }
+
+            // cover the edge-pair of the previous edge and this one
+            if (edgePairs && i > from + 1) {
+                long edgePair = previousEdge < 0 || edge < 0 ? -1 : edgePairNumber(previousEdge, edge);
+                if (edgePair < 0) {
+                    printToErr(String.format("%s:[ERROR-EPC]: edge pair: {(%d, %d), (%d, %d)} does not exist",
+                            coverage.getRelativeFilePath(), idOfIndex[path[i - 2]], idOfIndex[path[i - 1]],
+                            idOfIndex[path[i - 1]], idOfIndex[path[i]]));
+                } else {
+                    coveredEdgePairs.set(edgePair);
+                }
             }
+            previousEdge = edge;
         }
 
-        // cover all edge-pairs
-        for (int i = 2; i < path.size(); i++) {
-            Edge<ProbePositionID, Object> edge1 = new Edge<>(path.get(i - 2), path.get(i - 1));
-            Edge<ProbePositionID, Object> edge2 = new Edge<>(path.get(i - 1), path.get(i));
+        return to;
+    }
 
-            EdgePairTR<ProbePositionID> edgePair = edgePairsReqs.get(new EdgePairTR<>(edge1, edge2));
+    /**
+     * Returns the number of the edge-pair of edges in and out, which share their middle node, or -1 if it is
+     * not a requirement. The number is given by the positions of the incoming and outgoing edge in the
+     * adjacency of the middle node (see printRequirementsTo).
+     */
+    private long edgePairNumber(int in, int out) {
+        CsrGraph csr = getCsr();
+        int middle = csr.edgeSource(out);
+        long offset = edgePairOffsetOfIndex[middle];
+        return offset < 0 ? -1 :
+                offset + (long) csr.edgeInSlot(in) * csr.outDegree(middle) + (out - csr.successorsStart(middle));
+    }
 
-            if (edgePair == null) {
-                printToErr(String.format("%s:[ERROR-EPC]: edge pair: {(%s, %s), (%s, %s)} does not exist", this.filePath,
-                        path.get(i - 2), path.get(i - 1), path.get(i - 1), path.get(i)));
-            } else {
-                edgePair.setCovered(true);
+    /**
+     * Covers, for a method instrumented for online coverage, the requirements of one probe hit: the node
+     * of probe position id, the edge from the previous probe position "last" (-1 if there was none), and the
+     * edge-pair of that edge and the edge previousEdge into "last" (-1 if there was none), and returns the
+     * edge, which the probe keeps for the next hit. A step that is not an edge starts a new path, as in
+     * coverTestRequirements, and returns -1. A method degraded by the overhead governor (see Degradation)
+     * only covers the node.
+     */
+    public int coverStep(int previousEdge, int last, int id, MethodCoverage coverage) {
+        int current = indexOfId(id);
+        int nodeReq = nodeReqOfId(id);
+        if (nodeReq < 0) {
+            printToErr(coverage.getRelativeFilePath() + ":[ERROR-NC]: node: " + id);
+            return -1;
+        }
+        coverage.getCoveredNodes().set(nodeReq);
+        if (coverage.getNodeExecutions() != null) {
+            coverage.getNodeExecutions().increment(current);
+        }
+
+        if (!coverageLevel.includes(CoverageLevel.EDGE) || last < 0 ||
+                coverage.getDegradation() != Degradation.NONE) {
+            return -1;
+        }
+
+        int previous = indexOfId(last);
+        int edge = previous < 0 ? -1 : getCsr().edgeBetween(previous, current);
+        if (edge < 0) {
+            if (exceptionalFlows) {
+                printToErr(coverage.getRelativeFilePath() + ":[ERROR-EC]: edge: (" + last + "," + id +
+                        ") does not exist");
             }
+            return -1;
+        }
+        coverage.getCoveredEdges().set(edge);
+        if (coverage.getEdgeExecutions() != null) {
+            coverage.getEdgeExecutions().increment(edge);
         }
 
-//        edgePairsReqs.forEach((key, value) -> printToOut(value.toString()));
+        // previousEdge ends at "last" if it is an edge of the same path
+        if (coverageLevel != CoverageLevel.EDGE_PAIR || previousEdge < 0) {
+            return edge;
+        }
+
+        long edgePair = edgePairNumber(previousEdge, edge);
+        if (edgePair < 0) {
+            CsrGraph csr = getCsr();
+            printToErr(String.format("%s:[ERROR-EPC]: edge pair: {(%d, %d), (%d, %d)} does not exist",
+                    coverage.getRelativeFilePath(), idOfIndex[csr.edgeSource(previousEdge)], last, last, id));
+        } else {
+            coverage.getCoveredEdgePairs().set(edgePair);
+        }
+        return edge;
     }
 
     /**
-     * Covers test requirements that path covers.
+     * Covers (in coverage, the coverage of a method of this shape) the test requirements that the path
+     * recordedIds[0 .. length - 1] of probe position ids covers. recordedIds may be overwritten. A method
+     * degraded by the overhead governor (see Degradation) only covers nodes.
      */
-    public void coverTestRequirements(List<Node<ProbePositionID>> path) {
-        if (graphNotHaveUniqueEdges()) {
-            throw new IllegalStateException(this.filePath + ": graph should have unique edges for covering test reqs to work");
+    public void coverTestRequirements(int[] recordedIds, int length, MethodCoverage coverage) {
+        int[] path;
+        int size;
+        if (unprobedNodes.isEmpty() || !coverageLevel.includes(CoverageLevel.EDGE)) {
+            // nothing to re-insert: map the ids to node indices in place
+            path = recordedIds;
+            size = 0;
+            for (int i = 0; i < length; i++) {
+                int index = indexOfId(recordedIds[i]);
+                if (index < 0) {
+                    printToErr(coverage.getRelativeFilePath() + ":[ERROR-NC]: node: " + recordedIds[i]);
+                } else {
+                    path[size++] = index;
+                }
+            }
+        } else {
+            path = reconstructPath(recordedIds, length, coverage);
+            size = path.length;
         }
 
-        coverEdgePairs(path);
+        // without exceptional edges, the path is split where an exception was caught (see coverSegment)
+        boolean nodesOnly = coverage.getDegradation() != Degradation.NONE;
+        int segmentStart = 0;
+        while (segmentStart < size) {
+            int segmentEnd = coverSegment(path, segmentStart, size, coverage, nodesOnly);
+            if (!nodesOnly) {
+                coverPathRequirements(path, segmentStart, segmentEnd, coverage);
+            }
+            segmentStart = segmentEnd;
+        }
     }
 
-    private boolean graphNotHaveUniqueEdges() {
-        Map<Tuple<Integer, Integer>, List<Edge<ProbePositionID, FlowType>>> edgeGroups = this.getAllEdges().stream().
-                collect(Collectors.groupingBy(edge ->
-                        new Tuple<>(edge.getSource().getData().getId(), edge.getDestination().getData().getId())));
+    /**
+     * Covers the prime paths and def-use pairs (if they are measured) of path[from .. to - 1].
+     */
+    private void coverPathRequirements(int[] path, int from, int to, MethodCoverage coverage) {
+        if (primePathReqs == null && defUseAnalysis == null) {
+            return;
+        }
+
+        int[] segmentIds = new int[to - from];
+        for (int i = from; i < to; i++) {
+            segmentIds[i - from] = idOfIndex[path[i]];
+        }
+
+        if (primePathReqs != null) {
+            primePathReqs.cover(segmentIds, coverage.getCoveredPrimePaths());
+        }
+        if (defUseAnalysis != null && !defUseAnalysis.cover(segmentIds,
+                from == 0 && path[0] == indexOf(getRoot()), coverage.getCoveredDefUsePairs())) {
+            printToErr(coverage.getRelativeFilePath() + ":[ERROR-DUC]: path " + Arrays.toString(segmentIds) +
+                    " exercises a def-use pair that does not exist");
+        }
+    }
+
+    /**
+     * Returns true if the chain of unprobed nodes starting at "from" ends at "to".
+     */
+    private boolean unprobedChainLeadsTo(int from, int to) {
+        CsrGraph csr = getCsr();
+        int current = from;
+
+        // INVARIANT: every unprobed node has exactly one outgoing edge and unprobed nodes form no cycle
+        for (int steps = 0; isUnprobedIndex[current] && steps <= unprobedNodes.size(); steps++) {
+            current = csr.successorAt(csr.successorsStart(current));
+        }
+
+        return current == to;
+    }
+
+    /**
+     * Expands a recorded path of probe position ids to the full path of node indices by re-inserting the
+     * unprobed nodes (only done at edge level and above). The gap between two consecutive recorded nodes
+     * is filled with the unique chain of unprobed nodes connecting them. Unknown ids are reported and skipped.
+     */
+    private int[] reconstructPath(int[] recordedIds, int length, MethodCoverage coverage) {
+        CsrGraph csr = getCsr();
+        int[] path = new int[length];
+        int size = 0;
+
+        for (int i = 0; i < length; i++) {
+            int current = indexOfId(recordedIds[i]);
+            if (current < 0) {
+                printToErr(coverage.getRelativeFilePath() + ":[ERROR-NC]: node: " + recordedIds[i]);
+                continue;
+            }
+
+            // the path starts at the root, which could be unprobed
+            int chainStart = -1;
+            if (size == 0) {
+                int root = indexOf(getRoot());
+                chainStart = unprobedChainLeadsTo(root, current) ? root : -1;
+            } else {
+                int previous = path[size - 1];
+                for (int j = csr.successorsStart(previous); j < csr.successorsEnd(previous) && chainStart < 0; j++) {
+                    chainStart = unprobedChainLeadsTo(csr.successorAt(j), current) ? csr.successorAt(j) : -1;
+                }
+            }
+
+            for (int node = chainStart; node >= 0 && node != current;
+                 node = csr.successorAt(csr.successorsStart(node))) {
+                if (size == path.length) {
+                    path = Arrays.copyOf(path, 2 * path.length + 1);
+                }
+                path[size++] = node;
+            }
+
+            if (size == path.length) {
+                path = Arrays.copyOf(path, 2 * path.length + 1);
+            }
+            path[size++] = current;
+        }
 
-        return !edgeGroups.values().stream().allMatch(edges -> edges.size() == 1);
+        return size == path.length ? path : Arrays.copyOf(path, size);
+    }
+
+    private boolean graphNotHaveUniqueEdges() {
+        CsrGraph csr = getCsr();
+        for (int v = 0; v < csr.nodeCount(); v++) {
+            for (int i = csr.successorsStart(v); i < csr.successorsEnd(v); i++) {
+                if (csr.edgeBetween(v, csr.successorAt(i)) != i) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
 //    /**
@@ -352,27 +951,193 @@ public class ProbePositionIDCfg extends Graph<ProbePositionID, FlowType> {
 //        return getEdgePairsCoverageInfo(stringList);
 //    }
 
-    public Map<String, Integer> getCoverageInfoKeyPairs() {
+    /**
+     * Returns true if coverage, the coverage of a method of this shape that records paths or covers online,
+     * covers every requirement its probes can cover: all nodes but the implied ones (which are covered once
+     * the nodes implying them are), edges, edge-pairs, prime paths and def-use pairs that are measured.
+     */
+    public boolean isSaturated(MethodCoverage coverage) {
+        if (coverageLevel == CoverageLevel.METHOD || ballLarusNumbering != null) {
+            return false;
+        }
+
+        return coverage.getCoveredNodes().cardinality() + impliedNodes.size() >= numberOfNodeReqs &&
+                coverage.getCoveredEdges().cardinality() == numberOfEdgeReqs &&
+                coverage.getCoveredEdgePairs().cardinality() == numberOfEdgePairReqs &&
+                coverage.getCoveredPrimePaths().cardinality() == getNumberOfPrimePathRequirements() &&
+                coverage.getCoveredDefUsePairs().cardinality() == getNumberOfDefUseRequirements();
+    }
+
+    /**
+     * Covers every implied node that is implied by a covered node.
+     */
+    private void coverImpliedNodes(MethodCoverage coverage) {
+        CoverageBits coveredNodes = coverage.getCoveredNodes();
+        impliedNodes.forEach((node, implyingNodes) -> {
+            int nodeReq = nodeReqOfId(node.getData().getId());
+            if (nodeReq < 0 || coveredNodes.get(nodeReq)) {
+                return;
+            }
+
+            for (Node<ProbePositionID> implyingNode : implyingNodes) {
+                int implyingNodeReq = nodeReqOfId(implyingNode.getData().getId());
+                if (implyingNodeReq >= 0 && coveredNodes.get(implyingNodeReq)) {
+                    coveredNodes.set(nodeReq);
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     * Covers the test requirements of every executed Ball-Larus path.
+     */
+    private void coverExecutedPaths(MethodCoverage coverage) {
+        for (int pathId : coverage.getExecutedPaths().keySet()) {
+            int[] path = ballLarusNumbering.decode(pathId).stream().mapToInt(Integer::intValue).toArray();
+            coverTestRequirements(path, path.length, coverage);
+        }
+    }
+
+    /**
+     * Returns the coverage metrics of coverage, the coverage of a method of this shape.
+     */
+    public Map<String, Integer> getCoverageInfoKeyPairs(MethodCoverage coverage) {
         Map<String, Integer> kp = new HashMap<>();
 
-        kp.put(NODES_COVERED, nodeReqs.keySet().stream().
-                filter(AbstractTestRequirement::isCovered).
-                collect(Collectors.toSet()).size());
-        kp.put(TOTAL_NODES, nodeReqs.size());
+        kp.put(METHOD_ENTERED, coverage.isEntered() ? 1 : 0);
+        if (coverageLevel == CoverageLevel.METHOD) {
+            return kp;
+        }
 
-        kp.put(EDGES_COVERED, edgesReqs.keySet().stream().
-                filter(AbstractTestRequirement::isCovered).
-                collect(Collectors.toSet()).size());
-        kp.put(TOTAL_EDGES, edgesReqs.size());
+        // requirements covered by executed paths and node coverage of implied nodes are inferred at report time
+        if (ballLarusNumbering != null) {
+            coverExecutedPaths(coverage);
+            kp.put(PATHS_COVERED, coverage.getExecutedPaths().size());
+            kp.put(TOTAL_PATHS, (int) ballLarusNumbering.getNumberOfPaths());
+        }
+        coverImpliedNodes(coverage);
 
-        kp.put(EDGE_PAIRS_COVERED, edgePairsReqs.keySet().stream().
-                filter(AbstractTestRequirement::isCovered).
-                collect(Collectors.toSet()).size());
-        kp.put(TOTAL_EDGE_PAIRS, edgePairsReqs.size());
+        kp.put(NODES_COVERED, (int) coverage.getCoveredNodes().cardinality());
+        kp.put(TOTAL_NODES, numberOfNodeReqs);
+
+        if (coverageLevel.includes(CoverageLevel.EDGE)) {
+            kp.put(EDGES_COVERED, (int) coverage.getCoveredEdges().cardinality());
+            kp.put(TOTAL_EDGES, numberOfEdgeReqs);
+        }
+
+        if (coverageLevel.includes(CoverageLevel.EDGE_PAIR)) {
+            kp.put(EDGE_PAIRS_COVERED, (int) coverage.getCoveredEdgePairs().cardinality());
+            kp.put(TOTAL_EDGE_PAIRS, (int) numberOfEdgePairReqs);
+        }
+
+        if (primePathReqs != null) {
+            kp.put(PRIME_PATHS_COVERED, (int) coverage.getCoveredPrimePaths().cardinality());
+            kp.put(TOTAL_PRIME_PATHS, primePathReqs.size());
+            kp.put(PRIME_PATHS_TRUNCATED, primePathReqs.isTruncated() ? 1 : 0);
+        }
+
+        if (defUseAnalysis != null) {
+            CoverageBits coveredPairs = coverage.getCoveredDefUsePairs();
+            Set<Integer> defs = new HashSet<>();
+            Set<Integer> coveredDefs = new HashSet<>();
+            for (int pair = 0; pair < defUseAnalysis.getNumberOfPairs(); pair++) {
+                defs.add(defUseAnalysis.getDefinitionOfPair(pair));
+                if (coveredPairs.get(pair)) {
+                    coveredDefs.add(defUseAnalysis.getDefinitionOfPair(pair));
+                }
+            }
+            kp.put(DEF_USE_PAIRS_COVERED, (int) coveredPairs.cardinality());
+            kp.put(TOTAL_DEF_USE_PAIRS, defUseAnalysis.getNumberOfPairs());
+            kp.put(DEFS_COVERED, coveredDefs.size());
+            kp.put(TOTAL_DEFS, defs.size());
+        }
+
+        // line and branch coverage are derived from node and edge coverage
+        LineTable methodLineTable = coverage.getLineTable();
+        if (methodLineTable != null) {
+            kp.put(LINES_COVERED, methodLineTable.getCoveredLines(id -> isNodeCovered(id, coverage)).size());
+            kp.put(TOTAL_LINES, methodLineTable.getLines().size());
+
+            if (coverageLevel.includes(CoverageLevel.EDGE)) {
+                kp.put(BRANCHES_COVERED, methodLineTable.getNumberOfCoveredBranches(
+                        (source, destination) -> isEdgeCovered(source, destination, coverage)));
+                kp.put(TOTAL_BRANCHES, methodLineTable.getNumberOfBranches());
+            }
+        }
 
         return kp;
     }
 
+    /**
+     * Returns the number of executions of every node of coverage, the coverage of a method of this shape, by
+     * probe position id (sorted), or an empty map if executions are not counted (see Config.executionCounts).
+     * Implied nodes are left out, as they are not observed at node level.
+     */
+    public SortedMap<Integer, Long> getNodeExecutionCounts(MethodCoverage coverage) {
+        SortedMap<Integer, Long> counts = new TreeMap<>();
+        StripedCounters nodeExecutions = coverage.getNodeExecutions();
+        for (int v = 0; nodeExecutions != null && v < nodeExecutions.size(); v++) {
+            if (!impliedNodes.containsKey(nodeAt(v))) {
+                counts.put(idOfIndex[v], nodeExecutions.get(v));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the number of executions of every edge (source id, destination id) of coverage, the coverage of
+     * a method of this shape, sorted by source and destination id, or an empty map if executions are not
+     * counted (see Config.executionCounts) or edges are not observed (at node level).
+     */
+    public Map<Tuple<Integer, Integer>, Long> getEdgeExecutionCounts(MethodCoverage coverage) {
+        Map<Tuple<Integer, Integer>, Long> counts = new LinkedHashMap<>();
+        StripedCounters edgeExecutions = coverage.getEdgeExecutions();
+        if (edgeExecutions == null || !coverageLevel.includes(CoverageLevel.EDGE)) {
+            return counts;
+        }
+
+        // edge ids follow the order of the shape file, i.e., edges are sorted by source and destination id
+        CsrGraph csr = getCsr();
+        for (int e = 0; e < edgeExecutions.size(); e++) {
+            counts.put(new Tuple<>(idOfIndex[csr.edgeSource(e)], idOfIndex[csr.edgeDestination(e)]),
+                    edgeExecutions.get(e));
+        }
+        return counts;
+    }
+
+    private boolean isNodeCovered(int probePositionId, MethodCoverage coverage) {
+        int nodeReq = nodeReqOfId(probePositionId);
+        return nodeReq >= 0 && coverage.getCoveredNodes().get(nodeReq);
+    }
+
+    private boolean isEdgeCovered(int sourceId, int destinationId, MethodCoverage coverage) {
+        int source = indexOfId(sourceId);
+        int destination = indexOfId(destinationId);
+        int edge = source < 0 || destination < 0 ? -1 : getCsr().edgeBetween(source, destination);
+        return edge >= 0 && edge < numberOfEdgeReqs && coverage.getCoveredEdges().get(edge);
+    }
+
+    public int getNumberOfNodeRequirements() {
+        return numberOfNodeReqs;
+    }
+
+    public int getNumberOfEdgeRequirements() {
+        return numberOfEdgeReqs;
+    }
+
+    public long getNumberOfEdgePairRequirements() {
+        return numberOfEdgePairReqs;
+    }
+
+    public int getNumberOfPrimePathRequirements() {
+        return primePathReqs == null ? 0 : primePathReqs.size();
+    }
+
+    public int getNumberOfDefUseRequirements() {
+        return defUseAnalysis == null || !defUseAnalysis.hasRequirements() ? 0 : defUseAnalysis.getNumberOfPairs();
+    }
+
     public String getRelativeFilePath() {
         return filePath;
     }
@@ -19,6 +19,11 @@ public class SimpleCfg extends Graph<InstructionAdapter, FlowType> {
         super();
     }
 
+    @Override
+    protected byte flowTypeOf(FlowType flowType) {
+        return flowType.toByte();
+    }
+
     @Override
     public String toString() {
         return this.toString(true);
@@ -61,6 +61,37 @@ public class ProbePosition {
         return isExit;
     }
 
+    /**
+     * Returns true if an instruction that runs after the previous probe position and before the probe of this
+     * position may throw, so that the method may be left without the probe running. A probe is inserted before
+     * the instruction of an entry position, and at the end of the basic block of an exit position: before its
+     * last instruction if that is a jump, return or throw, else after it (see Instrumenter).
+     */
+    public boolean canThrowBeforeProbe() {
+        if (isEntry) {
+            return false;
+        }
+
+        InstructionAdapter last = containingBasicBlock.getLastInstruction();
+        boolean probeBeforeLast = last.isJumpInstruction() || last.isReturnInstruction() || last.isThrowInstruction();
+        return containingBasicBlock.getInstructions().stream().
+                anyMatch(instr -> instr.canThrow() && !(probeBeforeLast && instr.equals(last)));
+    }
+
+    /**
+     * Returns true if an instruction that runs after the probe of this position and before the next probe
+     * position may throw: the instruction of a position that is both an entry and an exit, or the ATHROW of an
+     * exit position (which may leave the method even if the basic block has handlers). The instructions after
+     * the probe of an entry position that is not an exit belong to the exit position of its basic block.
+     */
+    public boolean canThrowAfterProbe() {
+        if (isEntry) {
+            return isExit && instruction.canThrow();
+        }
+
+        return instruction.isThrowInstruction();
+    }
+
     public InstructionAdapter getInstruction() {
         return instruction;
     }
@@ -0,0 +1,125 @@
+package pacovfor$jbc.analysis.testrequirements;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Coverage state of a set of test requirements numbered 0 .. size() - 1: one bit per requirement.
+ * <p>
+ * The bits are kept in chunks that are allocated when a bit of the chunk is first set, so a large
+ * and mostly uncovered set (e.g., the edge-pairs of a big switch) costs little memory. The last chunk
+ * only has the words the set needs, so the small sets of most methods take a word or two. Chunks are
+ * atomic so that concurrent covers never lose a bit.
+ * <p>
+ * The bits can be striped (see Config.coverageStripes): every thread then sets bits in the chunks of
+ * its own stripe, which are padded so that no two stripes share a cache line, and reads OR the stripes.
+ * Threads covering the same hot method then do not write to the same cache lines while its coverage
+ * grows. A bit is only written if it is not set yet, so covered requirements are never written again.
+ */
+public class CoverageBits {
+
+    private static final int BITS_PER_CHUNK_SHIFT = 12; // 4096 bits (64 longs) per chunk
+    private static final int BITS_PER_CHUNK = 1 << BITS_PER_CHUNK_SHIFT;
+
+    private final long size;
+    private final int numberOfChunks; // per stripe
+    private final int stripeMask;
+    private final int paddingWords;
+    private final AtomicReferenceArray<AtomicLongArray> chunks; // chunk c of stripe s at s * numberOfChunks + c
+    private final AtomicLong numberOfChanges = new AtomicLong();
+
+    public CoverageBits(long size) {
+        this(size, 1);
+    }
+
+    /**
+     * @param stripes - number of stripes, a power of two (see Stripes); 1 for a set that is not striped
+     */
+    public CoverageBits(long size, int stripes) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size should not be negative: " + size);
+        }
+        int numberOfStripes = Stripes.checkStripes(stripes);
+        this.size = size;
+        this.numberOfChunks = (int) ((size + BITS_PER_CHUNK - 1) >>> BITS_PER_CHUNK_SHIFT);
+        this.stripeMask = numberOfStripes - 1;
+        // words before and after the bits of a chunk of a striped set
+        this.paddingWords = numberOfStripes == 1 ? 0 : Stripes.CACHE_LINE_LONGS;
+        this.chunks = new AtomicReferenceArray<>(Math.multiplyExact(numberOfChunks, numberOfStripes));
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public void set(long index) {
+        checkIndex(index);
+
+        int chunkIndex = Stripes.stripeOfCurrentThread(stripeMask) * numberOfChunks + (int) (index >>> BITS_PER_CHUNK_SHIFT);
+        AtomicLongArray chunk = chunks.getAcquire(chunkIndex);
+        if (chunk == null) {
+            chunks.compareAndSet(chunkIndex, null, new AtomicLongArray(
+                    wordsOfChunk((int) (index >>> BITS_PER_CHUNK_SHIFT)) + 2 * paddingWords));
+            chunk = chunks.get(chunkIndex);
+        }
+
+        int word = paddingWords + ((int) (index & (BITS_PER_CHUNK - 1)) >>> 6);
+        long bit = 1L << (index & 63);
+        if ((chunk.getOpaque(word) & bit) == 0 &&
+                (chunk.getAndAccumulate(word, bit, (current, mask) -> current | mask) & bit) == 0) {
+            numberOfChanges.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of times a bit that was not set was set (in the stripe of the setting thread), so
+     * that a caller can tell cheaply whether any bit was set since it last looked.
+     */
+    public long getNumberOfChanges() {
+        return numberOfChanges.get();
+    }
+
+    public boolean get(long index) {
+        checkIndex(index);
+
+        int word = paddingWords + ((int) (index & (BITS_PER_CHUNK - 1)) >>> 6);
+        long bit = 1L << (index & 63);
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            AtomicLongArray chunk = chunks.get(stripe * numberOfChunks + (int) (index >>> BITS_PER_CHUNK_SHIFT));
+            if (chunk != null && (chunk.get(word) & bit) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of set bits.
+     */
+    public long cardinality() {
+        long count = 0;
+        for (int c = 0; c < numberOfChunks; c++) {
+            for (int word = 0; word < wordsOfChunk(c); word++) {
+                long bits = 0;
+                for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                    AtomicLongArray chunk = chunks.get(stripe * numberOfChunks + c);
+                    bits |= chunk == null ? 0 : chunk.get(paddingWords + word);
+                }
+                count += Long.bitCount(bits);
+            }
+        }
+        return count;
+    }
+
+    private int wordsOfChunk(int chunkIndex) {
+        long bitsOfChunk = Math.min(BITS_PER_CHUNK, size - ((long) chunkIndex << BITS_PER_CHUNK_SHIFT));
+        return (int) ((bitsOfChunk + 63) >>> 6);
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("index " + index + " is out of bounds for size " + size);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package pacovfor$jbc.analysis.testrequirements;
+
+import java.util.Objects;
+
+/**
+ * Def-use test requirement (all-uses coverage): a definition of a local variable and a use of the
+ * same variable that the definition reaches. Definitions and uses are identified by their numbers in
+ * the DefUseAnalysis of the method; two requirements are equal if they have the same definition and use.
+ * <p>
+ * A def-use pair is covered if the use is executed while the definition is the last definition of the
+ * variable. A definition is covered (all-defs coverage) if one of its def-use pairs is covered.
+ */
+public class DefUseTR extends AbstractTestRequirement {
+    private final int variable;
+    private final int definition;
+    private final int use;
+
+    public DefUseTR(int variable, int definition, int use) {
+        super();
+        this.variable = variable;
+        this.definition = definition;
+        this.use = use;
+    }
+
+    public int getVariable() {
+        return variable;
+    }
+
+    public int getDefinition() {
+        return definition;
+    }
+
+    public int getUse() {
+        return use;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DefUseTR that = (DefUseTR) o;
+        return this.definition == that.definition && this.use == that.use;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(definition, use);
+    }
+
+    @Override
+    public String toString() {
+        return "DefUse(var " + variable + ", def " + definition + ", use " + use + "): " + isCovered();
+    }
+}
@@ -0,0 +1,38 @@
+package pacovfor$jbc.analysis.testrequirements;
+
+import java.util.Arrays;
+
+/**
+ * Prime-path test requirement. A prime path is a simple path (or simple cycle) that is not a proper
+ * subpath of any other simple path. It is covered if an executed path tours it, i.e., contains it as a
+ * contiguous subpath.
+ * <p>
+ * The nodes of a prime path are not stored in the requirement; the requirement points to the node of
+ * the PrimePathTrie that ends the path, so prime paths with a common prefix share its nodes. The
+ * requirements are materialized by PrimePathTrie#getPrimePaths for reports, so identity equality is used.
+ */
+public class PrimePathTR extends AbstractTestRequirement {
+
+    private final PrimePathTrie.TrieNode last;
+
+    PrimePathTR(PrimePathTrie.TrieNode last) {
+        super();
+        this.last = last;
+    }
+
+    /**
+     * Returns the ids of the nodes of the prime path.
+     */
+    public int[] getPath() {
+        int[] path = new int[last.depth];
+        for (PrimePathTrie.TrieNode node = last; node.parent != null; node = node.parent) {
+            path[node.depth - 1] = node.id;
+        }
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "PrimePath" + Arrays.toString(getPath()) + ": " + isCovered();
+    }
+}
@@ -0,0 +1,235 @@
+package pacovfor$jbc.analysis.testrequirements;
+
+import pacovfor$jbc.graph.CsrGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trie over node ids storing the prime paths of a method. Prime paths that share a prefix share trie
+ * nodes, and the children of a trie node are kept in small arrays because a trie node has at most as
+ * many children as the cfg node has successors.
+ * <p>
+ * An executed path tours a prime path iff the prime path is a prefix of one of its suffixes, so
+ * matching walks the trie once from every position of the executed path. A walk stops at the first
+ * node without a matching child; since prime paths are simple, a walk is at most as long as the
+ * longest prime path.
+ * <p>
+ * The prime paths are numbered in the order they are added. The trie is immutable once enumerated and
+ * can be shared by every method with the same cfg shape; coverage is kept per method in CoverageBits.
+ */
+public class PrimePathTrie {
+
+    static class TrieNode {
+        final int id;
+        final TrieNode parent;
+        final int depth;
+        int[] childIds = new int[0];
+        TrieNode[] children = new TrieNode[0];
+        int primePath = -1; // number of the prime path ending here, -1 if none
+
+        TrieNode(int id, TrieNode parent) {
+            this.id = id;
+            this.parent = parent;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        TrieNode child(int childId) {
+            for (int i = 0; i < childIds.length; i++) {
+                if (childIds[i] == childId) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        TrieNode addChild(int childId) {
+            TrieNode child = child(childId);
+            if (child == null) {
+                child = new TrieNode(childId, this);
+                childIds = Arrays.copyOf(childIds, childIds.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                childIds[childIds.length - 1] = childId;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+
+    // the enumeration follows at most this many edges per prime path it is allowed to store
+    private static final int SEARCH_STEPS_PER_PRIME_PATH = 100;
+
+    private final TrieNode root = new TrieNode(-1, null);
+    private final List<TrieNode> primePathEnds = new ArrayList<>();
+    private boolean truncated;
+
+    /**
+     * Enumerates the prime paths of graph, where ids[v] is the node id of index v. A path that can not be
+     * extended at either end without repeating a node (other than closing a cycle) is a prime path, so
+     * every prime path is found by a DFS over the simple paths starting at its first node that keeps the
+     * forward-maximal ones whose first node has all its predecessors on the path. Memory is O(N) besides
+     * the trie.
+     * <p>
+     * Enumeration stops, and the trie is then marked as truncated, when a prime path beyond the first
+     * maxPrimePaths would be added or an edge beyond the first SEARCH_STEPS_PER_PRIME_PATH * maxPrimePaths
+     * would be followed.
+     */
+    public static PrimePathTrie enumerate(CsrGraph graph, int[] ids, int maxPrimePaths) {
+        int n = graph.nodeCount();
+        long maxSteps = (long) SEARCH_STEPS_PER_PRIME_PATH * maxPrimePaths;
+        long steps = 0;
+
+        PrimePathTrie trie = new PrimePathTrie();
+        int[] path = new int[n + 1];
+        int[] pathIds = new int[n + 1];
+        int[] edgeCursor = new int[n + 1];
+        boolean[] extended = new boolean[n + 1];
+        boolean[] onPath = new boolean[n];
+
+        for (int start = 0; start < n; start++) {
+            int top = 0;
+            path[0] = start;
+            pathIds[0] = ids[start];
+            edgeCursor[0] = graph.successorsStart(start);
+            extended[0] = false;
+            onPath[start] = true;
+
+            while (top >= 0) {
+                int v = path[top];
+                if (edgeCursor[top] < graph.successorsEnd(v)) {
+                    if (steps++ >= maxSteps) {
+                        trie.setTruncated(true);
+                        return trie;
+                    }
+
+                    int w = graph.successorAt(edgeCursor[top]++);
+                    if (w == start) {
+                        // simple cycle: can not be extended at all
+                        extended[top] = true;
+                        pathIds[top + 1] = ids[start];
+                        if (!trie.addWithin(pathIds, top + 2, maxPrimePaths)) {
+                            return trie;
+                        }
+                    } else if (!onPath[w]) {
+                        extended[top] = true;
+                        top++;
+                        path[top] = w;
+                        pathIds[top] = ids[w];
+                        edgeCursor[top] = graph.successorsStart(w);
+                        extended[top] = false;
+                        onPath[w] = true;
+                    }
+                } else {
+                    if (!extended[top] && hasAllPredecessorsOnPath(graph, start, onPath) &&
+                            !trie.addWithin(pathIds, top + 1, maxPrimePaths)) {
+                        return trie;
+                    }
+                    onPath[v] = false;
+                    top--;
+                }
+            }
+        }
+
+        return trie;
+    }
+
+    private static boolean hasAllPredecessorsOnPath(CsrGraph graph, int node, boolean[] onPath) {
+        for (int e = graph.predecessorsStart(node); e < graph.predecessorsEnd(node); e++) {
+            if (!onPath[graph.predecessorAt(e)]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the prime path path[0 .. length - 1] unless it was added before or the trie already has
+     * maxPrimePaths prime paths, in which case the trie is marked as truncated and false is returned.
+     */
+    private boolean addWithin(int[] path, int length, int maxPrimePaths) {
+        if (size() >= maxPrimePaths && !contains(path, length)) {
+            setTruncated(true);
+            return false;
+        }
+
+        add(path, length);
+        return true;
+    }
+
+    private boolean contains(int[] path, int length) {
+        TrieNode node = root;
+        for (int i = 0; i < length && node != null; i++) {
+            node = node.child(path[i]);
+        }
+        return node != null && node.primePath >= 0;
+    }
+
+    /**
+     * Adds the prime path path[0 .. length - 1] (if it was not added before) and returns its number.
+     */
+    public int add(int[] path, int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("a prime path has at least one node");
+        }
+
+        TrieNode node = root;
+        for (int i = 0; i < length; i++) {
+            node = node.addChild(path[i]);
+        }
+
+        if (node.primePath < 0) {
+            node.primePath = primePathEnds.size();
+            primePathEnds.add(node);
+        }
+        return node.primePath;
+    }
+
+    /**
+     * Covers every prime path toured by executedPath in covered.
+     */
+    public void cover(int[] executedPath, CoverageBits covered) {
+        for (int start = 0; start < executedPath.length; start++) {
+            TrieNode node = root;
+            for (int i = start; i < executedPath.length; i++) {
+                node = node.child(executedPath[i]);
+                if (node == null) {
+                    break;
+                }
+
+                if (node.primePath >= 0) {
+                    covered.set(node.primePath);
+                }
+            }
+        }
+    }
+
+    /**
+     * Materializes the prime paths as PrimePathTRs with the coverage in covered (e.g., to list the
+     * uncovered ones). Meant for reports only; the requirements are not kept.
+     */
+    public List<PrimePathTR> getPrimePaths(CoverageBits covered) {
+        List<PrimePathTR> primePaths = new ArrayList<>();
+        for (TrieNode end : primePathEnds) {
+            PrimePathTR primePath = new PrimePathTR(end);
+            primePath.setCovered(covered.get(end.primePath));
+            primePaths.add(primePath);
+        }
+        return primePaths;
+    }
+
+    public int size() {
+        return primePathEnds.size();
+    }
+
+    /**
+     * Returns true if the enumeration stopped before all prime paths were found (see enumerate).
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
@@ -0,0 +1,67 @@
+package pacovfor$jbc.analysis.testrequirements;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Execution counts of a set of items numbered 0 .. size() - 1 (e.g., the nodes or the edges of a cfg), kept
+ * like a LongAdder per item but in one array: the counters are striped as in CoverageBits (see
+ * Config.coverageStripes), every thread increments the counters of its own stripe, and get adds up the
+ * stripes. Stripes are padded so that no two stripes share a cache line.
+ */
+public class StripedCounters {
+
+    private final int size;
+    private final int stripeMask;
+    private final int paddingWords;
+    private final int stride; // words from the first counter of a stripe to that of the next
+    private final AtomicLongArray counters;
+
+    /**
+     * @param stripes - number of stripes, a power of two (see Stripes); 1 for counters that are not striped
+     */
+    public StripedCounters(int size, int stripes) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size should not be negative: " + size);
+        }
+        int numberOfStripes = Stripes.checkStripes(stripes);
+        this.size = size;
+        this.stripeMask = numberOfStripes - 1;
+        // words before every stripe and after the last one
+        this.paddingWords = numberOfStripes == 1 ? 0 : Stripes.CACHE_LINE_LONGS;
+        this.stride = size + paddingWords;
+        this.counters = new AtomicLongArray(Math.addExact(Math.multiplyExact(numberOfStripes, stride), paddingWords));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void increment(int index) {
+        checkIndex(index);
+        counters.getAndIncrement(Stripes.stripeOfCurrentThread(stripeMask) * stride + paddingWords + index);
+    }
+
+    public void add(int index, long delta) {
+        checkIndex(index);
+        counters.getAndAdd(Stripes.stripeOfCurrentThread(stripeMask) * stride + paddingWords + index, delta);
+    }
+
+    /**
+     * Returns the count of item index, the sum of its counters in all stripes.
+     */
+    public long get(int index) {
+        checkIndex(index);
+
+        long count = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            count += counters.get(stripe * stride + paddingWords + index);
+        }
+        return count;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("index " + index + " is out of bounds for size " + size);
+        }
+    }
+}
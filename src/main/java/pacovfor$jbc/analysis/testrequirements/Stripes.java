@@ -0,0 +1,35 @@
+package pacovfor$jbc.analysis.testrequirements;
+
+/**
+ * Stripes of the per-method state of the coverage runtime (see Config.coverageStripes): every thread writes
+ * to the stripe of its id, and stripes are padded by a cache line so that no two of them share one.
+ */
+public final class Stripes {
+
+    public static final int MAX_STRIPES = 1 << 16;
+
+    // a 64-byte cache line
+    public static final int CACHE_LINE_LONGS = 8;
+    public static final int CACHE_LINE_INTS = 16;
+
+    private Stripes() {
+    }
+
+    /**
+     * Returns the stripe of the current thread among stripeMask + 1 stripes.
+     */
+    public static int stripeOfCurrentThread(int stripeMask) {
+        return stripeMask == 0 ? 0 : (int) Thread.currentThread().getId() & stripeMask;
+    }
+
+    /**
+     * Returns stripes if it is a valid number of stripes, a power of two in [1, MAX_STRIPES] as
+     * Config.coverageStripes is.
+     */
+    public static int checkStripes(int stripes) {
+        if (stripes <= 0 || stripes > MAX_STRIPES || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes should be a power of two in [1, 2^16]: " + stripes);
+        }
+        return stripes;
+    }
+}
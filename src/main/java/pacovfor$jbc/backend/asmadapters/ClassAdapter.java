@@ -3,6 +3,7 @@ package pacovfor$jbc.backend.asmadapters;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 import pacovfor$jbc.classloaders.ClassLoaderAdapter;
 import pacovfor$jbc.utils.Utils;
@@ -18,16 +19,25 @@ public class ClassAdapter {
 
     public static final String SYNTHETIC_ATTRIBUTE = "Synthetic";
 
+    // static field holding the coverage of the methods of the class, indexed by method id (see addLoadCfgsInstns)
+    public static final String COVERAGE_FIELD_NAME = "pacovfor$jbc$coverage";
+    public static final String COVERAGE_FIELD_DESCRIPTOR = "[Lpacovfor$jbc/analysis/graphtypes/MethodCoverage;";
+
     private final ClassNode classNode;
-    private final ClassLoaderAdapter classLoaderAdapter;
+    // loads the classes whose common super classes are needed to compute frames (see toByteArray)
+    private final ClassLoader classLoader;
     private List<MethodAdapter> methodAdapters;
 
     public ClassAdapter(byte[] classBytes, ClassLoaderAdapter classLoaderAdapter) {
+        this(classBytes, classLoaderAdapter.getClassLoader());
+    }
+
+    public ClassAdapter(byte[] classBytes, ClassLoader classLoader) {
         if (classBytes == null) {
             throw new IllegalArgumentException("classBytes is null");
         }
 
-        this.classLoaderAdapter = classLoaderAdapter;
+        this.classLoader = classLoader;
         this.classNode = new ClassNode();
         ClassReader cr = new ClassReader(classBytes);
         cr.accept(this.classNode, 0);
@@ -96,6 +106,38 @@ public class ClassAdapter {
     }
 
     public void addLoadCfgsInstns() {
+        // insert coverage = GraphAdapter.loadAllCfgsOfClass(className) at the beginning of the class initializer,
+        // so that the probes reach the coverage of their method through the field without any lookup
+        InsnList newInstnList = new InsnList();
+        newInstnList.add(new LdcInsnNode(Utils.getClassDirName(this.classNode.name)));
+        newInstnList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
+                "loadAllCfgsOfClass", "(Ljava/lang/String;)" + COVERAGE_FIELD_DESCRIPTOR, false));
+        addCoverageField(newInstnList, 1);
+    }
+
+    /**
+     * Like addLoadCfgsInstns, but for tiered instrumentation (see TieredAgent): the class initializer binds
+     * the coverage field to an array without any coverage, which is filled as methods are escalated, i.e.,
+     * coverage = GraphAdapter.loadTieredCoverageOfClass(ClassName.class, numberOfMethodIds). The class
+     * initializer and the field are the same whichever methods are escalated, since retransforming a class
+     * can not add or remove any.
+     */
+    public void addLoadTieredCoverageInstns() {
+        int numberOfMethodIds = getMethods().stream().mapToInt(MethodAdapter::getID).max().orElse(-1) + 1;
+
+        InsnList newInstnList = new InsnList();
+        newInstnList.add(new LdcInsnNode(Type.getObjectType(this.classNode.name)));
+        newInstnList.add(new LdcInsnNode(numberOfMethodIds));
+        newInstnList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
+                "loadTieredCoverageOfClass", "(Ljava/lang/Class;I)" + COVERAGE_FIELD_DESCRIPTOR, false));
+        addCoverageField(newInstnList, 2);
+    }
+
+    /**
+     * Adds the coverage field to the class and inserts loadCoverage, which pushes the value of the field, followed
+     * by a PUTSTATIC to the field at the beginning of the class initializer.
+     */
+    private void addCoverageField(InsnList loadCoverage, int maxStackOfLoadCoverage) {
         Optional<MethodNode> optClassInitialzer = this.classNode.methods.stream().
                 filter(methodNode -> methodNode.name.equals(CLASS_OR_INTERFACE_INIT_METHOD)).findFirst();
 
@@ -114,16 +156,18 @@ public class ClassAdapter {
             classInitializer = optClassInitialzer.get();
         }
 
-        InsnList newInstnList = new InsnList();
-        // insert call GraphAdapter.loadAllCfgsOfClass(className) at the beginning of the method
-        newInstnList.add(new LdcInsnNode(Utils.getClassDirName(this.classNode.name)));
-        newInstnList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
-                "loadAllCfgsOfClass", "(Ljava/lang/String;)V", false));
+        // add a static final field for the coverage of the methods of the class; fields of interfaces
+        // must be public
+        boolean isInterface = (this.classNode.access & ACC_INTERFACE) != 0;
+        this.classNode.fields.add(new FieldNode((isInterface ? ACC_PUBLIC : ACC_PRIVATE) | ACC_STATIC | ACC_FINAL |
+                ACC_SYNTHETIC, COVERAGE_FIELD_NAME, COVERAGE_FIELD_DESCRIPTOR, null, null));
 
-        classInitializer.instructions.insert(newInstnList);
+        loadCoverage.add(new FieldInsnNode(PUTSTATIC, this.classNode.name, COVERAGE_FIELD_NAME,
+                COVERAGE_FIELD_DESCRIPTOR));
+        classInitializer.instructions.insert(loadCoverage);
 
         // change local variables max and stack max values
-        classInitializer.maxStack += 1;
+        classInitializer.maxStack += maxStackOfLoadCoverage;
     }
 
     public String getName() {
@@ -135,11 +179,22 @@ public class ClassAdapter {
         ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
             @Override
             protected ClassLoader getClassLoader() {
-                return ClassAdapter.this.classLoaderAdapter.getClassLoader();
+                return ClassAdapter.this.classLoader;
             }
         };
 
         this.classNode.accept(cw);
         return cw.toByteArray();
     }
+
+    /**
+     * Like toByteArray, but writes the stack map frames of the class as read instead of computing them, so
+     * that no class is loaded. Only valid if every instruction inserted into the class keeps the frames of
+     * the method, e.g., the escalation check of a tiered method (see MethodAdapter#addEscalationInstructions).
+     */
+    public byte[] toByteArrayKeepingFrames() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        this.classNode.accept(cw);
+        return cw.toByteArray();
+    }
 }
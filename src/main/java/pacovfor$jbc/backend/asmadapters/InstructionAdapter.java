@@ -2,6 +2,9 @@ package pacovfor$jbc.backend.asmadapters;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.VarInsnNode;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -117,10 +120,114 @@ public class InstructionAdapter {
         return asmInstruction.getOpcode() == Opcodes.ATHROW;
     }
 
+    /**
+     * Returns true if the instruction may complete abruptly with an exception, other than a VirtualMachineError:
+     * invocations, field and array accesses, allocations, integer division, casts, monitors, constants that are
+     * resolved (LDC) and ATHROW. Returns are assumed to complete normally.
+     */
+    public boolean canThrow() {
+        int opcode = asmInstruction.getOpcode();
+        switch (opcode) {
+            case Opcodes.LDC:
+            case Opcodes.IALOAD:
+            case Opcodes.LALOAD:
+            case Opcodes.FALOAD:
+            case Opcodes.DALOAD:
+            case Opcodes.AALOAD:
+            case Opcodes.BALOAD:
+            case Opcodes.CALOAD:
+            case Opcodes.SALOAD:
+            case Opcodes.IASTORE:
+            case Opcodes.LASTORE:
+            case Opcodes.FASTORE:
+            case Opcodes.DASTORE:
+            case Opcodes.AASTORE:
+            case Opcodes.BASTORE:
+            case Opcodes.CASTORE:
+            case Opcodes.SASTORE:
+            case Opcodes.IDIV:
+            case Opcodes.LDIV:
+            case Opcodes.IREM:
+            case Opcodes.LREM:
+            case Opcodes.GETSTATIC:
+            case Opcodes.PUTSTATIC:
+            case Opcodes.GETFIELD:
+            case Opcodes.PUTFIELD:
+            case Opcodes.INVOKEVIRTUAL:
+            case Opcodes.INVOKESPECIAL:
+            case Opcodes.INVOKESTATIC:
+            case Opcodes.INVOKEINTERFACE:
+            case Opcodes.INVOKEDYNAMIC:
+            case Opcodes.NEW:
+            case Opcodes.NEWARRAY:
+            case Opcodes.ANEWARRAY:
+            case Opcodes.ARRAYLENGTH:
+            case Opcodes.ATHROW:
+            case Opcodes.CHECKCAST:
+            case Opcodes.INSTANCEOF:
+            case Opcodes.MONITORENTER:
+            case Opcodes.MONITOREXIT:
+            case Opcodes.MULTIANEWARRAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns true if the instruction reads a local variable (xLOAD). IINC is handled separately.
+     */
+    public boolean isLocalVariableLoad() {
+        int opcode = asmInstruction.getOpcode();
+        return opcode >= Opcodes.ILOAD && opcode <= Opcodes.ALOAD;
+    }
+
+    /**
+     * Returns true if the instruction writes a local variable (xSTORE). IINC is handled separately.
+     */
+    public boolean isLocalVariableStore() {
+        int opcode = asmInstruction.getOpcode();
+        return opcode >= Opcodes.ISTORE && opcode <= Opcodes.ASTORE;
+    }
+
+    /**
+     * Returns true if the instruction is an IINC, which both reads and writes a local variable.
+     */
+    public boolean isLocalVariableIncrement() {
+        return asmInstruction.getOpcode() == Opcodes.IINC;
+    }
+
+    public int getLocalVariableIndex() {
+        if (asmInstruction.getType() == AbstractInsnNode.VAR_INSN) {
+            return ((VarInsnNode) asmInstruction).var;
+        } else if (asmInstruction.getType() == AbstractInsnNode.IINC_INSN) {
+            return ((IincInsnNode) asmInstruction).var;
+        }
+
+        throw new IllegalStateException("getting local variable index is not allowed, because the instruction " +
+                "does not access a local variable");
+    }
+
     public boolean isLabel() {
         return asmInstruction.getType() == AbstractInsnNode.LABEL;
     }
 
+    /**
+     * Returns true if the instruction is a line number entry (not a real instruction); the line applies
+     * to the instructions that follow it.
+     */
+    public boolean isLineNumber() {
+        return asmInstruction.getType() == AbstractInsnNode.LINE;
+    }
+
+    public int getLineNumber() {
+        if (!isLineNumber()) {
+            throw new IllegalStateException("getting line number is not allowed, because it is not a line number entry");
+        }
+
+        return ((LineNumberNode) asmInstruction).line;
+    }
+
     public boolean isUsedLabel() {
         if (!isLabel()) {
             throw new IllegalStateException("can not call isUsedLabel. the instruction is not a label");
@@ -1,8 +1,10 @@
 package pacovfor$jbc.backend.asmadapters;
 
 import pacovfor$jbc.utils.Utils;
+import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
 import org.objectweb.asm.util.Printer;
 import org.objectweb.asm.util.Textifier;
@@ -25,6 +27,10 @@ public class MethodAdapter {
     public static final String CONSTRUCTOR_METHOD_NAME = "<init>";
     public static final String CLASS_OR_INTERFACE_INIT_METHOD = "<clinit>";
 
+    // methods with more instructions are not copied (see saveUninstrumentedBody), so that the copy and the
+    // probes do not exceed the 64KB code limit of a method
+    private static final int MAX_INSTRUCTIONS_OF_COPIED_METHOD = 8192;
+
     private final ClassAdapter classAdapter;
     private final MethodNode methodNode;
     private List<InstructionAdapter> instructionList; // already sorted by bytecode index and instruction index
@@ -33,6 +39,12 @@ public class MethodAdapter {
 
     private boolean isChanged = false;
 
+    // uninstrumented copy of the method run by unsampled invocations and once the probes are switched off
+    // (see saveUninstrumentedBody); null if there is none
+    private InsnList uninstrumentedInstructions;
+    private List<TryCatchBlockNode> uninstrumentedTryCatchBlocks;
+    private List<LocalVariableNode> uninstrumentedLocalVariables;
+
     public String getFullName() {
         return Utils.getRelativeFilePathOfMethod(this);
     }
@@ -234,6 +246,27 @@ public class MethodAdapter {
         return null;
     }
 
+    /**
+     * Returns the local variable indexes of the parameters (including "this" for instance methods).
+     */
+    public int[] getParameterLocalVariables() {
+        Type[] argumentTypes = Type.getArgumentTypes(methodNode.desc);
+        boolean isStatic = (methodNode.access & Opcodes.ACC_STATIC) != 0;
+
+        int[] parameterLocalVariables = new int[argumentTypes.length + (isStatic ? 0 : 1)];
+        int i = 0;
+        int localVariableIndex = 0;
+        if (!isStatic) {
+            parameterLocalVariables[i++] = localVariableIndex++;
+        }
+        for (Type argumentType : argumentTypes) {
+            parameterLocalVariables[i++] = localVariableIndex;
+            localVariableIndex += argumentType.getSize();
+        }
+
+        return parameterLocalVariables;
+    }
+
     public boolean isNative() {
         return (methodNode.access & Opcodes.ACC_NATIVE) != 0;
     }
@@ -282,11 +315,10 @@ public class MethodAdapter {
         // get the local variable index and increase the number of local variables by one
         int newLocalVariableIndex = this.methodNode.maxLocals++;
 
+        // Path path = PathArena.acquire();
         InsnList newInstList = new InsnList();
-        newInstList.add(new TypeInsnNode(NEW, "pacovfor$jbc/frontend/graphadapters/Path"));
-        newInstList.add(new InsnNode(DUP));
-        newInstList.add(new MethodInsnNode(INVOKESPECIAL, "pacovfor$jbc/frontend/graphadapters/Path",
-                CONSTRUCTOR_METHOD_NAME, "()V", false));
+        newInstList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/PathArena",
+                "acquire", "()Lpacovfor$jbc/frontend/graphadapters/Path;", false));
         newInstList.add(new VarInsnNode(ASTORE, newLocalVariableIndex));
 
         this.methodNode.instructions.insert(newInstList);
@@ -300,10 +332,180 @@ public class MethodAdapter {
 
         InsnList newInstList = new InsnList();
         newInstList.add(new VarInsnNode(ALOAD, localVariableIndex));
-        newInstList.add(new LdcInsnNode(Integer.valueOf(probePositionID).toString()));
+        newInstList.add(createPushIntInstruction(probePositionID));
         newInstList.add(new MethodInsnNode(INVOKEVIRTUAL, "pacovfor$jbc/frontend/graphadapters/Path",
-                "addProbePositionID", "(Ljava/lang/String;)V", false));
+                "addProbePositionID", "(I)V", false));
+
+        if (before) {
+            this.methodNode.instructions.insertBefore(instruction.getAsmInstruction(), newInstList);
+        } else {
+            this.methodNode.instructions.insert(instruction.getAsmInstruction(), newInstList);
+        }
+    }
+
+    /**
+     * Adds the locals of online coverage at the beginning of the method and returns the index of the first:
+     * the coverage of the method, returned by GraphAdapter.enterOnline(coverage[id]), followed by the last
+     * probe position id of the invocation and the edge into it, both initialized to -1.
+     */
+    public int addOnlineCoverageLocalsAtMethodEntry() {
+        isChanged = true;
+
+        int coverageIndex = this.methodNode.maxLocals;
+        this.methodNode.maxLocals += 3;
+
+        InsnList newInstList = new InsnList();
+        newInstList.add(createLoadCoverageInstnList());
+        newInstList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
+                "enterOnline", "(Lpacovfor$jbc/analysis/graphtypes/MethodCoverage;)Lpacovfor$jbc/analysis/graphtypes/MethodCoverage;", false));
+        newInstList.add(new VarInsnNode(ASTORE, coverageIndex));
+        newInstList.add(new InsnNode(ICONST_M1));
+        newInstList.add(new VarInsnNode(ISTORE, coverageIndex + 1));
+        newInstList.add(new InsnNode(ICONST_M1));
+        newInstList.add(new VarInsnNode(ISTORE, coverageIndex + 2));
+
+        this.methodNode.instructions.insert(newInstList);
+
+        return coverageIndex;
+    }
+
+    /**
+     * Inserts an online coverage probe (see addOnlineCoverageLocalsAtMethodEntry) before or after instruction:
+     * lastEdge = coverage.coverStep(lastEdge, last, probePositionID); last = probePositionID;
+     */
+    public void insertCoverStepInstructions(InstructionAdapter instruction, int coverageIndex,
+                                            int probePositionID, boolean before) {
+        isChanged = true;
+
+        int lastIndex = coverageIndex + 1;
+        int lastEdgeIndex = coverageIndex + 2;
+
+        InsnList newInstList = new InsnList();
+        newInstList.add(new VarInsnNode(ALOAD, coverageIndex));
+        newInstList.add(new VarInsnNode(ILOAD, lastEdgeIndex));
+        newInstList.add(new VarInsnNode(ILOAD, lastIndex));
+        newInstList.add(createPushIntInstruction(probePositionID));
+        newInstList.add(new MethodInsnNode(INVOKEVIRTUAL, "pacovfor$jbc/analysis/graphtypes/MethodCoverage",
+                "coverStep", "(III)I", false));
+        newInstList.add(new VarInsnNode(ISTORE, lastEdgeIndex));
+        newInstList.add(createPushIntInstruction(probePositionID));
+        newInstList.add(new VarInsnNode(ISTORE, lastIndex));
+
+        if (before) {
+            this.methodNode.instructions.insertBefore(instruction.getAsmInstruction(), newInstList);
+        } else {
+            this.methodNode.instructions.insert(instruction.getAsmInstruction(), newInstList);
+        }
+    }
+
+    /**
+     * Adds an int local variable (the Ball-Larus path register) at the beginning of the method,
+     * initialized to initialValue, and returns its index.
+     */
+    public int addPathRegisterAtMethodEntry(int initialValue) {
+        isChanged = true;
+
+        int newLocalVariableIndex = this.methodNode.maxLocals++;
+
+        InsnList newInstList = new InsnList();
+        newInstList.add(createPushIntInstruction(initialValue));
+        newInstList.add(new VarInsnNode(ISTORE, newLocalVariableIndex));
+
+        this.methodNode.instructions.insert(newInstList);
+
+        return newLocalVariableIndex;
+    }
+
+    /**
+     * Adds a handler of any exception thrown by the original instructions of a method instrumented in path
+     * profiling mode, which counts the path in the Ball-Larus path register unless it is already counted
+     * (-1), and rethrows the exception:
+     * try {
+     *    ...
+     * } catch (Throwable t) {
+     *    if (register >= 0) GraphAdapter.countPath(coverage[id], register);
+     *    throw t;
+     * }
+     */
+    public void addPathCountingHandlerInstructions(int localVariableIndex) {
+        isChanged = true;
+
+        LabelNode handlerStart = new LabelNode(new Label()); // inclusive
+        LabelNode handlerEnd = new LabelNode(new Label()); // exclusive
+        LabelNode rethrow = new LabelNode(new Label());
+        this.methodNode.instructions.insertBefore(instructionList.get(0).getAsmInstruction(), handlerStart);
+        this.methodNode.instructions.add(handlerEnd);
+
+        InsnList newInstList = new InsnList();
+        newInstList.add(new VarInsnNode(ILOAD, localVariableIndex));
+        newInstList.add(new JumpInsnNode(IFLT, rethrow));
+        newInstList.add(createLoadCoverageInstnList());
+        newInstList.add(new VarInsnNode(ILOAD, localVariableIndex));
+        newInstList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
+                "countPath", "(Lpacovfor$jbc/analysis/graphtypes/MethodCoverage;I)V", false));
+        newInstList.add(rethrow);
+        newInstList.add(new InsnNode(ATHROW));
+        this.methodNode.instructions.add(newInstList);
+
+        this.methodNode.tryCatchBlocks.add(new TryCatchBlockNode(handlerStart, handlerEnd, handlerEnd, null));
+    }
+
+    private AbstractInsnNode createPushIntInstruction(int value) {
+        if (value >= -1 && value <= 5) {
+            return new InsnNode(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            return new IntInsnNode(SIPUSH, value);
+        }
+
+        return new LdcInsnNode(value);
+    }
+
+    /**
+     * Creates the instructions of a path register update. If countPath is false, increment is added
+     * to the register. Otherwise, GraphAdapter.countPath(coverage[id], register + increment) is called
+     * and the register is set to resetValue.
+     */
+    private InsnList createPathRegisterUpdateInstnList(int localVariableIndex, int increment, boolean countPath,
+                                                       int resetValue) {
+        InsnList newInstList = new InsnList();
+        if (!countPath) {
+            if (increment >= Short.MIN_VALUE && increment <= Short.MAX_VALUE) {
+                newInstList.add(new IincInsnNode(localVariableIndex, increment));
+            } else {
+                newInstList.add(new VarInsnNode(ILOAD, localVariableIndex));
+                newInstList.add(createPushIntInstruction(increment));
+                newInstList.add(new InsnNode(IADD));
+                newInstList.add(new VarInsnNode(ISTORE, localVariableIndex));
+            }
+
+            return newInstList;
+        }
+
+        newInstList.add(createLoadCoverageInstnList());
+        newInstList.add(new VarInsnNode(ILOAD, localVariableIndex));
+        if (increment != 0) {
+            newInstList.add(createPushIntInstruction(increment));
+            newInstList.add(new InsnNode(IADD));
+        }
+        newInstList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
+                "countPath", "(Lpacovfor$jbc/analysis/graphtypes/MethodCoverage;I)V", false));
+        newInstList.add(createPushIntInstruction(resetValue));
+        newInstList.add(new VarInsnNode(ISTORE, localVariableIndex));
+
+        return newInstList;
+    }
+
+    /**
+     * Inserts a path register update (see createPathRegisterUpdateInstnList) before or after instruction.
+     */
+    public void insertPathRegisterUpdate(InstructionAdapter instruction, int localVariableIndex, int increment,
+                                         boolean countPath, int resetValue, boolean before) {
+        isChanged = true;
 
+        InsnList newInstList = createPathRegisterUpdateInstnList(localVariableIndex, increment, countPath,
+                resetValue);
         if (before) {
             this.methodNode.instructions.insertBefore(instruction.getAsmInstruction(), newInstList);
         } else {
@@ -311,17 +513,257 @@ public class MethodAdapter {
         }
     }
 
+    /**
+     * Performs a path register update only when jumpInstruction jumps to targetLabel: a trampoline
+     * (label, update, goto targetLabel) is appended at the end of the method and every reference of
+     * jumpInstruction to targetLabel is redirected to the trampoline.
+     */
+    public void insertPathRegisterUpdateOnJump(InstructionAdapter jumpInstruction, InstructionAdapter targetLabel,
+                                               int localVariableIndex, int increment, boolean countPath,
+                                               int resetValue) {
+        if (!jumpInstruction.isJumpInstruction() || !targetLabel.isLabel()) {
+            throw new IllegalArgumentException("jumpInstruction is not a jump or targetLabel is not a label");
+        }
+
+        isChanged = true;
+
+        LabelNode originalLabel = (LabelNode) targetLabel.getAsmInstruction();
+        LabelNode trampolineLabel = new LabelNode(new Label());
+
+        AbstractInsnNode asmJumpInstruction = jumpInstruction.getAsmInstruction();
+        if (asmJumpInstruction.getType() == AbstractInsnNode.JUMP_INSN) {
+            JumpInsnNode jumpInstr = (JumpInsnNode) asmJumpInstruction;
+            if (jumpInstr.label == originalLabel) {
+                jumpInstr.label = trampolineLabel;
+            }
+        } else if (asmJumpInstruction.getType() == AbstractInsnNode.LOOKUPSWITCH_INSN) {
+            LookupSwitchInsnNode lookupInstr = (LookupSwitchInsnNode) asmJumpInstruction;
+            lookupInstr.labels.replaceAll(label -> label == originalLabel ? trampolineLabel : label);
+            if (lookupInstr.dflt == originalLabel) {
+                lookupInstr.dflt = trampolineLabel;
+            }
+        } else if (asmJumpInstruction.getType() == AbstractInsnNode.TABLESWITCH_INSN) {
+            TableSwitchInsnNode tableSwitchInstr = (TableSwitchInsnNode) asmJumpInstruction;
+            tableSwitchInstr.labels.replaceAll(label -> label == originalLabel ? trampolineLabel : label);
+            if (tableSwitchInstr.dflt == originalLabel) {
+                tableSwitchInstr.dflt = trampolineLabel;
+            }
+        }
+
+        // the last instruction of a method never falls through, so the trampoline is only reached by jumps
+        this.methodNode.instructions.add(trampolineLabel);
+        this.methodNode.instructions.add(createPathRegisterUpdateInstnList(localVariableIndex, increment,
+                countPath, resetValue));
+        this.methodNode.instructions.add(new JumpInsnNode(GOTO, originalLabel));
+    }
+
     public boolean isChanged() {
         return this.isChanged;
     }
 
+    /**
+     * Saves a copy of the (yet uninstrumented) method with its exception table and local variables, which
+     * addUninstrumentedBodyBranches appends to the method once it is instrumented. Returns false, and saves
+     * nothing, if the method is too large to be copied.
+     */
+    public boolean saveUninstrumentedBody() {
+        if (this.methodNode.instructions.size() > MAX_INSTRUCTIONS_OF_COPIED_METHOD) {
+            return false;
+        }
+
+        Map<LabelNode, LabelNode> copiedLabels = new HashMap<>();
+        for (AbstractInsnNode instruction : this.methodNode.instructions) {
+            if (instruction.getType() == AbstractInsnNode.LABEL) {
+                copiedLabels.put((LabelNode) instruction, new LabelNode(new Label()));
+            }
+        }
+
+        this.uninstrumentedInstructions = new InsnList();
+        for (AbstractInsnNode instruction : this.methodNode.instructions) {
+            this.uninstrumentedInstructions.add(instruction.clone(copiedLabels));
+        }
+
+        this.uninstrumentedTryCatchBlocks = this.methodNode.tryCatchBlocks.stream().
+                map(block -> new TryCatchBlockNode(copiedLabels.get(block.start), copiedLabels.get(block.end),
+                        copiedLabels.get(block.handler), block.type)).
+                collect(Collectors.toList());
+
+        this.uninstrumentedLocalVariables = this.methodNode.localVariables == null ? Collections.emptyList() :
+                this.methodNode.localVariables.stream().
+                        map(variable -> new LocalVariableNode(variable.name, variable.desc, variable.signature,
+                                copiedLabels.get(variable.start), copiedLabels.get(variable.end), variable.index)).
+                        collect(Collectors.toList());
+        return true;
+    }
+
+    /**
+     * Appends the copy saved by saveUninstrumentedBody to the method and inserts at its beginning the checks
+     * that send an invocation to the copy instead of the instrumented method:
+     * if (coverage[id] == null) goto copy;      (if tiered)
+     * if (!coverageSwitch()) goto copy;      (if coverageSwitch)
+     * if (!probeSwitch()) goto copy;      (if probeSwitch)
+     * if (!coverage[id].sample()) goto copy;      (if sample)
+     * coverageSwitch() is an invokedynamic call site that returns true while coverage is enabled (see
+     * CoverageSwitch), and probeSwitch() one that returns true until the probes of the method are switched off
+     * (see GraphAdapter#bootstrapProbeSwitch), so that the JIT can fold them; class files older than Java 7
+     * call CoverageSwitch.isEnabled() and coverage[id].isProbeSwitchOn() instead. A method escalated in tiered
+     * instrumentation (see TieredAgent) runs the copy until its coverage is bound, which is only once its
+     * instrumented body is installed (see Escalator). Called after the method is instrumented; the copy is
+     * appended after the last instruction, which never falls through.
+     */
+    public void addUninstrumentedBodyBranches(boolean tiered, boolean coverageSwitch, boolean probeSwitch,
+                                              boolean sample) {
+        if (this.uninstrumentedInstructions == null) {
+            throw new IllegalStateException("the uninstrumented body of the method is not saved");
+        }
+
+        isChanged = true;
+
+        LabelNode uninstrumentedStart = new LabelNode(new Label());
+        InsnList newInstList = new InsnList();
+        if (tiered) {
+            newInstList.add(createLoadCoverageInstnList());
+            newInstList.add(new JumpInsnNode(IFNULL, uninstrumentedStart));
+        }
+        if (coverageSwitch) {
+            newInstList.add(createCoverageSwitchInstnList());
+            newInstList.add(new JumpInsnNode(IFEQ, uninstrumentedStart));
+        }
+        if (probeSwitch && (classAdapter.classVersion() & 0xFFFF) >= V1_7) {
+            newInstList.add(new InvokeDynamicInsnNode("probeSwitch", "()Z", new Handle(H_INVOKESTATIC,
+                    "pacovfor$jbc/frontend/graphadapters/GraphAdapter", "bootstrapProbeSwitch",
+                    "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;" +
+                            "Ljava/lang/String;)Ljava/lang/invoke/CallSite;", false),
+                    Utils.getRelativeFilePathOfMethod(this)));
+            newInstList.add(new JumpInsnNode(IFEQ, uninstrumentedStart));
+        } else if (probeSwitch) {
+            newInstList.add(createLoadCoverageInstnList());
+            newInstList.add(new MethodInsnNode(INVOKEVIRTUAL, "pacovfor$jbc/analysis/graphtypes/MethodCoverage",
+                    "isProbeSwitchOn", "()Z", false));
+            newInstList.add(new JumpInsnNode(IFEQ, uninstrumentedStart));
+        }
+        if (sample) {
+            newInstList.add(createLoadCoverageInstnList());
+            newInstList.add(new MethodInsnNode(INVOKEVIRTUAL, "pacovfor$jbc/analysis/graphtypes/MethodCoverage",
+                    "sample", "()Z", false));
+            newInstList.add(new JumpInsnNode(IFEQ, uninstrumentedStart));
+        }
+        this.methodNode.instructions.insert(newInstList);
+
+        this.methodNode.instructions.add(uninstrumentedStart);
+        this.methodNode.instructions.add(this.uninstrumentedInstructions);
+        this.methodNode.tryCatchBlocks.addAll(this.uninstrumentedTryCatchBlocks);
+        if (!this.uninstrumentedLocalVariables.isEmpty()) {
+            this.methodNode.localVariables.addAll(this.uninstrumentedLocalVariables);
+        }
+
+        this.uninstrumentedInstructions = null;
+        this.uninstrumentedTryCatchBlocks = null;
+        this.uninstrumentedLocalVariables = null;
+    }
+
+    /**
+     * Creates the instructions that push the coverage of the method: coverage[id], where coverage is the
+     * static field of the class bound in its class initializer (see ClassAdapter#addLoadCfgsInstns) and id
+     * is the id of the method, which is also the name of the file that includes its cfg.
+     */
+    private InsnList createLoadCoverageInstnList() {
+        InsnList newInstList = new InsnList();
+        newInstList.add(new FieldInsnNode(GETSTATIC, classAdapter.getName(), ClassAdapter.COVERAGE_FIELD_NAME,
+                ClassAdapter.COVERAGE_FIELD_DESCRIPTOR));
+        newInstList.add(createPushIntInstruction(getID()));
+        newInstList.add(new InsnNode(AALOAD));
+        return newInstList;
+    }
+
+    /**
+     * Creates the instructions that push whether coverage is enabled (see CoverageSwitch): an invokedynamic
+     * call site the JIT folds, or a call to CoverageSwitch.isEnabled() in class files older than Java 7.
+     */
+    private InsnList createCoverageSwitchInstnList() {
+        InsnList newInstList = new InsnList();
+        if ((classAdapter.classVersion() & 0xFFFF) >= V1_7) {
+            newInstList.add(new InvokeDynamicInsnNode("coverageSwitch", "()Z", new Handle(H_INVOKESTATIC,
+                    "pacovfor$jbc/analysis/graphtypes/CoverageSwitch", "bootstrap",
+                    "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;)" +
+                            "Ljava/lang/invoke/CallSite;", false)));
+        } else {
+            newInstList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/analysis/graphtypes/CoverageSwitch",
+                    "isEnabled", "()Z", false));
+        }
+        return newInstList;
+    }
+
+    /**
+     * Inserts a call GraphAdapter.enter(coverage[id]) at the beginning of the method (the only probe at
+     * method coverage level), skipped while coverage is disabled if coverageSwitch:
+     * if (coverageSwitch()) GraphAdapter.enter(coverage[id]);
+     */
+    public void addEnterMethodInstructions(boolean coverageSwitch) {
+        isChanged = true;
+
+        LabelNode afterEnter = new LabelNode(new Label());
+        InsnList newInstList = new InsnList();
+        if (coverageSwitch) {
+            newInstList.add(createCoverageSwitchInstnList());
+            newInstList.add(new JumpInsnNode(IFEQ, afterEnter));
+        }
+        newInstList.add(createLoadCoverageInstnList());
+        newInstList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
+                "enter", "(Lpacovfor$jbc/analysis/graphtypes/MethodCoverage;)V", false));
+        if (coverageSwitch) {
+            newInstList.add(afterEnter);
+        }
+
+        this.methodNode.instructions.insert(newInstList);
+    }
+
+    /**
+     * Inserts the only probe of a method that is not escalated yet in tiered instrumentation (see TieredAgent)
+     * at the beginning of the method:
+     * if (coverage[id] == null) GraphAdapter.escalate(ClassName.class, id);
+     * coverage[id] is bound once the escalated method is instrumented (see Escalator), so the check costs one
+     * load and one branch until then. The stack map frame of the method entry is added after the check, so
+     * that the class can be written with the frames it was read with (see ClassAdapter#toByteArrayKeepingFrames).
+     */
+    public void addEscalationInstructions() {
+        isChanged = true;
+
+        LabelNode afterEscalation = new LabelNode(new Label());
+        InsnList newInstList = new InsnList();
+        newInstList.add(createLoadCoverageInstnList());
+        newInstList.add(new JumpInsnNode(IFNONNULL, afterEscalation));
+        newInstList.add(new LdcInsnNode(Type.getObjectType(classAdapter.getName())));
+        newInstList.add(createPushIntInstruction(getID()));
+        newInstList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
+                "escalate", "(Ljava/lang/Class;I)V", false));
+        newInstList.add(afterEscalation);
+        // the method entry has the frame of the parameters; a method whose first instruction is a jump target
+        // already has it there
+        if ((classAdapter.classVersion() & 0xFFFF) >= V1_6 && !hasFrameAtEntry()) {
+            newInstList.add(new FrameNode(F_SAME, 0, null, 0, null));
+        }
+
+        this.methodNode.instructions.insert(newInstList);
+    }
+
+    private boolean hasFrameAtEntry() {
+        for (AbstractInsnNode instruction : this.methodNode.instructions) {
+            if (instruction.getType() == AbstractInsnNode.FRAME) {
+                return true;
+            } else if (instruction.getOpcode() >= 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
     private InsnList createNewCoverInstnList(int localVariableIndex) {
         InsnList newInstList = new InsnList();
-        String methodName = Utils.getRelativeFilePathOfMethod(this);
-        newInstList.add(new LdcInsnNode(methodName));
+        newInstList.add(createLoadCoverageInstnList());
         newInstList.add(new VarInsnNode(ALOAD, localVariableIndex));
         newInstList.add(new MethodInsnNode(INVOKESTATIC, "pacovfor$jbc/frontend/graphadapters/GraphAdapter",
-                "cover", "(Ljava/lang/String;Lpacovfor$jbc/frontend/graphadapters/Path;)V",
+                "cover", "(Lpacovfor$jbc/analysis/graphtypes/MethodCoverage;Lpacovfor$jbc/frontend/graphadapters/Path;)V",
                 false));
 
         return newInstList;
@@ -343,14 +785,14 @@ public class MethodAdapter {
            catches "any" exception thrown within the block.
            Note that: we do not want to include the creation of path local variable.
            We want to get the following:
-           Path path = new Path();
+           Path path = PathArena.acquire();
            try {
               ...
-              cover(methodName, path)
+              cover(coverage[id], path)
               return;
               ...
            } finally {
-              cover(methodName, path)
+              cover(coverage[id], path)
            }
          */
 
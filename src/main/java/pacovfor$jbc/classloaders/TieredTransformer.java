@@ -0,0 +1,81 @@
+package pacovfor$jbc.classloaders;
+
+import pacovfor$jbc.analysis.Instrumenter;
+import pacovfor$jbc.backend.asmadapters.ClassAdapter;
+import pacovfor$jbc.config.Config;
+import pacovfor$jbc.frontend.graphadapters.Escalator;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.objectweb.asm.Opcodes.V1_5;
+
+/**
+ * Instruments classes in tiers as they are loaded and retransformed (see TieredAgent). A class that is loaded
+ * gets tier 1: every method only escalates itself on entry, and no cfg is built. A class that is retransformed
+ * because some of its methods were escalated (see Escalator) gets tier 2 for those methods: they are
+ * instrumented from the original bytes as Main does and their cfgs are saved, but their coverage is only bound
+ * once the JVM accepts the new bytes, and they run their original body until then. Tier 1 keeps the frames of
+ * the class as read, so that loading a class never loads another one.
+ */
+public class TieredTransformer implements ClassFileTransformer {
+
+    // packages of pacovfor$jbc and its dependencies, which are never instrumented
+    private static final List<String> EXCLUDED_PACKAGES = Arrays.asList("pacovfor$jbc.", "org.objectweb.asm.",
+            "org.apache.commons.", "javassist.");
+
+    private final Escalator escalator;
+
+    public TieredTransformer(Escalator escalator) {
+        this.escalator = escalator;
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+        if (!isInstrumented(loader, className)) {
+            return null;
+        }
+
+        try {
+            ClassAdapter classAdapter = new ClassAdapter(classfileBuffer, loader);
+            if (classAdapter.isSynthetic() || (classAdapter.classVersion() & 0xFFFF) < V1_5 ||
+                    className.endsWith("module-info") || className.endsWith("package-info")) {
+                return null;
+            }
+
+            if (classBeingRedefined == null) {
+                Instrumenter.instrumentTiered(classAdapter, Collections.emptySet());
+                return classAdapter.toByteArrayKeepingFrames();
+            }
+
+            // the coverage of the instrumented methods is bound by the escalator once the JVM installs the class
+            Set<Integer> instrumentedMethodIds = Instrumenter.instrumentTiered(classAdapter,
+                    escalator.getEscalatedMethodIds(classBeingRedefined));
+            byte[] newClassBytes = classAdapter.toByteArray();
+            escalator.setInstrumentedMethodIds(classBeingRedefined, instrumentedMethodIds);
+            return newClassBytes;
+        } catch (RuntimeException | LinkageError e) {
+            // the JVM ignores exceptions of transformers and keeps the class as it is
+            System.err.println("TieredTransformer [ERROR]: class " + className + " could not be instrumented: " + e);
+            return null;
+        }
+    }
+
+    private static boolean isInstrumented(ClassLoader loader, String className) {
+        if (loader == null || loader == ClassLoader.getPlatformClassLoader() || className == null) {
+            return false;
+        }
+
+        String name = className.replace('/', '.');
+        if (EXCLUDED_PACKAGES.stream().anyMatch(name::startsWith)) {
+            return false;
+        }
+        return Config.agentPackages.isEmpty() ||
+                Config.agentPackages.stream().anyMatch(agentPackage -> name.startsWith(agentPackage + "."));
+    }
+}
@@ -0,0 +1,25 @@
+package pacovfor$jbc.config;
+
+/**
+ * What an exiting instrumented method does when the queue of paths covered in the background is full
+ * (see Config.asyncCover).
+ */
+public enum Backpressure {
+    // wait until a cover thread frees a slot; no path is lost, but the method waits for the cover threads
+    BLOCK,
+    // drop the path; dropped paths are counted and reported in the log
+    DROP,
+    // cover the path on the calling thread, as without async cover
+    INLINE;
+
+    /**
+     * Parses a backpressure policy given by its name, case insensitive (e.g., "drop").
+     */
+    public static Backpressure parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("backpressure: " + name + " does not exist", e);
+        }
+    }
+}
@@ -1,15 +1,67 @@
 package pacovfor$jbc.config;
 
+import pacovfor$jbc.analysis.testrequirements.Stripes;
+import pacovfor$jbc.utils.Utils;
+
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class Config {
 
     public static String cfgsDir;
     public static String logDir;
+    public static String profileFile;
+    public static CoverageLevel coverageLevel;
+    public static boolean exceptionalFlows;
+    public static boolean pathProfiling;
+    public static boolean primePathCoverage;
+    public static int maxPrimePaths;
+    public static boolean defUseCoverage;
+    public static boolean pathArenas;
+    public static boolean onlineCoverage;
+    public static boolean asyncCover;
+    public static int asyncCoverThreads;
+    public static int asyncCoverQueueSize;
+    public static Backpressure asyncCoverBackpressure;
+    public static int coverageStripes;
+    public static boolean executionCounts;
+    public static SampleRates sampleRates;
+    public static boolean selfDisablingProbes;
+    public static double overheadBudget;
+    public static long governorInterval;
+    public static int governorSampleRate;
+    public static boolean coverageSwitch;
+    public static boolean coverageEnabled;
+    public static List<String> agentPackages;
 
     static {
         updateCfgsDir();
         updateLogDir();
+        updateProfileFile();
+        updateCoverageLevel();
+        updateExceptionalFlows();
+        updatePathProfiling();
+        updatePrimePathCoverage();
+        updateMaxPrimePaths();
+        updateDefUseCoverage();
+        updatePathArenas();
+        updateOnlineCoverage();
+        updateAsyncCover();
+        updateAsyncCoverThreads();
+        updateAsyncCoverQueueSize();
+        updateAsyncCoverBackpressure();
+        updateCoverageStripes();
+        updateExecutionCounts();
+        updateSampleRates();
+        updateSelfDisablingProbes();
+        updateOverheadBudget();
+        updateGovernorInterval();
+        updateGovernorSampleRate();
+        updateCoverageSwitch();
+        updateCoverageEnabled();
+        updateAgentPackages();
     }
 
     public static void updateCfgsDir() {
@@ -20,6 +72,236 @@ public class Config {
         logDir = System.getProperty("logDir", "logs");
     }
 
+    /**
+     * Execution-frequency profile of a prior run used for probe placement. null if probes
+     * should be placed without a profile.
+     */
+    public static void updateProfileFile() {
+        profileFile = System.getProperty("profileFile");
+    }
+
+    /**
+     * Coverage level methods are instrumented for (see CoverageLevel), edge-pair by default. The former
+     * "inferNodeCoverage=true" property still selects node coverage.
+     */
+    public static void updateCoverageLevel() {
+        String defaultLevel = Boolean.parseBoolean(System.getProperty("inferNodeCoverage", "false")) ?
+                CoverageLevel.NODE.name() : CoverageLevel.EDGE_PAIR.name();
+        coverageLevel = CoverageLevel.parse(System.getProperty("coverageLevel", defaultLevel));
+    }
+
+    /**
+     * If false, exceptional flows are not measured: basic blocks get a single probe, the cfg has no
+     * exceptional edges, and a recorded path is cut where an exception was thrown.
+     */
+    public static void updateExceptionalFlows() {
+        exceptionalFlows = Boolean.parseBoolean(System.getProperty("exceptionalFlows", "true"));
+    }
+
+    /**
+     * If true, methods are instrumented to count Ball-Larus path ids (see BallLarusNumbering) instead of
+     * recording every probe id; the executed paths are mapped to test requirements when coverage is reported.
+     */
+    public static void updatePathProfiling() {
+        pathProfiling = Boolean.parseBoolean(System.getProperty("pathProfiling", "false"));
+    }
+
+    /**
+     * If true, prime-path requirements are created (when the cfgs are loaded) and covered in addition to
+     * node, edge and edge-pair requirements.
+     */
+    public static void updatePrimePathCoverage() {
+        primePathCoverage = Boolean.parseBoolean(System.getProperty("primePathCoverage", "false"));
+    }
+
+    /**
+     * Maximal number of prime paths enumerated per method. Methods with more prime paths are reported as
+     * truncated.
+     */
+    public static void updateMaxPrimePaths() {
+        maxPrimePaths = Integer.parseInt(System.getProperty("maxPrimePaths", "10000"));
+    }
+
+    /**
+     * If true, the def-use pairs of local variables (see DefUseAnalysis) are computed when methods are
+     * instrumented, and all-defs and all-uses coverage is measured from the recorded probe paths.
+     */
+    public static void updateDefUseCoverage() {
+        defUseCoverage = Boolean.parseBoolean(System.getProperty("defUseCoverage", "false"));
+    }
+
+    /**
+     * Runtime option. If true, the path of every invocation of an instrumented method is taken from a
+     * per-thread stack of reusable paths (see PathArena) instead of being allocated on method entry.
+     */
+    public static void updatePathArenas() {
+        pathArenas = Boolean.parseBoolean(System.getProperty("pathArenas", "false"));
+    }
+
+    /**
+     * If true, probes cover nodes, edges and edge-pairs as they are hit, keeping the last two probe ids in
+     * locals, instead of recording the path of every invocation. Memory per invocation is constant and
+     * nothing is done on method exit, but prime paths, def-use pairs and profile-guided probe placement
+     * need recorded paths and are not available. Path profiling takes precedence where it applies.
+     */
+    public static void updateOnlineCoverage() {
+        onlineCoverage = Boolean.parseBoolean(System.getProperty("onlineCoverage", "false"));
+    }
+
+    /**
+     * Runtime option. If true, an exiting instrumented method only publishes its recorded path to a bounded
+     * queue (see CoverQueue), and background threads cover the test requirements of the path. The queue is
+     * drained before coverage is reported.
+     */
+    public static void updateAsyncCover() {
+        asyncCover = Boolean.parseBoolean(System.getProperty("asyncCover", "false"));
+    }
+
+    /**
+     * Runtime option. Number of background threads covering published paths (see asyncCover).
+     */
+    public static void updateAsyncCoverThreads() {
+        asyncCoverThreads = Integer.parseInt(System.getProperty("asyncCoverThreads", "1"));
+    }
+
+    /**
+     * Runtime option. Number of paths the queue of published paths holds (see asyncCover), rounded up to a
+     * power of two.
+     */
+    public static void updateAsyncCoverQueueSize() {
+        asyncCoverQueueSize = Integer.parseInt(System.getProperty("asyncCoverQueueSize", "65536"));
+    }
+
+    /**
+     * Runtime option. What an exiting method does when the queue of published paths is full (see
+     * Backpressure), inline by default.
+     */
+    public static void updateAsyncCoverBackpressure() {
+        asyncCoverBackpressure = Backpressure.parse(System.getProperty("asyncCoverBackpressure",
+                Backpressure.INLINE.name()));
+    }
+
+    /**
+     * Runtime option. Number of stripes of the coverage bits of every method (see CoverageBits), rounded up
+     * to a power of two. Threads covering the same method write to their own stripe; 1 (no striping) by
+     * default. Worth raising to about the number of cores when many threads run the same methods. A value
+     * that is not in [1, 2^16] is logged and replaced by 1.
+     */
+    public static void updateCoverageStripes() {
+        String stripes = System.getProperty("coverageStripes", "1");
+        int value;
+        try {
+            value = Integer.parseInt(stripes);
+        } catch (NumberFormatException e) {
+            value = 0;
+        }
+
+        // the runtime reads this while instrumented classes are initialized, so it must not throw
+        if (value < 1 || value > Stripes.MAX_STRIPES) {
+            System.err.println("Config [ERROR]: coverageStripes should be an integer in [1, 2^16]: " + stripes +
+                    "; 1 is used");
+            value = 1;
+        }
+        coverageStripes = Utils.ceilingPowerOfTwo(value);
+    }
+
+    /**
+     * Runtime option. If true, the executions of every node and edge on recorded paths (or on the probe hits
+     * of online coverage) are counted in addition to their coverage, and reported per method and as a profile
+     * file (logs/profile.txt) that can be given back as profileFile. No probes are added; nodes and edges that
+     * are not observed by the probes of the coverage level (implied nodes, edges at node level) and methods in
+     * path profiling mode are not counted.
+     */
+    public static void updateExecutionCounts() {
+        executionCounts = Boolean.parseBoolean(System.getProperty("executionCounts", "false"));
+    }
+
+    /**
+     * Sample rates by package (see SampleRates#parse), e.g., "com.acme=100,*=10"; no method is sampled by
+     * default. A method with rate n is instrumented with an uninstrumented copy of its body: on entry, a
+     * counter of the current thread decides whether the invocation is sampled, and only the first invocation
+     * of every thread and then one in n run the instrumented body, so the others record no path and run no
+     * probe. Coverage and execution counts then only reflect sampled invocations; the invocations and the
+     * sampled ones are counted and reported per method. Methods at method coverage level and methods too
+     * large to be copied are not sampled.
+     */
+    public static void updateSampleRates() {
+        sampleRates = SampleRates.parse(System.getProperty("sampleRates", ""));
+    }
+
+    /**
+     * If true, methods that record paths or cover online are instrumented with an uninstrumented copy of
+     * their body, as sampled methods are, and their entry checks a switch of the method (an invokedynamic
+     * call site guarded by a SwitchPoint) that the runtime turns off once every requirement of the method
+     * is covered. The JIT folds the check, so a saturated method runs its copy with no probe at all.
+     * Methods with exceptional flows seldom cover their exceptional edges, and methods whose executions are
+     * counted (see executionCounts) are never switched off.
+     */
+    public static void updateSelfDisablingProbes() {
+        selfDisablingProbes = Boolean.parseBoolean(System.getProperty("selfDisablingProbes", "false"));
+    }
+
+    /**
+     * Runtime option. Fraction of the CPU time of all processors that covering may take, e.g., 0.02; 0 (no
+     * limit) by default. If positive, the calls of every method into the coverage runtime are timed on a
+     * sample, and when their time in an interval exceeds the budget, a governor (see OverheadGovernor)
+     * degrades the coverage of the costliest methods one step (see Degradation): to nodes only, then to
+     * sampled invocations, then off. Degradations are logged and never undone.
+     */
+    public static void updateOverheadBudget() {
+        overheadBudget = Double.parseDouble(System.getProperty("overheadBudget", "0"));
+    }
+
+    /**
+     * Runtime option. Milliseconds between two checks of the overhead budget (see overheadBudget).
+     */
+    public static void updateGovernorInterval() {
+        governorInterval = Long.parseLong(System.getProperty("governorInterval", "1000"));
+    }
+
+    /**
+     * Runtime option. A method degraded to sampled invocations by the governor (see overheadBudget) covers
+     * one in governorSampleRate of the invocations it covered before.
+     */
+    public static void updateGovernorSampleRate() {
+        governorSampleRate = Integer.parseInt(System.getProperty("governorSampleRate", "100"));
+    }
+
+    /**
+     * If true, every instrumented method is instrumented with an uninstrumented copy of its body, as sampled
+     * methods are, and its entry checks the runtime-wide coverage switch (see coverageEnabled and
+     * CoverageSwitch), an invokedynamic call site the JIT folds, so that a method runs its copy while coverage
+     * is disabled. At method coverage level, the switch guards the only probe instead. Methods too large to
+     * be copied still run their probes, whose calls into the runtime then return right away.
+     */
+    public static void updateCoverageSwitch() {
+        coverageSwitch = Boolean.parseBoolean(System.getProperty("coverageSwitch", "false"));
+    }
+
+    /**
+     * Runtime option. If false, no coverage is collected, and the runtime creates no log and starts no thread,
+     * until coverage is enabled (see GraphAdapter#setCoverageEnabled, also exposed as the attribute
+     * CoverageEnabled of "pacovfor$jbc:type=CoverageSwitch"). Coverage can be disabled again at any time;
+     * what was covered so far is still reported. Cfgs are loaded either way, so that classes initialized
+     * while coverage is disabled are covered once it is enabled.
+     */
+    public static void updateCoverageEnabled() {
+        coverageEnabled = Boolean.parseBoolean(System.getProperty("coverageEnabled", "true"));
+    }
+
+    /**
+     * Runtime option. Comma-separated packages whose classes (including those of their subpackages) the
+     * tiered agent instruments (see TieredAgent), e.g., "com.example.app,org.example.lib"; by default, every
+     * class that is neither loaded by the bootstrap or platform class loader nor part of pacovfor$jbc or its
+     * dependencies.
+     */
+    public static void updateAgentPackages() {
+        agentPackages = Arrays.stream(System.getProperty("agentPackages", "").split(",")).
+                map(String::trim).
+                filter(agentPackage -> !agentPackage.isEmpty()).
+                collect(Collectors.toList());
+    }
+
     public static void tryCreatingFilePathOrElseThrowExc(String filePath) {
         File newFile = new File(filePath);
         if (!newFile.mkdirs()) {
@@ -0,0 +1,34 @@
+package pacovfor$jbc.config;
+
+/**
+ * Coverage criteria a method can be instrumented for, from the cheapest to the most expensive. Each level
+ * measures the requirements of the levels below it as well.
+ */
+public enum CoverageLevel {
+    // whether the method was entered; one probe at method entry
+    METHOD,
+    // executed nodes; probes whose coverage is implied by other probes are dropped (see SuperblockAnalysis)
+    NODE,
+    // executed nodes and edges; the probe path of every execution is recorded
+    EDGE,
+    // executed nodes, edges and edge-pairs; the probe path of every execution is recorded
+    EDGE_PAIR;
+
+    /**
+     * Returns true if this level measures the requirements of level.
+     */
+    public boolean includes(CoverageLevel level) {
+        return this.compareTo(level) >= 0;
+    }
+
+    /**
+     * Parses a level given by its name, case insensitive and with '-' for '_' (e.g., "edge-pair").
+     */
+    public static CoverageLevel parse(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("coverage level: " + name + " does not exist", e);
+        }
+    }
+}
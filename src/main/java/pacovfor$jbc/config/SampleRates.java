@@ -0,0 +1,73 @@
+package pacovfor$jbc.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sample rates of the methods of each package (see Config.sampleRates): a method with rate n records the
+ * path of one in n of its invocations.
+ */
+public class SampleRates {
+
+    // key of the rate of the packages that are not given
+    private static final String DEFAULT_PACKAGE = "*";
+
+    private final Map<String, Integer> rateOfPackage;
+
+    private SampleRates(Map<String, Integer> rateOfPackage) {
+        this.rateOfPackage = Collections.unmodifiableMap(rateOfPackage);
+    }
+
+    /**
+     * Parses comma-separated "package=rate" entries (e.g., "com.acme=100,com.acme.util=1000,*=10"). A rate
+     * applies to the package and its subpackages unless a subpackage has its own; "*" gives the rate of all
+     * other packages. Methods of packages without a rate are not sampled (rate 1).
+     */
+    public static SampleRates parse(String rates) {
+        Map<String, Integer> rateOfPackage = new HashMap<>();
+        for (String entry : rates.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+
+            String[] packageAndRate = entry.split("=");
+            if (packageAndRate.length != 2) {
+                throw new IllegalArgumentException("sample rate: " + entry + " is not of the form package=rate");
+            }
+
+            int rate;
+            try {
+                rate = Integer.parseInt(packageAndRate[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("sample rate: " + entry + " is not of the form package=rate", e);
+            }
+            if (rate <= 0) {
+                throw new IllegalArgumentException("sample rate of " + packageAndRate[0].trim() +
+                        " should be positive: " + rate);
+            }
+            rateOfPackage.put(packageAndRate[0].trim(), rate);
+        }
+
+        return new SampleRates(rateOfPackage);
+    }
+
+    /**
+     * Returns the sample rate of the methods of class className ("package/ClassName" or "package.ClassName"):
+     * the rate of its package or of the nearest enclosing package that has one.
+     */
+    public int getRate(String className) {
+        String name = className.replace('/', '.');
+        String packageName = name.lastIndexOf('.') < 0 ? "" : name.substring(0, name.lastIndexOf('.'));
+
+        while (true) {
+            Integer rate = rateOfPackage.get(packageName);
+            if (rate != null) {
+                return rate;
+            } else if (packageName.isEmpty()) {
+                return rateOfPackage.getOrDefault(DEFAULT_PACKAGE, 1);
+            }
+            packageName = packageName.lastIndexOf('.') < 0 ? "" : packageName.substring(0, packageName.lastIndexOf('.'));
+        }
+    }
+}
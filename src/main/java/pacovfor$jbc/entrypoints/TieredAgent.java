@@ -0,0 +1,39 @@
+package pacovfor$jbc.entrypoints;
+
+import pacovfor$jbc.classloaders.TieredTransformer;
+import pacovfor$jbc.config.Config;
+import pacovfor$jbc.frontend.graphadapters.Escalator;
+import pacovfor$jbc.frontend.graphadapters.GraphAdapter;
+
+import java.lang.instrument.Instrumentation;
+
+import static pacovfor$jbc.config.Config.checkIfFileExistsElseCreateFile;
+
+/**
+ * Java agent that instruments classes in two tiers as they are loaded, instead of instrumenting them ahead of
+ * time with Main. Every method first gets only a check that escalates it on its first entry; the classes of
+ * escalated methods are then retransformed, and only the escalated methods get probes for the coverage level
+ * (edge-pair by default) and a cfg (see TieredTransformer and Escalator). Methods that never run cost a load
+ * and a branch on entry, and no cfg is built or loaded for them.
+ * <p>
+ * The coverage of an escalated method starts once its class is retransformed: the invocation that escalates
+ * it, and the ones until its new body is installed, are not recorded, so a method that runs only once is
+ * entered but covers nothing. Escalated methods whose class is never retransformed are listed in the log as
+ * entered with unknown coverage.
+ * <p>
+ * Usage: java -javaagent:PaCovForJbc-jar-with-dependencies.jar [-DagentPackages=...] [other options] ...;
+ * the options of instrumentation and the runtime options are read from the system properties of the JVM.
+ * The manifest of the jar should include "Premain-Class: pacovfor$jbc.entrypoints.TieredAgent" and
+ * "Can-Retransform-Classes: true", and the jar should be on the class path of the instrumented classes,
+ * which is the case with the system class loader.
+ */
+public class TieredAgent {
+
+    public static void premain(String agentArgs, Instrumentation instrumentation) {
+        checkIfFileExistsElseCreateFile(Config.cfgsDir);
+
+        Escalator escalator = new Escalator(instrumentation);
+        GraphAdapter.setEscalator(escalator);
+        instrumentation.addTransformer(new TieredTransformer(escalator), true);
+    }
+}
@@ -0,0 +1,219 @@
+package pacovfor$jbc.frontend.graphadapters;
+
+import pacovfor$jbc.analysis.graphtypes.MethodCoverage;
+import pacovfor$jbc.config.Backpressure;
+import pacovfor$jbc.utils.Utils;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue of recorded paths that background threads cover (see Config.asyncCover), so an
+ * exiting method only publishes its path instead of covering it.
+ * <p>
+ * The queue is a ring of slots, each with a sequence number telling whether it is free for the offer at
+ * position p (sequence p) or holds the path offered at position p (sequence p + 1); producers and cover
+ * threads claim positions with a CAS on the tail and head positions. A full queue never blocks offer;
+ * what the exiting method does then is decided by its backpressure policy (see publish). Idle cover threads
+ * park, and a producer that finds the queue full unparks them.
+ */
+public class CoverQueue {
+
+    // an idle cover thread parks for at most this long between polls
+    private static final long MAX_IDLE_PARK_NANOS = 1_000_000;
+    // a producer blocked on a full queue spins, then yields, then parks this long between offers
+    private static final int MAX_FULL_SPINS = 64;
+    private static final int MAX_FULL_YIELDS = 64;
+    private static final long FULL_PARK_NANOS = 50_000;
+
+    // tail and head positions, 128 bytes apart so that producers and cover threads do not share a cache line
+    private static final int TAIL = 16;
+    private static final int HEAD = 32;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final MethodCoverage[] cfgs;
+    private final Path[] paths;
+    private final AtomicLongArray positions = new AtomicLongArray(48);
+
+    private final LongAdder droppedPaths = new LongAdder();
+    private final List<Thread> coverThreads = new ArrayList<>();
+    private volatile Thread[] coverThreadsToUnpark = new Thread[0];
+    private final PrintStream err;
+    private volatile boolean isStopped;
+
+    /**
+     * @param capacity - number of paths the queue holds, rounded up to a power of two (at least 2)
+     * @param err      - stream errors of the cover threads are printed to
+     */
+    public CoverQueue(int capacity, PrintStream err) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity should be in [1, 2^30]: " + capacity);
+        }
+
+        // at least two slots: with one, a free slot and a full one would have the same sequence number
+        int size = Math.max(2, Utils.ceilingPowerOfTwo(capacity));
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int slot = 0; slot < size; slot++) {
+            sequences.set(slot, slot);
+        }
+        this.cfgs = new MethodCoverage[size];
+        this.paths = new Path[size];
+        this.err = err;
+    }
+
+    /**
+     * Starts numberOfThreads daemon threads that cover the published paths until the queue is drained.
+     */
+    public synchronized void start(int numberOfThreads) {
+        if (numberOfThreads <= 0) {
+            throw new IllegalArgumentException("number of cover threads should be positive: " + numberOfThreads);
+        }
+
+        for (int i = 0; i < numberOfThreads; i++) {
+            Thread thread = new Thread(this::coverUntilStopped, "pacovfor$jbc-cover-" + coverThreads.size());
+            thread.setDaemon(true);
+            coverThreads.add(thread);
+            thread.start();
+        }
+        coverThreadsToUnpark = coverThreads.toArray(new Thread[0]);
+    }
+
+    /**
+     * Publishes path, the recorded path of an invocation of the method of cfg; path must not be used by the
+     * caller afterwards. If the queue is full, the caller waits (BLOCK), the path is dropped and counted
+     * (DROP), or it is covered on the calling thread (INLINE). Paths published after the queue is drained
+     * are covered on the calling thread.
+     * <p>
+     * A full queue wakes the cover threads. A waiting caller spins for a few offers, then yields, then parks
+     * between offers, so that it does not take the processor from the cover threads it waits for.
+     */
+    public void publish(MethodCoverage cfg, Path path, Backpressure backpressure) {
+        int failedOffers = 0;
+        while (isStopped || !offer(cfg, path)) {
+            if (isStopped) {
+                cfg.coverTestRequirements(path.getIds(), path.size());
+                return;
+            }
+
+            unparkCoverThreads();
+            if (backpressure == Backpressure.INLINE) {
+                cfg.coverTestRequirements(path.getIds(), path.size());
+                return;
+            } else if (backpressure == Backpressure.DROP) {
+                droppedPaths.increment();
+                return;
+            }
+
+            if (failedOffers < MAX_FULL_SPINS) {
+                Thread.onSpinWait();
+            } else if (failedOffers < MAX_FULL_SPINS + MAX_FULL_YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+            failedOffers++;
+        }
+    }
+
+    /**
+     * Stops the cover threads after they covered every published path and covers what is still left in the
+     * queue. Paths published afterwards are covered on the publishing thread.
+     */
+    public synchronized void drain() {
+        isStopped = true;
+        for (Thread thread : coverThreads) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        while (poll()) {
+            // cover the paths left by a producer that raced with the cover threads stopping
+        }
+    }
+
+    public long getDroppedPaths() {
+        return droppedPaths.sum();
+    }
+
+    private void unparkCoverThreads() {
+        for (Thread thread : coverThreadsToUnpark) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Adds the path of an invocation of the method of cfg at the tail. Returns false if the queue is full.
+     */
+    boolean offer(MethodCoverage cfg, Path path) {
+        long position = positions.get(TAIL);
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0 && positions.compareAndSet(TAIL, position, position + 1)) {
+                cfgs[slot] = cfg;
+                paths[slot] = path;
+                sequences.set(slot, position + 1); // publishes the slot to the cover threads
+                return true;
+            } else if (difference < 0) {
+                return false; // full: the slot still holds the path offered one lap ago
+            }
+            position = positions.get(TAIL);
+        }
+    }
+
+    /**
+     * Covers the oldest published path, if any. Returns false if the queue was empty.
+     */
+    boolean poll() {
+        long position = positions.get(HEAD);
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0 && positions.compareAndSet(HEAD, position, position + 1)) {
+                MethodCoverage cfg = cfgs[slot];
+                Path path = paths[slot];
+                cfgs[slot] = null;
+                paths[slot] = null;
+                sequences.set(slot, position + mask + 1); // frees the slot for the next lap
+                cover(cfg, path);
+                return true;
+            } else if (difference < 0) {
+                return false; // empty
+            }
+            position = positions.get(HEAD);
+        }
+    }
+
+    private void cover(MethodCoverage cfg, Path path) {
+        try {
+            cfg.coverTestRequirements(path.getIds(), path.size());
+        } catch (RuntimeException e) {
+            err.println("CoverQueue [ERROR]: covering a path of " + cfg.getRelativeFilePath() + " failed: " + e);
+        }
+    }
+
+    private void coverUntilStopped() {
+        long idleParkNanos = 1_000;
+        while (true) {
+            if (poll()) {
+                idleParkNanos = 1_000;
+            } else if (isStopped) {
+                return;
+            } else {
+                LockSupport.parkNanos(idleParkNanos);
+                idleParkNanos = Math.min(2 * idleParkNanos, MAX_IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
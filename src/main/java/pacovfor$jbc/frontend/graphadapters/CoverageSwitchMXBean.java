@@ -0,0 +1,15 @@
+package pacovfor$jbc.frontend.graphadapters;
+
+/**
+ * Runtime-wide coverage switch (see CoverageSwitch), registered as "pacovfor$jbc:type=CoverageSwitch" with the
+ * platform MBean server so that coverage can be turned on and off from outside the JVM.
+ */
+public interface CoverageSwitchMXBean {
+
+    boolean isCoverageEnabled();
+
+    /**
+     * Turns coverage on or off for all threads (see GraphAdapter#setCoverageEnabled).
+     */
+    void setCoverageEnabled(boolean enabled);
+}
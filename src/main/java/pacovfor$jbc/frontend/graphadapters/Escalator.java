@@ -0,0 +1,229 @@
+package pacovfor$jbc.frontend.graphadapters;
+
+import pacovfor$jbc.analysis.graphtypes.MethodCoverage;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Escalates the methods of classes instrumented in tiers (see TieredAgent). A method that is entered for the
+ * first time is escalated (see GraphAdapter#escalate), and its class is queued to a daemon thread, which
+ * retransforms the queued classes in batches. The transformer instruments the escalated methods of a class
+ * fully (see setInstrumentedMethodIds), and their coverage is bound only once the JVM has installed their new
+ * bodies (see bindInstrumentedMethods), which run a copy of the original body until then. So the invocation
+ * that escalates a method, and the ones before its coverage is bound, are not recorded; the method is only
+ * marked as entered. Escalated methods whose coverage is never bound are reported as entered with unknown
+ * coverage (see getUnboundMethods).
+ */
+public class Escalator {
+
+    // state of every class instrumented in tiers
+    private static class TieredClass {
+        private volatile MethodCoverage[] coverage;
+        private final Set<Integer> escalatedMethodIds = ConcurrentHashMap.newKeySet();
+        // escalated methods instrumented by the last transformation of the class, bound once it is installed
+        private volatile Set<Integer> instrumentedMethodIds = Collections.emptySet();
+    }
+
+    private final Instrumentation instrumentation;
+    private final ClassValue<TieredClass> tieredClasses = new ClassValue<>() {
+        @Override
+        protected TieredClass computeValue(Class<?> type) {
+            return new TieredClass();
+        }
+    };
+    private final BlockingQueue<Class<?>> escalatedClasses = new LinkedBlockingQueue<>();
+    private final LongAdder tieredMethods = new LongAdder();
+    private final LongAdder escalatedMethods = new LongAdder();
+    // relative file paths of the escalated methods whose coverage is not bound yet
+    private final Set<String> unboundMethods = ConcurrentHashMap.newKeySet();
+    private PrintStream log;
+    private Thread thread;
+
+    public Escalator(Instrumentation instrumentation) {
+        if (!instrumentation.isRetransformClassesSupported()) {
+            throw new IllegalArgumentException("the JVM can not retransform classes; the manifest of the agent " +
+                    "should include \"Can-Retransform-Classes: true\"");
+        }
+
+        this.instrumentation = instrumentation;
+    }
+
+    /**
+     * Registers a class initialized with tiered instrumentation and returns the coverage of its methods,
+     * indexed by method id, which is null until a method is escalated.
+     */
+    public MethodCoverage[] register(Class<?> clazz, int numberOfMethodIds) {
+        MethodCoverage[] coverage = new MethodCoverage[numberOfMethodIds];
+        tieredClasses.get(clazz).coverage = coverage;
+        tieredMethods.add(numberOfMethodIds);
+        return coverage;
+    }
+
+    /**
+     * Escalates a method of clazz unless it already is; called by the method on entry until its coverage is
+     * bound.
+     */
+    public void escalate(Class<?> clazz, int methodId) {
+        if (tieredClasses.get(clazz).escalatedMethodIds.add(methodId)) {
+            escalatedMethods.increment();
+            unboundMethods.add(relativeFilePathOf(clazz, methodId));
+            escalatedClasses.add(clazz);
+        }
+    }
+
+    /**
+     * Returns the ids of the methods of clazz escalated so far.
+     */
+    public Set<Integer> getEscalatedMethodIds(Class<?> clazz) {
+        return new HashSet<>(tieredClasses.get(clazz).escalatedMethodIds);
+    }
+
+    /**
+     * Sets the ids of the escalated methods of clazz that its transformation instrumented fully; their coverage
+     * is bound if the JVM installs the transformed class (see bindInstrumentedMethods).
+     */
+    public void setInstrumentedMethodIds(Class<?> clazz, Set<Integer> methodIds) {
+        tieredClasses.get(clazz).instrumentedMethodIds = methodIds;
+    }
+
+    /**
+     * Loads the cfgs of the methods of clazz instrumented by its last transformation, which their
+     * instrumentation saved, and binds them to the coverage field of the class. Called once the transformed
+     * class is installed; the methods are marked as entered, since they escalated themselves on entry.
+     */
+    private void bindInstrumentedMethods(Class<?> clazz) {
+        TieredClass tieredClass = tieredClasses.get(clazz);
+        Set<Integer> methodIds = tieredClass.instrumentedMethodIds;
+        tieredClass.instrumentedMethodIds = Collections.emptySet();
+
+        MethodCoverage[] coverage = tieredClass.coverage;
+        if (coverage == null) {
+            log.println("Escalator [ERROR]: class " + clazz.getName() + " is not registered");
+            return;
+        }
+
+        for (int methodId : methodIds) {
+            if (coverage[methodId] != null) {
+                continue;
+            }
+
+            String relativeFilePath = relativeFilePathOf(clazz, methodId);
+            try {
+                MethodCoverage cfg = GraphAdapter.loadCfgOfMethod(relativeFilePath);
+                cfg.setEntered(true);
+                coverage[methodId] = cfg;
+                unboundMethods.remove(relativeFilePath);
+            } catch (RuntimeException e) {
+                log.println("Escalator [ERROR]: method " + relativeFilePath + " could not be bound: " + e);
+            }
+        }
+    }
+
+    private static String relativeFilePathOf(Class<?> clazz, int methodId) {
+        return clazz.getName() + File.separator + methodId;
+    }
+
+    /**
+     * Returns the number of methods of the classes initialized with tiered instrumentation.
+     */
+    public long getTieredMethods() {
+        return tieredMethods.sum();
+    }
+
+    /**
+     * Returns the number of methods escalated so far, including those whose class is not retransformed yet.
+     */
+    public long getEscalatedMethods() {
+        return escalatedMethods.sum();
+    }
+
+    /**
+     * Returns the relative file paths of the escalated methods whose coverage is not bound, in order, e.g.,
+     * because their class is still queued or could not be retransformed, or because they are too large to be
+     * instrumented in tiers (see Instrumenter#instrumentTiered). They were entered, but their coverage is unknown.
+     */
+    public List<String> getUnboundMethods() {
+        List<String> methods = new ArrayList<>(unboundMethods);
+        Collections.sort(methods);
+        return methods;
+    }
+
+    /**
+     * Starts the thread that retransforms the classes of escalated methods.
+     *
+     * @param log - stream errors are printed to
+     */
+    public synchronized void start(PrintStream log) {
+        this.log = log;
+        thread = new Thread(this::retransformUntilStopped, "pacovfor$jbc-escalator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the thread; classes still queued are not retransformed.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private void retransformUntilStopped() {
+        while (true) {
+            Set<Class<?>> batch = new LinkedHashSet<>();
+            try {
+                batch.add(escalatedClasses.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            escalatedClasses.drainTo(batch);
+
+            // a class that fails to be retransformed fails its whole batch, so the classes are retried one by one
+            if (!retransform(new ArrayList<>(batch)) && batch.size() > 1) {
+                batch.forEach(clazz -> retransform(Collections.singletonList(clazz)));
+            }
+        }
+    }
+
+    /**
+     * Retransforms classes and binds the methods instrumented by their transformation if the JVM installs
+     * them; if it does not, none of the classes is retransformed and nothing is bound.
+     */
+    private boolean retransform(List<Class<?>> classes) {
+        try {
+            instrumentation.retransformClasses(classes.toArray(new Class<?>[0]));
+        } catch (UnmodifiableClassException | RuntimeException | LinkageError e) {
+            classes.forEach(clazz -> tieredClasses.get(clazz).instrumentedMethodIds = Collections.emptySet());
+            if (classes.size() == 1) {
+                log.println("Escalator [ERROR]: class " + classes.get(0).getName() + " could not be " +
+                        "retransformed: " + e);
+            }
+            return false;
+        }
+
+        classes.forEach(this::bindInstrumentedMethods);
+        return true;
+    }
+}
@@ -1,28 +1,109 @@
 package pacovfor$jbc.frontend.graphadapters;
 
+import pacovfor$jbc.analysis.ExecutionProfile;
+import pacovfor$jbc.analysis.graphtypes.CoverageSwitch;
+import pacovfor$jbc.analysis.graphtypes.Degradation;
+import pacovfor$jbc.analysis.graphtypes.MethodCoverage;
 import pacovfor$jbc.analysis.graphtypes.ProbePositionIDCfg;
-import pacovfor$jbc.analysis.nodetypes.ProbePositionID;
 import pacovfor$jbc.config.Config;
-import pacovfor$jbc.graph.Node;
+import pacovfor$jbc.utils.Tuple;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.List;
 import java.util.Set;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 // this will import all the ProbePositionStringCfgs from a given directory
 public class GraphAdapter {
 
-    private static final PrintStream logStream;
-    private static final Map<String, ProbePositionIDCfg> cfgs;
+    private static final String SWITCH_OBJECT_NAME = "pacovfor$jbc:type=CoverageSwitch";
+
+    private static final Map<String, MethodCoverage> cfgs;
+    // cfg shapes by relative file path, each shared by all methods with that shape
+    private static final Map<String, ProbePositionIDCfg> shapes;
+    // the log, the threads and the shut down hook are created by start, when coverage is first enabled (see
+    // Config.coverageEnabled). Every call that uses them checks the volatile coverage switch after start, so
+    // they need not be volatile themselves.
+    private static PrintStream logStream;
+    // paths covered in the background (see Config.asyncCover); null if paths are covered on method exit
+    private static CoverQueue coverQueue;
+    // degrades costly methods (see Config.overheadBudget); null if the overhead is not governed
+    private static OverheadGovernor governor;
+    // escalates the methods of classes instrumented in tiers (see TieredAgent); null without the agent
+    private static Escalator escalator;
 
     static {
+        cfgs = new ConcurrentHashMap<>();
+        shapes = new ConcurrentHashMap<>();
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new CoverageSwitchMXBean() {
+                @Override
+                public boolean isCoverageEnabled() {
+                    return CoverageSwitch.isEnabled();
+                }
+
+                @Override
+                public void setCoverageEnabled(boolean enabled) {
+                    GraphAdapter.setCoverageEnabled(enabled);
+                }
+            }, CoverageSwitchMXBean.class, true), new ObjectName(SWITCH_OBJECT_NAME));
+        } catch (JMException e) {
+            // the log is not created yet if coverage is disabled
+            System.err.println("GraphAdapter [ERROR]: coverage switch could not be registered: " + e);
+        }
+
+        if (CoverageSwitch.isEnabled()) {
+            start();
+        }
+    }
+
+    /**
+     * Turns coverage on or off for all threads (see Config.coverageEnabled). The first time coverage is
+     * enabled, the log is created, the cover threads and the governor are started and the shut down hook that
+     * reports coverage is added.
+     */
+    public static void setCoverageEnabled(boolean enabled) {
+        if (enabled) {
+            start();
+        }
+        CoverageSwitch.setEnabled(enabled);
+    }
+
+    /**
+     * Sets the escalator of the tiered agent (see TieredAgent), which is started with the runtime.
+     */
+    public synchronized static void setEscalator(Escalator tieredEscalator) {
+        if (escalator != null) {
+            throw new IllegalStateException("the escalator is already set");
+        }
+
+        escalator = tieredEscalator;
+        if (logStream != null) {
+            escalator.start(logStream);
+        }
+    }
+
+    private synchronized static void start() {
+        if (logStream != null) {
+            return;
+        }
+
         File logFile = new File(Config.logDir);
         if (!logFile.exists()) {
             Config.tryCreatingFilePathOrElseThrowExc(Config.logDir);
@@ -35,16 +116,49 @@ public class GraphAdapter {
             throw new RuntimeException(e);
         }
 
-        cfgs = new ConcurrentHashMap<>();
+        // shapes loaded while coverage was disabled have no error stream yet
+        shapes.values().forEach(shape -> shape.setErrStream(logStream));
+
+        if (Config.asyncCover) {
+            coverQueue = new CoverQueue(Config.asyncCoverQueueSize, logStream);
+            coverQueue.start(Config.asyncCoverThreads);
+        }
+        if (Config.overheadBudget > 0) {
+            governor = new OverheadGovernor(Config.overheadBudget, Config.governorInterval,
+                    Collections.unmodifiableCollection(cfgs.values()), logStream);
+            governor.start();
+        }
+        if (escalator != null) {
+            escalator.start(logStream);
+        }
+
         // add shut down hook
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             try {
+                // cover the paths that are still queued before reporting
+                if (coverQueue != null) {
+                    coverQueue.drain();
+                    logStream.println("dropped-paths: " + coverQueue.getDroppedPaths());
+                }
+                if (governor != null) {
+                    governor.stop();
+                    logStream.println("degradations: " + governor.getDegradations());
+                }
+                if (escalator != null) {
+                    escalator.stop();
+                    logStream.println("tiered-methods: " + escalator.getTieredMethods());
+                    logStream.println("escalated-methods: " + escalator.getEscalatedMethods());
+                }
+
                 // check the size of the cfgs
                 int noOfLoadedMethodCfgs = cfgs.size();
-                List<File> allMethodCfgFiles = getAllFiles(Config.cfgsDir);
+                List<File> allMethodCfgFiles = getAllFiles(Config.cfgsDir).stream().
+                        filter(file -> !file.getParentFile().getName().equals(ProbePositionIDCfg.SHAPES_DIR)).
+                        collect(Collectors.toList());
 
                 // output the name of the ones the were covered.
                 logStream.println("loaded-cfgs: " + noOfLoadedMethodCfgs);
+                logStream.println("loaded-shapes: " + shapes.size());
                 logStream.println("total-cfgs: " + allMethodCfgFiles.size());
                 cfgs.forEach((key, value) -> logStream.println(key + ": " + value.getFullMethodName()));
 
@@ -57,11 +171,23 @@ public class GraphAdapter {
                 logStream.println("covered-cfgs: " + cfgNames.size());
                 cfgNames.forEach(logStream::println);
 
+                // escalated methods without bound coverage were entered, but their cfgs were never loaded
+                if (escalator != null) {
+                    List<String> unboundMethods = escalator.getUnboundMethods();
+                    logStream.println("unbound-escalated-methods: " + unboundMethods.size());
+                    unboundMethods.forEach(method -> logStream.println(method + ": entered, coverage unknown"));
+                }
+
                 // output coverage for each method in each class
                 // create a folder for each class in logs and create a file for each method
                 // and output the coverage information of that method to the created file
                 cfgs.forEach(GraphAdapter::outputCfgToFile);
 
+                // output the edge execution counts of all methods as a profile for probe placement
+                if (Config.executionCounts) {
+                    outputProfileToFile();
+                }
+
             } finally {
                 logStream.flush();
                 logStream.close();
@@ -69,7 +195,7 @@ public class GraphAdapter {
         }));
     }
 
-    private static void outputCfgToFile(String relativePathToMethod, ProbePositionIDCfg cfg) {
+    private static void outputCfgToFile(String relativePathToMethod, MethodCoverage cfg) {
         File folder = new File(Config.logDir + File.separator +
                 relativePathToMethod.substring(0, relativePathToMethod.indexOf(File.separator)));
         if (!folder.exists() && !folder.mkdirs()) {
@@ -89,10 +215,60 @@ public class GraphAdapter {
         methodOutputStream.println(cfg.getRelativeFilePath()); // relative file path of cfg
         methodOutputStream.println(cfg.getFullMethodName()); // full method name of cfg
         cfg.getCoverageInfoKeyPairs().forEach((metric, value) -> methodOutputStream.println(metric + ": " + value));
+
+        // coverage of a sampled method is based on its sampled invocations only, out of all its invocations
+        if (cfg.getSampleRate() > 1) {
+            methodOutputStream.println("SAMPLE_RATE: " + cfg.getSampleRate());
+            methodOutputStream.println("INVOCATIONS: " + cfg.getInvocations());
+            methodOutputStream.println("SAMPLED_INVOCATIONS: " + cfg.getSampledInvocations());
+        }
+
+        // whether the probes of a method with a probe switch were switched off
+        if (cfg.getProbeSwitch() != null) {
+            methodOutputStream.println("PROBES_SWITCHED_OFF: " + (cfg.isProbeSwitchOn() ? 0 : 1));
+        }
+
+        // coverage of a method degraded by the governor is partial from the degradation on
+        if (cfg.getDegradation() != Degradation.NONE) {
+            methodOutputStream.println("DEGRADATION: " + cfg.getDegradation().getName());
+        }
+
+        // print the number of counted nodes followed by "id count" lines, and the same for edges
+        // ("src-id dest-id count" lines)
+        if (Config.executionCounts) {
+            Map<Integer, Long> nodeCounts = cfg.getShape().getNodeExecutionCounts(cfg);
+            methodOutputStream.println("NODE_EXECUTIONS: " + nodeCounts.size());
+            nodeCounts.forEach((id, count) -> methodOutputStream.println(id + " " + count));
+
+            Map<Tuple<Integer, Integer>, Long> edgeCounts = cfg.getShape().getEdgeExecutionCounts(cfg);
+            methodOutputStream.println("EDGE_EXECUTIONS: " + edgeCounts.size());
+            edgeCounts.forEach((edge, count) ->
+                    methodOutputStream.println(edge.getT1() + " " + edge.getT2() + " " + count));
+        }
+
         methodOutputStream.flush();
         methodOutputStream.close();
     }
 
+    private static void outputProfileToFile() {
+        ExecutionProfile profile = new ExecutionProfile();
+        cfgs.forEach((relativePathToMethod, cfg) -> cfg.getShape().getEdgeExecutionCounts(cfg).forEach(
+                (edge, count) -> profile.addEdgeCount(relativePathToMethod, edge.getT1(), edge.getT2(), count)));
+
+        PrintStream profileOutputStream;
+        try {
+            profileOutputStream = new PrintStream(Config.logDir + File.separator + "profile.txt",
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+
+        profile.printTo(profileOutputStream);
+        profileOutputStream.flush();
+        profileOutputStream.close();
+    }
+
     private static void getAllFilesHelper(String directoryName, List<File> files) {
         // https://stackoverflow.com/questions/14676407/list-all-files-in-the-folder-and-also-sub-folders
         File directory = new File(directoryName);
@@ -116,7 +292,7 @@ public class GraphAdapter {
         return allFiles;
     }
 
-    private static void loadCfg(String absolutePathOfMethodCfg) {
+    private static MethodCoverage loadCfg(String absolutePathOfMethodCfg) {
 //        System.out.println("loadCfg(...): " + absolutePathOfMethodCfg);
         // search for key as: package.classname File.sep methodName methodDesc
         String splitChar = String.format("\\%s", File.separator); // escape '/' or '\'
@@ -124,44 +300,180 @@ public class GraphAdapter {
         String methodRelativePath = pathComponents[pathComponents.length - 2] + File.separator +
                 pathComponents[pathComponents.length - 1];
 
-        if (cfgs.containsKey(methodRelativePath)) {
-            return;
-        }
+        return cfgs.computeIfAbsent(methodRelativePath,
+                path -> MethodCoverage.readFromFile(path, GraphAdapter::loadShape));
+    }
+
+    private static ProbePositionIDCfg loadShape(String shapeRelativePath) {
+        return shapes.computeIfAbsent(shapeRelativePath, path -> {
+            ProbePositionIDCfg shape = ProbePositionIDCfg.readCfgFromFile(path);
+            shape.setErrStream(logStream);
+            shape.updateTestRequirements();
+            return shape;
+        });
+    }
 
-        ProbePositionIDCfg cfg = ProbePositionIDCfg.readCfgFromFile(methodRelativePath);
-        cfg.setErrStream(logStream);
-        cfg.updateTestRequirements();
-        cfgs.put(methodRelativePath, cfg);
+    /**
+     * Loads the cfg of a method instrumented at runtime, e.g., escalated by the tiered agent (see Escalator).
+     *
+     * @param relativeFilePath - relative file path of the method, e.g., "package.ClassName/methodID"
+     */
+    static MethodCoverage loadCfgOfMethod(String relativeFilePath) {
+        return cfgs.computeIfAbsent(relativeFilePath,
+                path -> MethodCoverage.readFromFile(path, GraphAdapter::loadShape));
     }
 
-    public synchronized static void loadAllCfgsOfClass(String className) {
+    /**
+     * Loads the cfgs of all methods of the class and returns their coverage indexed by method id (the name
+     * of the file of the cfg); methods without a cfg get null. Called once by the class initializer of every
+     * instrumented class, which keeps the result in a static field (see ClassAdapter#addLoadCfgsInstns).
+     */
+    public synchronized static MethodCoverage[] loadAllCfgsOfClass(String className) {
 //        System.out.println("loadAllCfgsOfClass(...): " + className);
         List<File> allCfgsOfClass = getAllFiles(Config.cfgsDir + File.separator + className);
-        allCfgsOfClass.forEach(file -> loadCfg(file.getAbsolutePath()));
+
+        int numberOfMethods = allCfgsOfClass.stream().mapToInt(file -> Integer.parseInt(file.getName()) + 1).
+                max().orElse(0);
+        MethodCoverage[] coverageOfClass = new MethodCoverage[numberOfMethods];
+        allCfgsOfClass.forEach(file -> coverageOfClass[Integer.parseInt(file.getName())] =
+                loadCfg(file.getAbsolutePath()));
+        return coverageOfClass;
+    }
+
+    /**
+     * Registers a class instrumented in tiers and returns the coverage of its methods indexed by method id,
+     * which only gets the coverage of a method once it is escalated (see Escalator). Called once by the class
+     * initializer of every such class instead of loadAllCfgsOfClass, so no cfg is loaded for its methods.
+     */
+    public static MethodCoverage[] loadTieredCoverageOfClass(Class<?> clazz, int numberOfMethodIds) {
+        return checkEscalatorExists().register(clazz, numberOfMethodIds);
     }
 
     /**
-     * @param relativePathOfMethodCfg - should be the name of the file containing the cfg of the method
+     * Escalates a method instrumented in tiers, which calls it on entry until its coverage is bound, unless
+     * coverage is disabled (see CoverageSwitch).
+     *
+     * @param clazz    - class of the method
+     * @param methodId - id of the method in its class
      */
-    public static void cover(String relativePathOfMethodCfg, Path path) {
-//        System.out.println("cover(...): " + relativePathOfMethodCfg);
+    public static void escalate(Class<?> clazz, int methodId) {
+        if (CoverageSwitch.isEnabled()) {
+            checkEscalatorExists().escalate(clazz, methodId);
+        }
+    }
+
+    private static Escalator checkEscalatorExists() {
+        if (escalator == null) {
+            // the log may not be created yet
+            System.err.println("GraphAdapter [ERROR]: a class instrumented in tiers is loaded without the agent");
+            throw new IllegalStateException("a class instrumented in tiers is loaded without the agent");
+        }
+        return escalator;
+    }
 
-        ProbePositionIDCfg cfg = cfgs.get(relativePathOfMethodCfg);
+    private static MethodCoverage checkExists(MethodCoverage cfg) {
         if (cfg == null) {
-            logStream.println("GraphAdapter [ERROR]: cfg of " + relativePathOfMethodCfg + " does not exist");
-            throw new IllegalStateException("Error happened: cfg of " + relativePathOfMethodCfg + " does not exist");
+            logStream.println("GraphAdapter [ERROR]: cfg of an instrumented method does not exist");
+            throw new IllegalStateException("Error happened: cfg of an instrumented method does not exist");
+        }
+        return cfg;
+    }
+
+    /**
+     * Bootstrap method of the probe switch of an instrumented method (see
+     * MethodAdapter#addUninstrumentedBodyBranches): links it to a call site that returns true until the probes
+     * of the method are switched off and false afterwards (see MethodCoverage#getProbeSwitch). The call site
+     * is constant, so the JIT folds the switch and compiles the probes away once it is invalidated.
+     *
+     * @param relativeFilePath - relative file path of the method, e.g., "package.ClassName/methodID"
+     */
+    public static CallSite bootstrapProbeSwitch(MethodHandles.Lookup lookup, String name, MethodType type,
+                                               String relativeFilePath) {
+        MethodCoverage cfg = checkExists(cfgs.get(relativeFilePath));
+        if (cfg.getProbeSwitch() == null) {
+            logStream.println("GraphAdapter [ERROR]: " + relativeFilePath + " has no probe switch");
+            throw new IllegalStateException(relativeFilePath + " has no probe switch");
+        }
+
+        return new ConstantCallSite(cfg.getProbeSwitch().guardWithTest(MethodHandles.constant(boolean.class, true),
+                MethodHandles.constant(boolean.class, false)));
+    }
+
+    /**
+     * Marks a method instrumented at method coverage level as entered, unless coverage is disabled (see
+     * CoverageSwitch).
+     *
+     * @param cfg - coverage of the method, taken from the coverage field of its class
+     */
+    public static void enter(MethodCoverage cfg) {
+        if (!CoverageSwitch.isEnabled()) {
+            return;
+        }
+        checkExists(cfg);
+
+        // a volatile read is cheaper than a write on every call
+        if (!cfg.isEntered()) {
+            cfg.setEntered(true);
+        }
+    }
+
+    /**
+     * Marks a method instrumented for online coverage as entered and returns its coverage, which the
+     * probes of the invocation cover directly (see MethodCoverage#coverStep).
+     *
+     * @param cfg - coverage of the method, taken from the coverage field of its class
+     */
+    public static MethodCoverage enterOnline(MethodCoverage cfg) {
+        enter(cfg);
+        return cfg;
+    }
+
+    /**
+     * Counts one execution of Ball-Larus path pathId of a method instrumented in path profiling mode, which
+     * is marked as entered in its prologue (see enter).
+     *
+     * @param cfg - coverage of the method, taken from the coverage field of its class
+     */
+    public static void countPath(MethodCoverage cfg, int pathId) {
+        if (!CoverageSwitch.isEnabled()) {
+            return;
         }
+        checkExists(cfg);
 
-        if (!cfg.getRelativeFilePath().equals(relativePathOfMethodCfg)) {
-            logStream.println("GraphAdapter [ERROR]: concurrency error when retrieving cfg of " + relativePathOfMethodCfg);
-            throw new IllegalStateException("Error happened: concurrency error when retrieving cfg of " + relativePathOfMethodCfg);
+        if (cfg.shouldCover()) {
+            cfg.countPath(pathId);
         }
+    }
+
+    /**
+     * Covers the test requirements of path and gives the path back to its arena (see PathArena). Called on
+     * every exit of a method instrumented to record paths. With async cover, the path is only published to
+     * the cover threads (see CoverQueue). Paths of a degraded method may be dropped (see
+     * MethodCoverage#shouldCover), and paths recorded while coverage is disabled are (see CoverageSwitch).
+     *
+     * @param cfg - coverage of the method, taken from the coverage field of its class
+     */
+    public static void cover(MethodCoverage cfg, Path path) {
+        try {
+            if (!CoverageSwitch.isEnabled()) {
+                return;
+            }
 
-        // mark the cfg as entered.
-        cfg.setEntered(true);
+            enter(cfg);
+            if (!cfg.shouldCover()) {
+                return;
+            }
 
-        // convert path to edges
-        List<Node<ProbePositionID>> pathToCover = path.getPath().stream().map(Node::new).collect(Collectors.toList());
-        cfg.coverTestRequirements(pathToCover);
+            if (coverQueue != null) {
+                // a detached path is not released
+                PathArena.detach(path);
+                coverQueue.publish(cfg, path, Config.asyncCoverBackpressure);
+                return;
+            }
+
+            cfg.coverTestRequirements(path.getIds(), path.size());
+        } finally {
+            PathArena.release(path);
+        }
     }
 }
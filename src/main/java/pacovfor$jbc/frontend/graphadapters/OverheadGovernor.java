@@ -0,0 +1,215 @@
+package pacovfor$jbc.frontend.graphadapters;
+
+import pacovfor$jbc.analysis.graphtypes.Degradation;
+import pacovfor$jbc.analysis.graphtypes.MethodCoverage;
+import pacovfor$jbc.analysis.graphtypes.OverheadMeter;
+import pacovfor$jbc.config.CoverageLevel;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the overhead of coverage at runtime (see Config.overheadBudget). A daemon thread checks the
+ * estimated cost of every method (see OverheadMeter) at every interval, and if the cost of all methods in
+ * the interval exceeds the budget, it degrades the costliest methods one step each (see Degradation) until
+ * the cost of the others fits the budget. Every degradation is logged and counted in the metrics of the
+ * governor (see OverheadGovernorMXBean).
+ */
+public class OverheadGovernor implements OverheadGovernorMXBean {
+
+    private static final String OBJECT_NAME = "pacovfor$jbc:type=OverheadGovernor";
+
+    private final double budget;
+    private final long intervalMillis;
+    private final Collection<MethodCoverage> methods;
+    private final PrintStream log;
+
+    // estimated time and calls of every method at the last check; only used by the governor thread
+    private final Map<MethodCoverage, long[]> costAtLastCheck = new IdentityHashMap<>();
+
+    private final Map<String, String> degradedMethods = new ConcurrentHashMap<>();
+    private final LongAdder degradations = new LongAdder();
+    private volatile long costNanosOfLastInterval;
+    private volatile long callsOfLastInterval;
+    private Thread thread;
+
+    /**
+     * @param budget         - fraction of the CPU time of all processors that covering may take
+     * @param intervalMillis - milliseconds between two checks
+     * @param methods        - live view of the coverage of the loaded methods
+     * @param log            - stream degradations and errors are printed to
+     */
+    public OverheadGovernor(double budget, long intervalMillis, Collection<MethodCoverage> methods, PrintStream log) {
+        if (!(budget > 0)) {
+            throw new IllegalArgumentException("budget should be positive: " + budget);
+        }
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("interval should be positive: " + intervalMillis);
+        }
+
+        this.budget = budget;
+        this.intervalMillis = intervalMillis;
+        this.methods = methods;
+        this.log = log;
+    }
+
+    /**
+     * Registers the metrics of the governor and starts its thread.
+     */
+    public synchronized void start() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            log.println("OverheadGovernor [ERROR]: metrics could not be registered: " + e);
+        }
+
+        thread = new Thread(this::governUntilStopped, "pacovfor$jbc-governor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the thread of the governor; the degradations made so far are kept.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    private void governUntilStopped() {
+        long lastCheckNanos = System.nanoTime();
+        while (true) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            try {
+                check(now - lastCheckNanos);
+            } catch (RuntimeException e) {
+                log.println("OverheadGovernor [ERROR]: checking the overhead failed: " + e);
+            }
+            lastCheckNanos = now;
+        }
+    }
+
+    /**
+     * Degrades the costliest methods if the cost of all methods in the last elapsedNanos exceeds the budget.
+     */
+    void check(long elapsedNanos) {
+        Map<MethodCoverage, Long> costOfInterval = new IdentityHashMap<>();
+        long totalNanos = 0;
+        long totalCalls = 0;
+        for (MethodCoverage method : methods) {
+            OverheadMeter meter = method.getOverheadMeter();
+            if (meter == null) {
+                continue;
+            }
+
+            long nanos = meter.getNanos();
+            long calls = meter.getCalls();
+            long[] last = costAtLastCheck.getOrDefault(method, new long[2]);
+            costOfInterval.put(method, nanos - last[0]);
+            totalNanos += nanos - last[0];
+            totalCalls += calls - last[1];
+            costAtLastCheck.put(method, new long[]{nanos, calls});
+        }
+        costNanosOfLastInterval = totalNanos;
+        callsOfLastInterval = totalCalls;
+
+        long budgetNanos = (long) (budget * elapsedNanos * Runtime.getRuntime().availableProcessors());
+        if (totalNanos <= budgetNanos) {
+            return;
+        }
+
+        // degrade the costliest methods, assuming a degraded method costs nothing, until the rest fits
+        List<MethodCoverage> costliest = new ArrayList<>(costOfInterval.keySet());
+        costliest.sort((m1, m2) -> Long.compare(costOfInterval.get(m2), costOfInterval.get(m1)));
+        long excessNanos = totalNanos - budgetNanos;
+        for (MethodCoverage method : costliest) {
+            long costNanos = costOfInterval.get(method);
+            if (excessNanos <= 0 || costNanos <= 0) {
+                break;
+            }
+
+            Degradation next = nextDegradation(method);
+            if (next == null) {
+                continue;
+            }
+
+            log.println(String.format("OverheadGovernor [DEGRADE]: %s (%s): %s -> %s; %d us of %d us " +
+                            "(budget: %d us) in the last interval", method.getRelativeFilePath(),
+                    method.getFullMethodName(), method.getDegradation().getName(), next.getName(),
+                    costNanos / 1000, totalNanos / 1000, budgetNanos / 1000));
+            method.setDegradation(next);
+            degradedMethods.put(method.getRelativeFilePath(), next.getName());
+            degradations.increment();
+            excessNanos -= costNanos;
+        }
+    }
+
+    /**
+     * Returns the degradation that follows the one of method, or null if it is off. Methods that cover no
+     * more than nodes, or count paths (see Config.pathProfiling), are sampled right away.
+     */
+    private static Degradation nextDegradation(MethodCoverage method) {
+        switch (method.getDegradation()) {
+            case NONE:
+                return method.getShape().getCoverageLevel().includes(CoverageLevel.EDGE) &&
+                        method.getShape().getBallLarusNumbering() == null ? Degradation.NODES_ONLY :
+                        Degradation.SAMPLED;
+            case NODES_ONLY:
+                return Degradation.SAMPLED;
+            case SAMPLED:
+                return Degradation.OFF;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public double getBudget() {
+        return budget;
+    }
+
+    @Override
+    public long getCostNanosOfLastInterval() {
+        return costNanosOfLastInterval;
+    }
+
+    @Override
+    public long getCallsOfLastInterval() {
+        return callsOfLastInterval;
+    }
+
+    @Override
+    public long getDegradations() {
+        return degradations.sum();
+    }
+
+    @Override
+    public Map<String, String> getDegradedMethods() {
+        return new TreeMap<>(degradedMethods);
+    }
+}
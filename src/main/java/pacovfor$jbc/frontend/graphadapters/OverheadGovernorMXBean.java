@@ -0,0 +1,35 @@
+package pacovfor$jbc.frontend.graphadapters;
+
+import java.util.Map;
+
+/**
+ * Metrics of the overhead governor (see OverheadGovernor), registered as "pacovfor$jbc:type=OverheadGovernor"
+ * with the platform MBean server.
+ */
+public interface OverheadGovernorMXBean {
+
+    /**
+     * Returns the fraction of the CPU time of all processors that covering may take.
+     */
+    double getBudget();
+
+    /**
+     * Returns the estimated time of all calls into the coverage runtime in the last interval, in nanoseconds.
+     */
+    long getCostNanosOfLastInterval();
+
+    /**
+     * Returns the estimated number of calls into the coverage runtime in the last interval.
+     */
+    long getCallsOfLastInterval();
+
+    /**
+     * Returns the number of degradations so far.
+     */
+    long getDegradations();
+
+    /**
+     * Returns the degradation (see Degradation#getName) of every degraded method by relative file path.
+     */
+    Map<String, String> getDegradedMethods();
+}
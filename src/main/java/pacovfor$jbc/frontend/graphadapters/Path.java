@@ -1,26 +1,55 @@
 package pacovfor$jbc.frontend.graphadapters;
 
-import pacovfor$jbc.analysis.nodetypes.ProbePositionID;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * Probe position ids recorded by one execution of an instrumented method, in a growable int array.
+ * Adding an id does not allocate unless the array is full.
+ */
 public class Path {
 
-    private final List<ProbePositionID> path;
+    private static final int INITIAL_CAPACITY = 16;
+    // a reused path whose array grew beyond this size gets a new array when it is cleared
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    private int[] ids;
+    private int size;
+
+    // position of the path in its PathArena, -1 if the path is not taken from an arena
+    int depth;
 
     public Path() {
-        this.path = new ArrayList<>();
+        this.ids = new int[INITIAL_CAPACITY];
+        this.size = 0;
+        this.depth = -1;
+    }
+
+    public void addProbePositionID(int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, 2 * size);
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * Returns the backing array; only the first size() ids belong to the path.
+     */
+    public int[] getIds() {
+        return ids;
     }
 
-    public void addProbePositionID(String id) {
-//        System.out.println("adding to path... " + id);
-        this.path.add(new ProbePositionID(Integer.parseInt(id)));
+    public int size() {
+        return size;
     }
 
-    public List<ProbePositionID> getPath() {
-        return Collections.unmodifiableList(path);
+    /**
+     * Empties the path so that it can be reused.
+     */
+    void clear() {
+        if (ids.length > MAX_RETAINED_CAPACITY) {
+            ids = new int[INITIAL_CAPACITY];
+        }
+        size = 0;
     }
 
 }
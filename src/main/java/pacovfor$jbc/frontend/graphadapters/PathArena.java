@@ -0,0 +1,92 @@
+package pacovfor$jbc.frontend.graphadapters;
+
+import pacovfor$jbc.config.Config;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread stack of reusable paths (see Config.pathArenas).
+ * <p>
+ * An instrumented method takes its path with acquire() on entry and gives it back with release(path)
+ * after covering it on every exit (see GraphAdapter.cover). Invocations on one thread are nested, so the
+ * paths form a stack and a recursive invocation simply gets the next path. Once the stack is as deep as
+ * the deepest nesting of instrumented methods, entering a method allocates nothing.
+ */
+public class PathArena {
+
+    private static final ThreadLocal<PathArena> arenas = ThreadLocal.withInitial(PathArena::new);
+
+    private Path[] paths;
+    private int top; // number of paths in use
+
+    private PathArena() {
+        this.paths = new Path[16];
+        this.top = 0;
+    }
+
+    /**
+     * Returns an empty path for a new invocation: the next path of the arena of the current thread if
+     * arenas are enabled, a new path otherwise. Called on entry of every instrumented method.
+     */
+    public static Path acquire() {
+        if (!Config.pathArenas) {
+            return new Path();
+        }
+
+        return arenas.get().push();
+    }
+
+    /**
+     * Gives back path, which must not be used afterwards. Paths that are not taken from an arena are
+     * left to the garbage collector.
+     */
+    public static void release(Path path) {
+        if (path.depth >= 0) {
+            arenas.get().pop(path);
+        }
+    }
+
+    /**
+     * Gives back path like release(path), but keeps the arena from reusing it, so that it can be handed to
+     * another thread (see CoverQueue). The arena takes a new path at its position next time.
+     */
+    public static void detach(Path path) {
+        if (path.depth >= 0) {
+            arenas.get().remove(path);
+        }
+    }
+
+    private Path push() {
+        if (top == paths.length) {
+            paths = Arrays.copyOf(paths, 2 * top);
+        }
+
+        Path path = paths[top];
+        if (path == null) {
+            path = new Path();
+            paths[top] = path;
+        }
+
+        path.clear();
+        path.depth = top++;
+        return path;
+    }
+
+    /**
+     * Pops path and every path above it. Paths above it are only left when an invocation ended without
+     * releasing its path (e.g., an error was thrown while covering it).
+     */
+    private void pop(Path path) {
+        if (path.depth < top && paths[path.depth] == path) {
+            top = path.depth;
+        }
+    }
+
+    private void remove(Path path) {
+        pop(path);
+        if (path.depth < paths.length && paths[path.depth] == path) {
+            paths[path.depth] = null;
+        }
+        path.depth = -1;
+    }
+}
@@ -0,0 +1,332 @@
+package pacovfor$jbc.graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, int-indexed directed graph in compressed sparse row (CSR) form with forward and
+ * reverse adjacency. Nodes are 0 .. nodeCount() - 1. The successors of node v are
+ * successorAt(i) for successorsStart(v) <= i < successorsEnd(v); predecessors likewise.
+ * <p>
+ * Edges are numbered 0 .. edgeCount() - 1 in order of their source, and the edges of one source keep
+ * the order they were given in. The edge id of successor slot i is i itself, and the edge id of
+ * predecessor slot i is predecessorEdgeAt(i), so both directions can be walked without allocating.
+ * Every edge carries a flow type byte (e.g., FlowType#toByte), 0 if none was given.
+ * <p>
+ * edgeBetween scans the successors of a node with at most LINEAR_SEARCH_DEGREE successors and binary
+ * searches those of larger nodes (e.g., switches), whose edges are also kept sorted by destination.
+ */
+public class CsrGraph {
+
+    private static final int LINEAR_SEARCH_DEGREE = 8;
+
+    private final int nodeCount;
+    private final int[] successorOffsets;
+    private final int[] successorNodes;
+    private final int[] predecessorOffsets;
+    private final int[] predecessorNodes;
+    private final int[] predecessorEdges;
+    private final int[] edgeSources;
+    private final byte[] edgeFlowTypes;
+    private final int[] edgeInSlots; // position of every edge among the incoming edges of its destination
+    private final int[] sortedSuccessorEdges; // edges of every node by destination, then id
+
+    /**
+     * Creates a graph with nodeCount nodes and one edge sources[i] -> destinations[i] for every i.
+     */
+    public CsrGraph(int nodeCount, int[] sources, int[] destinations) {
+        this(nodeCount, sources, destinations, null);
+    }
+
+    /**
+     * Creates a graph with nodeCount nodes and one edge sources[i] -> destinations[i] with flow type
+     * flowTypes[i] for every i. flowTypes can be null.
+     */
+    public CsrGraph(int nodeCount, int[] sources, int[] destinations, byte[] flowTypes) {
+        if (nodeCount < 0 || sources == null || destinations == null || sources.length != destinations.length ||
+                (flowTypes != null && flowTypes.length != sources.length)) {
+            throw new IllegalArgumentException("node count is negative or sources and destinations do not match");
+        }
+
+        this.nodeCount = nodeCount;
+        this.successorOffsets = new int[nodeCount + 1];
+        this.successorNodes = new int[sources.length];
+        this.predecessorOffsets = new int[nodeCount + 1];
+        this.predecessorNodes = new int[sources.length];
+        this.predecessorEdges = new int[sources.length];
+        this.edgeSources = new int[sources.length];
+        this.edgeFlowTypes = new byte[sources.length];
+        this.edgeInSlots = new int[sources.length];
+
+        // edge id of every given edge
+        int[] edgeIds = fill(sources, destinations, successorOffsets, successorNodes);
+        int[] reverseSlots = fill(destinations, sources, predecessorOffsets, predecessorNodes);
+        for (int i = 0; i < sources.length; i++) {
+            edgeSources[edgeIds[i]] = sources[i];
+            edgeFlowTypes[edgeIds[i]] = flowTypes == null ? 0 : flowTypes[i];
+            predecessorEdges[reverseSlots[i]] = edgeIds[i];
+            edgeInSlots[edgeIds[i]] = reverseSlots[i] - predecessorOffsets[destinations[i]];
+        }
+        this.sortedSuccessorEdges = sortSuccessorEdges();
+    }
+
+    /**
+     * Sorts the edges of every node with more than LINEAR_SEARCH_DEGREE successors by destination and id.
+     * Other slots keep their own edge.
+     */
+    private int[] sortSuccessorEdges() {
+        int[] sorted = new int[successorNodes.length];
+        for (int v = 0; v < nodeCount; v++) {
+            int start = successorOffsets[v];
+            int end = successorOffsets[v + 1];
+            if (end - start <= LINEAR_SEARCH_DEGREE) {
+                for (int i = start; i < end; i++) {
+                    sorted[i] = i;
+                }
+                continue;
+            }
+
+            long[] keys = new long[end - start];
+            for (int i = start; i < end; i++) {
+                keys[i - start] = ((long) successorNodes[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            for (int i = start; i < end; i++) {
+                sorted[i] = (int) keys[i - start];
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Counting sort of the edges by "from" into offsets/nodes, keeping the original edge order per node.
+     * Returns the slot of every edge.
+     */
+    private int[] fill(int[] from, int[] to, int[] offsets, int[] nodes) {
+        for (int i = 0; i < from.length; i++) {
+            if (from[i] < 0 || from[i] >= nodeCount || to[i] < 0 || to[i] >= nodeCount) {
+                throw new IllegalArgumentException("edge " + i + " refers to a node that does not exist");
+            }
+            offsets[from[i] + 1]++;
+        }
+
+        for (int v = 0; v < nodeCount; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+
+        int[] next = new int[nodeCount];
+        System.arraycopy(offsets, 0, next, 0, nodeCount);
+        int[] slots = new int[from.length];
+        for (int i = 0; i < from.length; i++) {
+            slots[i] = next[from[i]]++;
+            nodes[slots[i]] = to[i];
+        }
+        return slots;
+    }
+
+    /**
+     * Creates the CSR form of graph, where node indexOf.get(node) of the new graph is node.
+     * indexOf must map every node of graph to a distinct index in 0 .. graph.getAllNodes().size() - 1.
+     */
+    public static <NT, ET> CsrGraph of(Graph<NT, ET> graph, Map<Node<NT>, Integer> indexOf) {
+        List<Edge<NT, ET>> edges = graph.getAllEdges();
+        int[] sources = new int[edges.size()];
+        int[] destinations = new int[edges.size()];
+        byte[] flowTypes = new byte[edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            sources[i] = indexOf.get(edges.get(i).getSource());
+            destinations[i] = indexOf.get(edges.get(i).getDestination());
+            flowTypes[i] = graph.flowTypeOf(edges.get(i).getData());
+        }
+
+        return new CsrGraph(graph.getAllNodes().size(), sources, destinations, flowTypes);
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public int edgeCount() {
+        return successorNodes.length;
+    }
+
+    public int successorsStart(int node) {
+        return successorOffsets[node];
+    }
+
+    public int successorsEnd(int node) {
+        return successorOffsets[node + 1];
+    }
+
+    public int successorAt(int index) {
+        return successorNodes[index];
+    }
+
+    public int predecessorsStart(int node) {
+        return predecessorOffsets[node];
+    }
+
+    public int predecessorsEnd(int node) {
+        return predecessorOffsets[node + 1];
+    }
+
+    public int predecessorAt(int index) {
+        return predecessorNodes[index];
+    }
+
+    /**
+     * Returns the id of the edge in predecessor slot index.
+     */
+    public int predecessorEdgeAt(int index) {
+        return predecessorEdges[index];
+    }
+
+    public int edgeSource(int edge) {
+        return edgeSources[edge];
+    }
+
+    public int edgeDestination(int edge) {
+        return successorNodes[edge];
+    }
+
+    public byte edgeFlowType(int edge) {
+        return edgeFlowTypes[edge];
+    }
+
+    /**
+     * Returns the id of the first edge from -> to, or -1 if there is none.
+     */
+    public int edgeBetween(int from, int to) {
+        int start = successorOffsets[from];
+        int end = successorOffsets[from + 1];
+        if (end - start <= LINEAR_SEARCH_DEGREE) {
+            for (int i = start; i < end; i++) {
+                if (successorNodes[i] == to) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // first sorted slot whose destination is not less than to
+        int low = start;
+        int high = end;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (successorNodes[sortedSuccessorEdges[middle]] < to) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < end && successorNodes[sortedSuccessorEdges[low]] == to ? sortedSuccessorEdges[low] : -1;
+    }
+
+    /**
+     * Returns the position of edge among the incoming edges of its destination, i.e., predecessor slot
+     * predecessorsStart(edgeDestination(edge)) + edgeInSlot(edge) is edge.
+     */
+    public int edgeInSlot(int edge) {
+        return edgeInSlots[edge];
+    }
+
+    public int outDegree(int node) {
+        return successorOffsets[node + 1] - successorOffsets[node];
+    }
+
+    public int inDegree(int node) {
+        return predecessorOffsets[node + 1] - predecessorOffsets[node];
+    }
+
+    /**
+     * Returns the graph with every edge reversed (keeping its flow type) and, if withVirtualNode is true, one additional node
+     * (index nodeCount()) with an edge to every node without successors in this graph. The virtual node
+     * is the entry of the reversed graph used to compute post-dominators.
+     */
+    public CsrGraph reversed(boolean withVirtualNode) {
+        int sinks = 0;
+        if (withVirtualNode) {
+            for (int v = 0; v < nodeCount; v++) {
+                if (outDegree(v) == 0) {
+                    sinks++;
+                }
+            }
+        }
+
+        int[] sources = new int[edgeCount() + sinks];
+        int[] destinations = new int[edgeCount() + sinks];
+        byte[] flowTypes = new byte[edgeCount() + sinks];
+        int e = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            for (int i = successorsStart(v); i < successorsEnd(v); i++) {
+                sources[e] = successorAt(i);
+                destinations[e] = v;
+                flowTypes[e] = edgeFlowTypes[i];
+                e++;
+            }
+        }
+
+        if (withVirtualNode) {
+            for (int v = 0; v < nodeCount; v++) {
+                if (outDegree(v) == 0) {
+                    sources[e] = nodeCount;
+                    destinations[e] = v;
+                    e++;
+                }
+            }
+        }
+
+        return new CsrGraph(withVirtualNode ? nodeCount + 1 : nodeCount, sources, destinations, flowTypes);
+    }
+
+    /**
+     * Collects the nodes and edges of a CsrGraph. Nodes are added in index order; edges can be added in
+     * any order, but the edge ids follow the order of their sources (see CsrGraph).
+     */
+    public static class Builder {
+        private int nodeCount;
+        private int edgeCount;
+        private int[] sources;
+        private int[] destinations;
+        private byte[] flowTypes;
+
+        public Builder() {
+            this(0, 16);
+        }
+
+        public Builder(int nodeCount, int expectedEdges) {
+            this.nodeCount = nodeCount;
+            this.edgeCount = 0;
+            this.sources = new int[Math.max(expectedEdges, 1)];
+            this.destinations = new int[sources.length];
+            this.flowTypes = new byte[sources.length];
+        }
+
+        /**
+         * Adds a node and returns its index.
+         */
+        public int addNode() {
+            return nodeCount++;
+        }
+
+        public Builder addEdge(int source, int destination, byte flowType) {
+            if (edgeCount == sources.length) {
+                sources = Arrays.copyOf(sources, 2 * edgeCount);
+                destinations = Arrays.copyOf(destinations, 2 * edgeCount);
+                flowTypes = Arrays.copyOf(flowTypes, 2 * edgeCount);
+            }
+
+            sources[edgeCount] = source;
+            destinations[edgeCount] = destination;
+            flowTypes[edgeCount] = flowType;
+            edgeCount++;
+            return this;
+        }
+
+        public CsrGraph build() {
+            return new CsrGraph(nodeCount, Arrays.copyOf(sources, edgeCount), Arrays.copyOf(destinations, edgeCount),
+                    Arrays.copyOf(flowTypes, edgeCount));
+        }
+    }
+}
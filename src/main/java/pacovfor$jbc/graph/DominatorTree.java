@@ -0,0 +1,231 @@
+package pacovfor$jbc.graph;
+
+import java.util.Arrays;
+
+/**
+ * Dominator tree of a CsrGraph computed with the Lengauer-Tarjan algorithm (path compression,
+ * iterative DFS and iterative compression so that deep graphs do not overflow the stack).
+ * <p>
+ * Post-dominators are the dominators of the reversed graph whose entry is a virtual exit node
+ * (see postDominatorsOf). Dominance queries are answered in O(1) using pre/post order numbers
+ * of the tree.
+ */
+public class DominatorTree {
+
+    private final int entry;
+    private final int[] idom;
+    private final int[] preOrder;
+    private final int[] postOrder;
+
+    private DominatorTree(int entry, int[] idom) {
+        this.entry = entry;
+        this.idom = idom;
+        this.preOrder = new int[idom.length];
+        this.postOrder = new int[idom.length];
+        numberTree();
+    }
+
+    /**
+     * Computes the dominator tree of the nodes of graph reachable from entry.
+     */
+    public static DominatorTree dominatorsOf(CsrGraph graph, int entry) {
+        return new DominatorTree(entry, lengauerTarjan(graph, entry));
+    }
+
+    /**
+     * Computes the post-dominator tree of graph. The tree is rooted at a virtual exit (index
+     * graph.nodeCount()) that post-dominates every node; nodes that can not reach a node without
+     * successors are unreachable in the tree.
+     */
+    public static DominatorTree postDominatorsOf(CsrGraph graph) {
+        CsrGraph reversed = graph.reversed(true);
+        return new DominatorTree(graph.nodeCount(), lengauerTarjan(reversed, graph.nodeCount()));
+    }
+
+    private static int[] lengauerTarjan(CsrGraph graph, int entry) {
+        int n = graph.nodeCount();
+        int[] dfsNumber = new int[n];
+        int[] vertex = new int[n];
+        int[] parent = new int[n];
+        int[] semi = new int[n];
+        int[] ancestor = new int[n];
+        int[] label = new int[n];
+        int[] idom = new int[n];
+        int[] bucketHead = new int[n];
+        int[] bucketNext = new int[n];
+        Arrays.fill(dfsNumber, -1);
+        Arrays.fill(ancestor, -1);
+        Arrays.fill(idom, -1);
+        Arrays.fill(bucketHead, -1);
+
+        // iterative DFS numbering
+        int count = 0;
+        int[] nodeStack = new int[n];
+        int[] edgeStack = new int[n];
+        int top = 0;
+        nodeStack[0] = entry;
+        edgeStack[0] = graph.successorsStart(entry);
+        dfsNumber[entry] = count;
+        vertex[count] = entry;
+        semi[entry] = count;
+        label[entry] = entry;
+        parent[entry] = -1;
+        count++;
+        while (top >= 0) {
+            int v = nodeStack[top];
+            if (edgeStack[top] < graph.successorsEnd(v)) {
+                int w = graph.successorAt(edgeStack[top]++);
+                if (dfsNumber[w] < 0) {
+                    dfsNumber[w] = count;
+                    vertex[count] = w;
+                    semi[w] = count;
+                    label[w] = w;
+                    parent[w] = v;
+                    count++;
+                    top++;
+                    nodeStack[top] = w;
+                    edgeStack[top] = graph.successorsStart(w);
+                }
+            } else {
+                top--;
+            }
+        }
+
+        int[] compressStack = new int[n];
+        for (int i = count - 1; i >= 1; i--) {
+            int w = vertex[i];
+            for (int e = graph.predecessorsStart(w); e < graph.predecessorsEnd(w); e++) {
+                int v = graph.predecessorAt(e);
+                if (dfsNumber[v] < 0) {
+                    continue; // unreachable predecessor
+                }
+
+                int u = eval(v, ancestor, label, semi, compressStack);
+                if (semi[u] < semi[w]) {
+                    semi[w] = semi[u];
+                }
+            }
+
+            // add w to the bucket of its semi-dominator and link it to its parent
+            int semiDominator = vertex[semi[w]];
+            bucketNext[w] = bucketHead[semiDominator];
+            bucketHead[semiDominator] = w;
+            ancestor[w] = parent[w];
+
+            int p = parent[w];
+            for (int v = bucketHead[p]; v >= 0; v = bucketNext[v]) {
+                int u = eval(v, ancestor, label, semi, compressStack);
+                idom[v] = semi[u] < semi[v] ? u : p;
+            }
+            bucketHead[p] = -1;
+        }
+
+        for (int i = 1; i < count; i++) {
+            int w = vertex[i];
+            if (idom[w] != vertex[semi[w]]) {
+                idom[w] = idom[idom[w]];
+            }
+        }
+
+        idom[entry] = -1;
+        return idom;
+    }
+
+    private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] compressStack) {
+        if (ancestor[v] < 0) {
+            return v;
+        }
+
+        // compress the ancestor path of v, processing the nodes closest to the root first
+        int size = 0;
+        int x = v;
+        while (ancestor[ancestor[x]] >= 0) {
+            compressStack[size++] = x;
+            x = ancestor[x];
+        }
+
+        while (size > 0) {
+            int y = compressStack[--size];
+            int a = ancestor[y];
+            if (semi[label[a]] < semi[label[y]]) {
+                label[y] = label[a];
+            }
+            ancestor[y] = ancestor[a];
+        }
+
+        return label[v];
+    }
+
+    /**
+     * Pre/post order numbering of the tree for O(1) dominance queries.
+     */
+    private void numberTree() {
+        int n = idom.length;
+        int[] childOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            if (idom[v] >= 0) {
+                childOffsets[idom[v] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            childOffsets[v + 1] += childOffsets[v];
+        }
+        int[] children = new int[childOffsets[n]];
+        int[] next = Arrays.copyOf(childOffsets, n);
+        for (int v = 0; v < n; v++) {
+            if (idom[v] >= 0) {
+                children[next[idom[v]]++] = v;
+            }
+        }
+
+        Arrays.fill(preOrder, -1);
+        Arrays.fill(postOrder, -1);
+        int[] nodeStack = new int[n];
+        int[] childStack = new int[n];
+        int top = 0;
+        int preCount = 0;
+        int postCount = 0;
+        nodeStack[0] = entry;
+        childStack[0] = childOffsets[entry];
+        preOrder[entry] = preCount++;
+        while (top >= 0) {
+            int v = nodeStack[top];
+            if (childStack[top] < childOffsets[v + 1]) {
+                int child = children[childStack[top]++];
+                preOrder[child] = preCount++;
+                top++;
+                nodeStack[top] = child;
+                childStack[top] = childOffsets[child];
+            } else {
+                postOrder[v] = postCount++;
+                top--;
+            }
+        }
+    }
+
+    /**
+     * Returns the entry of the tree (the virtual exit for post-dominator trees).
+     */
+    public int getEntry() {
+        return entry;
+    }
+
+    /**
+     * Returns the immediate dominator of node, or -1 if node is the entry or is unreachable.
+     */
+    public int immediateDominator(int node) {
+        return idom[node];
+    }
+
+    public boolean isReachable(int node) {
+        return preOrder[node] >= 0;
+    }
+
+    /**
+     * Returns true if a dominates b (every node dominates itself). Unreachable nodes neither
+     * dominate nor are dominated.
+     */
+    public boolean dominates(int a, int b) {
+        return isReachable(a) && isReachable(b) && preOrder[a] <= preOrder[b] && postOrder[b] <= postOrder[a];
+    }
+}
@@ -2,11 +2,24 @@ package pacovfor$jbc.graph;
 
 import java.io.PrintStream;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Directed graph with boxed nodes and edges.
+ * <p>
+ * A graph is built with addNode/addEdge and then frozen (see freeze), which moves it to a CsrGraph:
+ * nodes get indices 0 .. n - 1 and edges get ids, outgoingEdges and incomingEdges become O(degree) views
+ * without copying, and getAllEdges no longer copies. Frozen graphs cannot be changed. Hot loops should
+ * walk getCsr() with nodeAt/edgeAt instead of the boxed views.
+ */
 public class Graph<NT, ET> {
     private Node<NT> root;
-    private final Map<Node<NT>, List<Edge<NT, ET>>> adjacencyMap;
+    private Map<Node<NT>, List<Edge<NT, ET>>> adjacencyMap;
+
+    // frozen form; null until freeze() is called
+    private CsrGraph csr;
+    private Map<Node<NT>, Integer> indexOf;
+    private List<Node<NT>> nodes;
+    private List<Edge<NT, ET>> edges;
 
     // log
     private PrintStream out;
@@ -22,10 +35,12 @@ public class Graph<NT, ET> {
     }
 
     public void setRoot(Node<NT> root) {
+        checkNotFrozen();
         this.root = root;
     }
 
     public void addNode(Node<NT> node) {
+        checkNotFrozen();
         adjacencyMap.putIfAbsent(node, new ArrayList<>());
     }
 
@@ -35,24 +50,99 @@ public class Graph<NT, ET> {
     }
 
     public void addEdge(Node<NT> source, Node<NT> destination, ET data) {
+        checkNotFrozen();
         if (source == null || destination == null) {
             throw new IllegalArgumentException("either source or destination is null");
         }
 
-        Edge<NT, ET> edge = new Edge<>(source, destination, data);
+        adjacencyMap.computeIfAbsent(source, node -> new ArrayList<>()).add(new Edge<>(source, destination, data));
+
+        // create a new empty list for destination node
+        adjacencyMap.computeIfAbsent(destination, node -> new ArrayList<>());
+    }
 
-        if (adjacencyMap.containsKey(source)) {
-            adjacencyMap.get(source).add(edge);
-        } else {
-            LinkedList<Edge<NT, ET>> newList = new LinkedList<>();
-            newList.add(edge);
-            adjacencyMap.put(source, newList);
+    /**
+     * Moves the graph to its CSR form. Node indices follow the iteration order of getAllNodes() before
+     * freezing, and edge ids follow their sources, so iteration orders do not change. Does nothing if the
+     * graph is already frozen.
+     */
+    public void freeze() {
+        if (isFrozen()) {
+            return;
         }
 
-        // create a new empty list for destination node
-        if (!adjacencyMap.containsKey(destination)) {
-            adjacencyMap.put(destination, new LinkedList<>());
+        freeze(new ArrayList<>(adjacencyMap.keySet()));
+    }
+
+    /**
+     * Like freeze(), but node i of the CSR form is nodeOrder[i], e.g., to keep the node order of a file the
+     * graph was read from. nodeOrder must hold every node of the graph once.
+     */
+    public void freeze(List<Node<NT>> nodeOrder) {
+        checkNotFrozen();
+
+        Map<Node<NT>, Integer> indexOf = new LinkedHashMap<>();
+        nodeOrder.forEach(node -> indexOf.put(node, indexOf.size()));
+        if (indexOf.size() != nodeOrder.size() || !indexOf.keySet().equals(adjacencyMap.keySet())) {
+            throw new IllegalArgumentException("nodeOrder should hold every node of the graph once");
+        }
+
+        int numberOfEdges = adjacencyMap.values().stream().mapToInt(List::size).sum();
+
+        List<Node<NT>> nodes = new ArrayList<>(indexOf.keySet());
+        List<Edge<NT, ET>> edges = new ArrayList<>(numberOfEdges);
+        CsrGraph.Builder builder = new CsrGraph.Builder(nodes.size(), numberOfEdges);
+        for (Node<NT> node : nodes) {
+            for (Edge<NT, ET> edge : adjacencyMap.get(node)) {
+                builder.addEdge(indexOf.get(node), indexOf.get(edge.getDestination()), flowTypeOf(edge.getData()));
+                edges.add(edge);
+            }
         }
+
+        this.csr = builder.build();
+        this.indexOf = Collections.unmodifiableMap(indexOf);
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.edges = Collections.unmodifiableList(edges);
+        this.adjacencyMap = null;
+    }
+
+    public boolean isFrozen() {
+        return csr != null;
+    }
+
+    /**
+     * Returns the CSR form of the graph; the graph must be frozen.
+     */
+    public CsrGraph getCsr() {
+        checkFrozen();
+        return csr;
+    }
+
+    /**
+     * Returns the index of node in getCsr(), or -1 if the node does not exist; the graph must be frozen.
+     */
+    public int indexOf(Node<NT> node) {
+        checkFrozen();
+        Integer index = indexOf.get(node);
+        return index == null ? -1 : index;
+    }
+
+    public Node<NT> nodeAt(int index) {
+        checkFrozen();
+        return nodes.get(index);
+    }
+
+    public Edge<NT, ET> edgeAt(int edge) {
+        checkFrozen();
+        return edges.get(edge);
+    }
+
+    /**
+     * Returns the flow type byte of edge data in the CSR form. Graphs whose edges carry a flow type
+     * override this; 0 by default.
+     */
+    protected byte flowTypeOf(ET data) {
+        return 0;
     }
 
     public Node<NT> getRoot() {
@@ -60,6 +150,14 @@ public class Graph<NT, ET> {
     }
 
     public boolean isLeaf(Node<NT> node) {
+        if (isFrozen()) {
+            int index = indexOf(node);
+            if (index < 0) {
+                throw new IllegalArgumentException("node does not exist");
+            }
+            return csr.outDegree(index) == 0;
+        }
+
         if (adjacencyMap.get(node) == null) {
             throw new IllegalArgumentException("node does not exist");
         }
@@ -68,31 +166,68 @@ public class Graph<NT, ET> {
     }
 
     public Set<Node<NT>> getAllNodes() {
-        return adjacencyMap.keySet();
+        return isFrozen() ? indexOf.keySet() : adjacencyMap.keySet();
     }
 
     public List<Edge<NT, ET>> getAllEdges() {
-        return adjacencyMap.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
+        if (isFrozen()) {
+            return edges;
+        }
+
+        List<Edge<NT, ET>> allEdges = new ArrayList<>();
+        adjacencyMap.values().forEach(allEdges::addAll);
+        return allEdges;
     }
 
     public List<Edge<NT, ET>> outgoingEdges(Node<NT> from) {
-        return adjacencyMap.get(from);
+        if (!isFrozen()) {
+            return adjacencyMap.get(from);
+        }
+
+        int index = indexOf(from);
+        return index < 0 ? null : edges.subList(csr.successorsStart(index), csr.successorsEnd(index));
     }
 
     public List<Edge<NT, ET>> incomingEdges(Node<NT> to) {
-        return getAllEdges().stream().filter(edge -> edge.getDestination().equals(to)).collect(Collectors.toList());
+        if (!isFrozen()) {
+            List<Edge<NT, ET>> incoming = new ArrayList<>();
+            for (Edge<NT, ET> edge : getAllEdges()) {
+                if (edge.getDestination().equals(to)) {
+                    incoming.add(edge);
+                }
+            }
+            return incoming;
+        }
+
+        int index = indexOf(to);
+        if (index < 0) {
+            return Collections.emptyList();
+        }
+
+        int start = csr.predecessorsStart(index);
+        int end = csr.predecessorsEnd(index);
+        return new AbstractList<Edge<NT, ET>>() {
+            @Override
+            public Edge<NT, ET> get(int i) {
+                if (i < 0 || i >= end - start) {
+                    throw new IndexOutOfBoundsException("index: " + i + ", size: " + (end - start));
+                }
+                return edges.get(csr.predecessorEdgeAt(start + i));
+            }
+
+            @Override
+            public int size() {
+                return end - start;
+            }
+        };
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        Set<Node<NT>> keys = adjacencyMap.keySet();
-        List<Edge<NT, ET>> list;
-
-        for (Node<NT> node : keys) {
-            list = adjacencyMap.get(node);
 
-            for (Edge<NT, ET> data : list) {
+        for (Node<NT> node : getAllNodes()) {
+            for (Edge<NT, ET> data : outgoingEdges(node)) {
                 sb.append(data).append("\n");
             }
         }
@@ -100,6 +235,18 @@ public class Graph<NT, ET> {
         return sb.toString();
     }
 
+    private void checkFrozen() {
+        if (!isFrozen()) {
+            throw new IllegalStateException("graph is not frozen");
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (isFrozen()) {
+            throw new IllegalStateException("graph is frozen and cannot be changed");
+        }
+    }
+
     public void setOutStream(PrintStream out) {
         this.out = out;
     }
@@ -0,0 +1,286 @@
+package pacovfor$jbc.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Loop nesting forest of a CsrGraph (Bourdoncle / Ramalingam): every non-trivial strongly connected
+ * component (more than one node, or one node with a self-loop) is a loop. Its header is the member
+ * entered from outside the component that comes first in DFS preorder from the entry. The loops nested
+ * in a loop are the non-trivial strongly connected components of the loop without its header.
+ * <p>
+ * A loop with more than one member entered from outside the loop is irreducible. Runs in
+ * O((N + E) * maximal loop depth).
+ */
+public class LoopNestingForest {
+
+    private final int[] loopOf; // innermost loop of each node or -1
+    private final List<Integer> headers;
+    private final List<Integer> parents;
+    private final List<Boolean> irreducible;
+    private final int[] depths;
+
+    private LoopNestingForest(int nodeCount) {
+        this.loopOf = new int[nodeCount];
+        this.headers = new ArrayList<>();
+        this.parents = new ArrayList<>();
+        this.irreducible = new ArrayList<>();
+        this.depths = new int[nodeCount];
+        Arrays.fill(loopOf, -1);
+    }
+
+    public static LoopNestingForest of(CsrGraph graph, int entry) {
+        int n = graph.nodeCount();
+        LoopNestingForest forest = new LoopNestingForest(n);
+        int[] preOrder = preOrder(graph, entry);
+
+        // region[v] is the id of the set of nodes v currently belongs to; -1 if v was removed (a header)
+        int[] region = new int[n];
+        Deque<int[]> worklist = new ArrayDeque<>(); // (region id, parent loop)
+        Deque<int[]> regionMembers = new ArrayDeque<>();
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) {
+            all[v] = v;
+        }
+        worklist.push(new int[]{0, -1});
+        regionMembers.push(all);
+        int nextRegion = 1;
+
+        RestrictedTarjan tarjan = new RestrictedTarjan(graph);
+        while (!worklist.isEmpty()) {
+            int[] regionAndParent = worklist.pop();
+            int[] members = regionMembers.pop();
+            int regionId = regionAndParent[0];
+            int parentLoop = regionAndParent[1];
+
+            for (int[] component : tarjan.components(members, region, regionId)) {
+                if (component.length == 1 && !hasSelfLoop(graph, component[0])) {
+                    continue;
+                }
+
+                int loop = forest.headers.size();
+                int componentRegion = nextRegion++;
+                for (int v : component) {
+                    region[v] = componentRegion;
+                    forest.loopOf[v] = loop;
+                    forest.depths[v]++;
+                }
+
+                // header: member entered from outside the component, first in preorder
+                int header = -1;
+                int entries = 0;
+                for (int v : component) {
+                    boolean isEntered = v == entry;
+                    for (int e = graph.predecessorsStart(v); e < graph.predecessorsEnd(v) && !isEntered; e++) {
+                        isEntered = region[graph.predecessorAt(e)] != componentRegion;
+                    }
+
+                    if (isEntered) {
+                        entries++;
+                        if (header < 0 || isBefore(v, header, preOrder)) {
+                            header = v;
+                        }
+                    }
+                }
+                if (header < 0) {
+                    header = component[0];
+                    for (int v : component) {
+                        if (isBefore(v, header, preOrder)) {
+                            header = v;
+                        }
+                    }
+                }
+
+                forest.headers.add(header);
+                forest.parents.add(parentLoop);
+                forest.irreducible.add(entries > 1);
+
+                // nested loops are the loops of the component without its header
+                region[header] = -1;
+                int[] rest = new int[component.length - 1];
+                int i = 0;
+                for (int v : component) {
+                    if (v != header) {
+                        rest[i++] = v;
+                    }
+                }
+                worklist.push(new int[]{componentRegion, loop});
+                regionMembers.push(rest);
+            }
+        }
+
+        return forest;
+    }
+
+    private static boolean isBefore(int a, int b, int[] preOrder) {
+        if (preOrder[a] < 0 || preOrder[b] < 0) {
+            return preOrder[a] >= 0 || (preOrder[b] < 0 && a < b);
+        }
+        return preOrder[a] < preOrder[b];
+    }
+
+    private static boolean hasSelfLoop(CsrGraph graph, int v) {
+        for (int e = graph.successorsStart(v); e < graph.successorsEnd(v); e++) {
+            if (graph.successorAt(e) == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] preOrder(CsrGraph graph, int entry) {
+        int n = graph.nodeCount();
+        int[] preOrder = new int[n];
+        Arrays.fill(preOrder, -1);
+        int[] nodeStack = new int[n];
+        int[] edgeStack = new int[n];
+        int top = 0;
+        int count = 0;
+        nodeStack[0] = entry;
+        edgeStack[0] = graph.successorsStart(entry);
+        preOrder[entry] = count++;
+        while (top >= 0) {
+            int v = nodeStack[top];
+            if (edgeStack[top] < graph.successorsEnd(v)) {
+                int w = graph.successorAt(edgeStack[top]++);
+                if (preOrder[w] < 0) {
+                    preOrder[w] = count++;
+                    top++;
+                    nodeStack[top] = w;
+                    edgeStack[top] = graph.successorsStart(w);
+                }
+            } else {
+                top--;
+            }
+        }
+        return preOrder;
+    }
+
+    /**
+     * Tarjan's algorithm restricted to the nodes of one region. Index arrays are shared between
+     * calls so that a call costs O(size of region + edges leaving its nodes).
+     */
+    private static class RestrictedTarjan {
+        private final CsrGraph graph;
+        private final int[] index;
+        private final int[] lowLink;
+        private final boolean[] onStack;
+        private final int[] componentStack;
+        private final int[] nodeStack;
+        private final int[] edgeStack;
+
+        RestrictedTarjan(CsrGraph graph) {
+            int n = graph.nodeCount();
+            this.graph = graph;
+            this.index = new int[n];
+            this.lowLink = new int[n];
+            this.onStack = new boolean[n];
+            this.componentStack = new int[n];
+            this.nodeStack = new int[n];
+            this.edgeStack = new int[n];
+        }
+
+        List<int[]> components(int[] members, int[] region, int regionId) {
+            for (int v : members) {
+                index[v] = -1;
+            }
+
+            List<int[]> components = new ArrayList<>();
+            int nextIndex = 0;
+            int componentTop = 0;
+            for (int start : members) {
+                if (index[start] >= 0) {
+                    continue;
+                }
+
+                int top = 0;
+                nodeStack[0] = start;
+                edgeStack[0] = graph.successorsStart(start);
+                index[start] = lowLink[start] = nextIndex++;
+                componentStack[componentTop++] = start;
+                onStack[start] = true;
+
+                while (top >= 0) {
+                    int v = nodeStack[top];
+                    if (edgeStack[top] < graph.successorsEnd(v)) {
+                        int w = graph.successorAt(edgeStack[top]++);
+                        if (region[w] != regionId) {
+                            continue;
+                        }
+
+                        if (index[w] < 0) {
+                            index[w] = lowLink[w] = nextIndex++;
+                            componentStack[componentTop++] = w;
+                            onStack[w] = true;
+                            top++;
+                            nodeStack[top] = w;
+                            edgeStack[top] = graph.successorsStart(w);
+                        } else if (onStack[w]) {
+                            lowLink[v] = Math.min(lowLink[v], index[w]);
+                        }
+                    } else {
+                        top--;
+                        if (top >= 0) {
+                            int parent = nodeStack[top];
+                            lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                        }
+
+                        if (lowLink[v] == index[v]) {
+                            int size = 0;
+                            while (componentStack[componentTop - 1 - size] != v) {
+                                size++;
+                            }
+                            size++;
+                            int[] component = new int[size];
+                            for (int i = 0; i < size; i++) {
+                                int member = componentStack[--componentTop];
+                                onStack[member] = false;
+                                component[i] = member;
+                            }
+                            components.add(component);
+                        }
+                    }
+                }
+            }
+
+            return components;
+        }
+    }
+
+    public int loopCount() {
+        return headers.size();
+    }
+
+    public int headerOf(int loop) {
+        return headers.get(loop);
+    }
+
+    /**
+     * Returns the loop directly enclosing loop, or -1 if loop is outermost.
+     */
+    public int parentOf(int loop) {
+        return parents.get(loop);
+    }
+
+    public boolean isIrreducible(int loop) {
+        return irreducible.get(loop);
+    }
+
+    /**
+     * Returns the innermost loop containing node, or -1 if node is in no loop. A header belongs to
+     * the loop it heads.
+     */
+    public int loopOf(int node) {
+        return loopOf[node];
+    }
+
+    /**
+     * Returns the number of loops containing node.
+     */
+    public int depthOf(int node) {
+        return depths[node];
+    }
+}
@@ -0,0 +1,115 @@
+package pacovfor$jbc.graph;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a CsrGraph (iterative Tarjan). Components are numbered in
+ * reverse topological order of the condensation, i.e., if there is an edge from component a to
+ * a different component b, then b < a.
+ */
+public class StronglyConnectedComponents {
+
+    private final int[] componentOf;
+    private final int[] memberOffsets;
+    private final int[] members;
+
+    private StronglyConnectedComponents(int[] componentOf, int componentCount) {
+        this.componentOf = componentOf;
+        this.memberOffsets = new int[componentCount + 1];
+        this.members = new int[componentOf.length];
+
+        for (int component : componentOf) {
+            memberOffsets[component + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] next = Arrays.copyOf(memberOffsets, componentCount);
+        for (int v = 0; v < componentOf.length; v++) {
+            members[next[componentOf[v]]++] = v;
+        }
+    }
+
+    public static StronglyConnectedComponents of(CsrGraph graph) {
+        int n = graph.nodeCount();
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        int[] componentOf = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+
+        int[] componentStack = new int[n];
+        int componentTop = 0;
+        int[] nodeStack = new int[n];
+        int[] edgeStack = new int[n];
+        int nextIndex = 0;
+        int componentCount = 0;
+
+        for (int start = 0; start < n; start++) {
+            if (index[start] >= 0) {
+                continue;
+            }
+
+            int top = 0;
+            nodeStack[0] = start;
+            edgeStack[0] = graph.successorsStart(start);
+            index[start] = lowLink[start] = nextIndex++;
+            componentStack[componentTop++] = start;
+            onStack[start] = true;
+
+            while (top >= 0) {
+                int v = nodeStack[top];
+                if (edgeStack[top] < graph.successorsEnd(v)) {
+                    int w = graph.successorAt(edgeStack[top]++);
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        componentStack[componentTop++] = w;
+                        onStack[w] = true;
+                        top++;
+                        nodeStack[top] = w;
+                        edgeStack[top] = graph.successorsStart(w);
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                } else {
+                    top--;
+                    if (top >= 0) {
+                        int parent = nodeStack[top];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                    }
+
+                    if (lowLink[v] == index[v]) {
+                        int member;
+                        do {
+                            member = componentStack[--componentTop];
+                            onStack[member] = false;
+                            componentOf[member] = componentCount;
+                        } while (member != v);
+                        componentCount++;
+                    }
+                }
+            }
+        }
+
+        return new StronglyConnectedComponents(componentOf, componentCount);
+    }
+
+    public int componentCount() {
+        return memberOffsets.length - 1;
+    }
+
+    public int componentOf(int node) {
+        return componentOf[node];
+    }
+
+    public int componentSize(int component) {
+        return memberOffsets[component + 1] - memberOffsets[component];
+    }
+
+    /**
+     * Returns the nodes of component (a new array).
+     */
+    public int[] membersOf(int component) {
+        return Arrays.copyOfRange(members, memberOffsets[component], memberOffsets[component + 1]);
+    }
+}
@@ -39,4 +39,14 @@ public class Utils {
     public static Object getClassDirName(String className) {
         return className.replace("/", ".");
     }
+
+    /**
+     * Returns the smallest power of two that is at least n, for n in [1, 2^30].
+     */
+    public static int ceilingPowerOfTwo(int n) {
+        if (n <= 0 || n > 1 << 30) {
+            throw new IllegalArgumentException("n should be in [1, 2^30]: " + n);
+        }
+        return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
 }
@@ -0,0 +1,45 @@
+import pacovfor$jbc.backend.asmadapters.ClassAdapter;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Application that TieredAgentTest runs with the tiered agent; it is outside the packages of pacovfor$jbc,
+ * which are never instrumented. main, hot and boundMethods are escalated on the first iteration, and hot runs
+ * until all three are bound; never never runs; and the method run of the class given as argument is escalated
+ * last.
+ */
+public class TieredAgentFixture {
+
+    private static final long TIMEOUT_NANOS = 30_000_000_000L;
+
+    static int hot(int i) {
+        return i % 3 == 0 ? i / 3 : i + 1;
+    }
+
+    static int never() {
+        return 0;
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException, InterruptedException {
+        int sum = 0;
+        long end = System.nanoTime() + TIMEOUT_NANOS;
+        while (boundMethods() < 3 && System.nanoTime() < end) {
+            sum += hot(sum);
+            Thread.sleep(1);
+        }
+        for (int i = 0; i < 10; i++) {
+            sum += hot(i);
+        }
+
+        sum += (int) Class.forName(args[0]).getMethod("run").invoke(null);
+        System.out.println(sum);
+    }
+
+    private static long boundMethods() throws ReflectiveOperationException {
+        Field coverage = TieredAgentFixture.class.getDeclaredField(ClassAdapter.COVERAGE_FIELD_NAME);
+        coverage.setAccessible(true);
+        return Arrays.stream((Object[]) coverage.get(null)).filter(Objects::nonNull).count();
+    }
+}
@@ -0,0 +1,168 @@
+package pacovfor$jbc.analysis;
+
+import org.junit.Test;
+import pacovfor$jbc.utils.Tuple;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BallLarusNumberingTest {
+
+    @Test
+    public void diamondWithThrowingNode() {
+        // 0 -> 1 -> 3, 0 -> 2 -> 3; 1 can throw
+        List<Tuple<Integer, Integer>> edges = edges(0, 1, 0, 2, 1, 3, 2, 3);
+        BallLarusNumbering numbering = BallLarusNumbering.number(0, edges, Collections.singleton(1));
+        assertNotNull(numbering);
+        assertEquals(3, numbering.getNumberOfPaths());
+        assertRoundTrip(numbering, 0, edges, Collections.singleton(1));
+
+        // the path that ends with the exception thrown in 1 ends before 1, and is numbered "register + 0"
+        int register = numbering.getEntryValue() + numbering.getEdgeValue(0, 1);
+        assertEquals(Collections.singletonList(0), numbering.decode(register));
+    }
+
+    @Test
+    public void loopWithThrowingNodes() {
+        // 0 -> 1 -> 2 -> 1, 2 -> 3; 1 and 2 can throw
+        List<Tuple<Integer, Integer>> edges = edges(0, 1, 1, 2, 2, 1, 2, 3);
+        Set<Integer> throwingNodes = new HashSet<>(Arrays.asList(1, 2));
+        BallLarusNumbering numbering = BallLarusNumbering.number(0, edges, throwingNodes);
+        assertNotNull(numbering);
+        assertTrue(numbering.isBackEdge(2, 1));
+        assertRoundTrip(numbering, 0, edges, throwingNodes);
+    }
+
+    @Test
+    public void tooManyPaths() {
+        // a chain of 40 diamonds has 2^40 paths
+        List<Integer> pairs = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            int top = 3 * i;
+            pairs.addAll(Arrays.asList(top, top + 1, top, top + 2, top + 1, top + 3, top + 2, top + 3));
+        }
+        assertNull(BallLarusNumbering.number(0, edges(pairs.stream().mapToInt(Integer::intValue).toArray()),
+                Collections.emptySet()));
+    }
+
+    @Test
+    public void randomGraphs() throws IOException {
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            int n = 1 + random.nextInt(8);
+            List<Integer> pairs = new ArrayList<>();
+            for (int v = 0; v < n; v++) {
+                for (int w = 0; w < n; w++) {
+                    if (random.nextInt(n + 1) == 0) {
+                        pairs.add(v);
+                        pairs.add(w);
+                    }
+                }
+            }
+            Set<Integer> throwingNodes = new HashSet<>();
+            for (int v = 0; v < n; v++) {
+                if (random.nextBoolean()) {
+                    throwingNodes.add(v);
+                }
+            }
+
+            List<Tuple<Integer, Integer>> edges = edges(pairs.stream().mapToInt(Integer::intValue).toArray());
+            BallLarusNumbering numbering = BallLarusNumbering.number(0, edges, throwingNodes);
+            assertNotNull(numbering);
+            assertRoundTrip(numbering, 0, edges, throwingNodes);
+            assertRoundTrip(reread(numbering), 0, edges, throwingNodes);
+        }
+    }
+
+    private static List<Tuple<Integer, Integer>> edges(int... pairs) {
+        List<Tuple<Integer, Integer>> edges = new ArrayList<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            edges.add(new Tuple<>(pairs[i], pairs[i + 1]));
+        }
+        return edges;
+    }
+
+    private static BallLarusNumbering reread(BallLarusNumbering numbering) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        numbering.printTo(new PrintStream(bytes, true));
+        return BallLarusNumbering.readFrom(new BufferedReader(new StringReader(bytes.toString())));
+    }
+
+    /**
+     * Encodes every path the instrumented code can count, as instrumentPaths of Instrumenter does, and checks
+     * that the path ids are exactly 0 .. getNumberOfPaths() - 1 and that each decodes to its nodes.
+     */
+    private static void assertRoundTrip(BallLarusNumbering numbering, int root, List<Tuple<Integer, Integer>> edges,
+                                        Set<Integer> throwingNodes) {
+        Map<Integer, List<Integer>> successors = new HashMap<>();
+        for (Tuple<Integer, Integer> edge : edges) {
+            successors.computeIfAbsent(edge.getT1(), source -> new ArrayList<>()).add(edge.getT2());
+        }
+
+        Map<Integer, List<Integer>> decodedOfId = new HashMap<>();
+        Set<Integer> starts = new HashSet<>();
+        walk(numbering, successors, throwingNodes, root, numbering.getEntryValue(),
+                new ArrayList<>(Collections.singletonList(root)), decodedOfId, starts);
+
+        assertEquals(numbering.getNumberOfPaths(), decodedOfId.size());
+        for (Map.Entry<Integer, List<Integer>> path : decodedOfId.entrySet()) {
+            assertTrue("path id " + path.getKey(), path.getKey() >= 0 && path.getKey() < numbering.getNumberOfPaths());
+            assertEquals("path " + path.getKey(), path.getValue(), numbering.decode(path.getKey()));
+        }
+    }
+
+    /**
+     * Walks the acyclic paths from node with the register at value, and starts a walk after every back edge
+     * found, once per back edge.
+     */
+    private static void walk(BallLarusNumbering numbering, Map<Integer, List<Integer>> successors,
+                             Set<Integer> throwingNodes, int node, int register, List<Integer> nodes,
+                             Map<Integer, List<Integer>> decodedOfId, Set<Integer> starts) {
+        if (throwingNodes.contains(node)) {
+            count(decodedOfId, register, nodes.subList(0, nodes.size() - 1));
+        }
+
+        List<Integer> nodeSuccessors = successors.getOrDefault(node, Collections.emptyList());
+        if (nodeSuccessors.isEmpty()) {
+            count(decodedOfId, register + numbering.getExitValue(node), nodes);
+        }
+
+        for (int successor : new HashSet<>(nodeSuccessors)) {
+            List<Integer> next = new ArrayList<>(nodes);
+            next.add(successor);
+            if (numbering.isBackEdge(node, successor)) {
+                count(decodedOfId, register + numbering.getBackEdgeEndValue(node, successor), next);
+                if (starts.add(node * 1000 + successor)) {
+                    walk(numbering, successors, throwingNodes, successor,
+                            numbering.getBackEdgeStartValue(node, successor), new ArrayList<>(Arrays.asList(node,
+                                    successor)), decodedOfId, starts);
+                }
+            } else {
+                walk(numbering, successors, throwingNodes, successor,
+                        register + numbering.getEdgeValue(node, successor), next, decodedOfId, starts);
+            }
+        }
+    }
+
+    private static void count(Map<Integer, List<Integer>> decodedOfId, int pathId, List<Integer> nodes) {
+        List<Integer> previous = decodedOfId.put(pathId, new ArrayList<>(nodes));
+        assertNull("path id " + pathId + " counted for " + previous + " and " + nodes, previous);
+    }
+}
@@ -0,0 +1,175 @@
+package pacovfor$jbc.analysis;
+
+import org.junit.Test;
+import pacovfor$jbc.analysis.graphtypes.ProbePositionCfg;
+import pacovfor$jbc.analysis.nodetypes.ProbePosition;
+import pacovfor$jbc.analysis.testrequirements.CoverageBits;
+import pacovfor$jbc.analysis.testrequirements.DefUseTR;
+import pacovfor$jbc.backend.asmadapters.ClassAdapter;
+import pacovfor$jbc.backend.asmadapters.InstructionAdapter;
+import pacovfor$jbc.backend.asmadapters.MethodAdapter;
+import pacovfor$jbc.graph.Node;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pairs and replays of the methods of Fixture. A def or use is named by the line of its basic block (the line
+ * of the first instruction of the block with a line, relative to the first line of the method; "p" for a
+ * parameter), and a pair by "variable:def->use".
+ */
+public class DefUseAnalysisTest {
+
+    // CAUTION: the tests refer to the lines of these methods relative to their first line
+    static class Fixture {
+
+        static int loop(int n) {
+            int s = 0;
+            for (int i = 0; i < n; i++) {
+                s += i;
+            }
+            return s;
+        }
+
+        static int caught(int[] a) {
+            int x = 0;
+            int y = 1;
+            try {
+                x = a[0];
+                x = x + 1;
+            } catch (RuntimeException e) {
+                return x + y;
+            }
+            return x;
+        }
+    }
+
+    @Test
+    public void loop() throws IOException {
+        Method method = new Method("loop", false);
+        // n is 0, s is 1, i is 2; block 0 defines s and i, block 1 is the loop condition, block 2 the body
+        assertEquals(Arrays.asList("0:p->1", "1:0->2", "1:0->4", "1:2->2", "1:2->4",
+                "2:0->1", "2:0->2", "2:0->2", "2:2->1", "2:2->2", "2:2->2"), method.pairs());
+
+        assertEquals(Arrays.asList("0:p->1", "1:0->4", "2:0->1"),
+                method.cover(method.exit(0), method.exit(1), method.exit(4)));
+        assertEquals(Arrays.asList("0:p->1", "1:0->2", "1:2->2", "1:2->4", "2:0->1", "2:0->2", "2:0->2",
+                        "2:2->1", "2:2->2", "2:2->2"),
+                method.cover(method.exit(0), method.exit(1), method.exit(2), method.exit(1), method.exit(2),
+                        method.exit(1), method.exit(4)));
+    }
+
+    @Test
+    public void exceptionalEdge() throws IOException {
+        Method method = new Method("caught", true);
+        // a is 0, x is 1, y is 2; block 3 is the try block, block 5 the handler. Every definition of the try
+        // block reaches the handler, since the exception can be thrown after any of them.
+        assertEquals(Arrays.asList("0:p->3", "1:0->5", "1:3->3", "1:3->5", "1:3->5", "1:3->8", "2:0->5"),
+                method.pairs());
+
+        assertEquals(Arrays.asList("0:p->3", "1:3->3", "1:3->8"),
+                method.cover(method.exit(0), method.entry(3), method.exit(3), method.exit(8)));
+    }
+
+    @Test
+    public void blockThatExitsAbruptly() throws IOException {
+        Method method = new Method("caught", true);
+
+        // the try block defines x, so no definition of x is active in the handler; y is not defined there
+        assertEquals(Collections.singletonList("2:0->5"),
+                method.cover(method.exit(0), method.entry(3), method.exit(5)));
+
+        // an exception that leaves the method covers nothing
+        assertEquals(Collections.emptyList(), method.cover(method.exit(0), method.entry(3)));
+    }
+
+    /**
+     * A method of Fixture with its probe position cfg and def-use analysis.
+     */
+    private static class Method {
+
+        private final ProbePositionCfg pbCfg;
+        private final DefUseAnalysis analysis;
+        private final Map<Integer, Integer> lineOfPosition = new HashMap<>();
+
+        Method(String name, boolean exceptionalFlows) throws IOException {
+            String classFile = Fixture.class.getName().replace('.', '/') + ".class";
+            byte[] classBytes;
+            try (InputStream in = Fixture.class.getClassLoader().getResourceAsStream(classFile)) {
+                classBytes = in.readAllBytes();
+            }
+            MethodAdapter methodAdapter = new ClassAdapter(classBytes, Fixture.class.getClassLoader()).getMethods().
+                    stream().filter(m -> m.getName().equals(name)).findFirst().orElseThrow();
+
+            pbCfg = CfgBuilder.buildProbePositionCfg(methodAdapter, exceptionalFlows, exceptionalFlows);
+            analysis = DefUseAnalysis.analyze(methodAdapter, pbCfg);
+            analysis.createRequirements();
+
+            Map<InstructionAdapter, Integer> lineOf = new HashMap<>();
+            int firstLine = -1;
+            int currentLine = -1;
+            for (InstructionAdapter instruction : methodAdapter.getInstructions()) {
+                if (instruction.isLineNumber()) {
+                    currentLine = instruction.getLineNumber();
+                    firstLine = firstLine < 0 ? currentLine : firstLine;
+                } else if (instruction.isRealInstruction() && !instruction.isLabel()) {
+                    lineOf.put(instruction, currentLine - firstLine);
+                }
+            }
+            for (Node<ProbePosition> node : pbCfg.getAllNodes()) {
+                node.getData().containingBasicBlock().getInstructions().stream().
+                        filter(lineOf::containsKey).findFirst().
+                        ifPresent(instruction -> lineOfPosition.put(node.getData().getId(), lineOf.get(instruction)));
+            }
+        }
+
+        int entry(int line) {
+            return position(line, true);
+        }
+
+        int exit(int line) {
+            return position(line, false);
+        }
+
+        private int position(int line, boolean entryOnly) {
+            return pbCfg.getAllNodes().stream().map(Node::getData).
+                    filter(position -> Integer.valueOf(line).equals(lineOfPosition.get(position.getId()))).
+                    filter(position -> entryOnly ? !position.isExit() : position.isExit()).
+                    findFirst().orElseThrow(() -> new IllegalArgumentException("no position on line " + line)).
+                    getId();
+        }
+
+        List<String> pairs() {
+            return names(new CoverageBits(analysis.getNumberOfPairs()), false);
+        }
+
+        List<String> cover(int... path) {
+            CoverageBits covered = new CoverageBits(analysis.getNumberOfPairs());
+            assertTrue(analysis.cover(path, path[0] == pbCfg.getRoot().getData().getId(), covered));
+            return names(covered, true);
+        }
+
+        private List<String> names(CoverageBits covered, boolean coveredOnly) {
+            List<String> names = new ArrayList<>();
+            for (DefUseTR pair : analysis.getRequirements(covered)) {
+                if (coveredOnly && !pair.isCovered()) {
+                    continue;
+                }
+                int defPosition = analysis.getPositionOfDefinition(pair.getDefinition());
+                names.add(pair.getVariable() + ":" + (defPosition < 0 ? "p" : lineOfPosition.get(defPosition)) +
+                        "->" + lineOfPosition.get(analysis.getPositionOfUse(pair.getUse())));
+            }
+            Collections.sort(names);
+            return names;
+        }
+    }
+}
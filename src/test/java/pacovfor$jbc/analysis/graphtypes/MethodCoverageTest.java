@@ -0,0 +1,73 @@
+package pacovfor$jbc.analysis.graphtypes;
+
+import org.junit.Test;
+import pacovfor$jbc.analysis.nodetypes.ProbePositionID;
+import pacovfor$jbc.graph.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MethodCoverageTest {
+
+    @Test
+    public void everyThreadSamplesItsFirstInvocationThenOneInSampleRate() throws InterruptedException {
+        MethodCoverage coverage = sampled(100);
+        assertFalse(coverage.isEntered());
+
+        assertTrue(coverage.sample());
+        for (int i = 1; i < 100; i++) {
+            assertFalse(coverage.sample());
+        }
+        assertTrue(coverage.sample());
+        assertTrue(coverage.isEntered());
+
+        // another thread has a countdown of its own
+        List<Boolean> samples = new ArrayList<>();
+        Thread thread = new Thread(() -> {
+            samples.add(coverage.sample());
+            samples.add(coverage.sample());
+        });
+        thread.start();
+        thread.join();
+        assertEquals(List.of(true, false), samples);
+
+        assertEquals(103, coverage.getInvocations());
+        assertEquals(3, coverage.getSampledInvocations());
+    }
+
+    @Test
+    public void unsampledInvocationsMarkTheMethodEntered() {
+        MethodCoverage coverage = sampled(3);
+        coverage.sample();
+        coverage.setEntered(false);
+
+        assertFalse(coverage.sample());
+        assertTrue(coverage.isEntered());
+    }
+
+    @Test
+    public void methodsThatAreNotSampledCountNoInvocations() {
+        MethodCoverage coverage = new MethodCoverage("test.Sampled/0", "test.Sampled/m()V", shape(), null, 1, false);
+        assertTrue(coverage.sample());
+        assertEquals(-1, coverage.getInvocations());
+        assertEquals(-1, coverage.getSampledInvocations());
+    }
+
+    private static MethodCoverage sampled(int sampleRate) {
+        return new MethodCoverage("test.Sampled/0", "test.Sampled/m()V", shape(), null, sampleRate, false);
+    }
+
+    private static ProbePositionIDCfg shape() {
+        ProbePositionIDCfg shape = new ProbePositionIDCfg("test.Sampled/0", "test.Sampled/m()V");
+        Node<ProbePositionID> root = new Node<>(new ProbePositionID(0));
+        shape.addNode(root);
+        shape.setRoot(root);
+        shape.freeze();
+        shape.updateTestRequirements();
+        return shape;
+    }
+}
@@ -0,0 +1,168 @@
+package pacovfor$jbc.analysis.testrequirements;
+
+import org.junit.Test;
+import pacovfor$jbc.graph.CsrGraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrimePathTrieTest {
+
+    @Test
+    public void selfLoop() {
+        // 0 -> 1 -> 1, 1 -> 2
+        assertMatchesBruteForce(graph(3, 0, 1, 1, 1, 1, 2));
+    }
+
+    @Test
+    public void simpleCycle() {
+        // 0 -> 1 -> 2 -> 0: every rotation of the cycle is a prime path
+        CsrGraph graph = graph(3, 0, 1, 1, 2, 2, 0);
+        assertMatchesBruteForce(graph);
+        assertEquals(3, PrimePathTrie.enumerate(graph, ids(3), 100).size());
+    }
+
+    @Test
+    public void loopWithExit() {
+        // 0 -> 1 -> 2 -> 1, 2 -> 3, 0 -> 3
+        assertMatchesBruteForce(graph(4, 0, 1, 1, 2, 2, 1, 2, 3, 0, 3));
+    }
+
+    @Test
+    public void parallelEdges() {
+        // a switch with two cases that jump to the same node
+        assertMatchesBruteForce(graph(3, 0, 1, 0, 1, 0, 2, 1, 2));
+    }
+
+    @Test
+    public void exactlyMaxPrimePathsIsNotTruncated() {
+        CsrGraph graph = graph(4, 0, 1, 1, 2, 2, 1, 2, 3, 0, 3);
+        int count = bruteForcePrimePaths(graph).size();
+
+        PrimePathTrie exact = PrimePathTrie.enumerate(graph, ids(4), count);
+        assertFalse(exact.isTruncated());
+        assertEquals(count, exact.size());
+
+        PrimePathTrie fewer = PrimePathTrie.enumerate(graph, ids(4), count - 1);
+        assertTrue(fewer.isTruncated());
+        assertEquals(count - 1, fewer.size());
+    }
+
+    @Test
+    public void randomGraphs() {
+        Random random = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            int n = 1 + random.nextInt(7);
+            List<Integer> pairs = new ArrayList<>();
+            for (int v = 0; v < n; v++) {
+                for (int w = 0; w < n; w++) {
+                    if (random.nextInt(n + 1) < 2) {
+                        pairs.add(v);
+                        pairs.add(w);
+                    }
+                }
+            }
+            assertMatchesBruteForce(graph(n, pairs.stream().mapToInt(Integer::intValue).toArray()));
+        }
+    }
+
+    private static CsrGraph graph(int nodeCount, int... pairs) {
+        int[] sources = new int[pairs.length / 2];
+        int[] destinations = new int[pairs.length / 2];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = pairs[2 * i];
+            destinations[i] = pairs[2 * i + 1];
+        }
+        return new CsrGraph(nodeCount, sources, destinations);
+    }
+
+    // node ids differ from the indices, as in a cfg
+    private static int[] ids(int nodeCount) {
+        int[] ids = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            ids[v] = 100 + 3 * v;
+        }
+        return ids;
+    }
+
+    /**
+     * Compares the enumerated prime paths with the brute-force ones, and checks that enumerating with exactly
+     * as many prime paths allowed is not truncated and that every prime path covers itself.
+     */
+    private static void assertMatchesBruteForce(CsrGraph graph) {
+        int[] ids = ids(graph.nodeCount());
+        Set<List<Integer>> expected = new HashSet<>();
+        for (List<Integer> primePath : bruteForcePrimePaths(graph)) {
+            List<Integer> primePathIds = new ArrayList<>();
+            primePath.forEach(v -> primePathIds.add(ids[v]));
+            expected.add(primePathIds);
+        }
+
+        PrimePathTrie trie = PrimePathTrie.enumerate(graph, ids, expected.size());
+        assertFalse(trie.isTruncated());
+
+        CoverageBits none = new CoverageBits(trie.size());
+        Set<List<Integer>> actual = new HashSet<>();
+        for (PrimePathTR primePath : trie.getPrimePaths(none)) {
+            List<Integer> path = new ArrayList<>();
+            Arrays.stream(primePath.getPath()).forEach(path::add);
+            assertTrue("prime path " + path + " is enumerated twice", actual.add(path));
+
+            CoverageBits covered = new CoverageBits(trie.size());
+            trie.cover(primePath.getPath(), covered);
+            assertEquals("prime paths toured by " + path, 1, covered.cardinality());
+        }
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Returns all simple paths and simple cycles of graph that are not a proper subpath of another one.
+     */
+    private static Set<List<Integer>> bruteForcePrimePaths(CsrGraph graph) {
+        Set<List<Integer>> simplePaths = new HashSet<>();
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            List<Integer> path = new ArrayList<>();
+            path.add(v);
+            simplePaths(graph, path, simplePaths);
+        }
+
+        Set<List<Integer>> primePaths = new HashSet<>();
+        for (List<Integer> path : simplePaths) {
+            if (simplePaths.stream().noneMatch(other -> other.size() > path.size() && isSubpath(path, other))) {
+                primePaths.add(path);
+            }
+        }
+        return primePaths;
+    }
+
+    private static void simplePaths(CsrGraph graph, List<Integer> path, Set<List<Integer>> simplePaths) {
+        simplePaths.add(new ArrayList<>(path));
+        int last = path.get(path.size() - 1);
+        if (path.size() > 1 && last == path.get(0)) {
+            // a simple cycle can not be extended
+            return;
+        }
+
+        for (int e = graph.successorsStart(last); e < graph.successorsEnd(last); e++) {
+            int w = graph.successorAt(e);
+            if (w == path.get(0) || !path.contains(w)) {
+                path.add(w);
+                simplePaths(graph, path, simplePaths);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    private static boolean isSubpath(List<Integer> path, List<Integer> other) {
+        return Collections.indexOfSubList(other, path) >= 0;
+    }
+}
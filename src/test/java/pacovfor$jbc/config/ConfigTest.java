@@ -0,0 +1,37 @@
+package pacovfor$jbc.config;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConfigTest {
+
+    @After
+    public void restoreCoverageStripes() {
+        System.clearProperty("coverageStripes");
+        Config.updateCoverageStripes();
+    }
+
+    @Test
+    public void coverageStripesAreRoundedUpToAPowerOfTwo() {
+        assertEquals(1, coverageStripesOf("1"));
+        assertEquals(4, coverageStripesOf("3"));
+        assertEquals(8, coverageStripesOf("8"));
+        assertEquals(1 << 16, coverageStripesOf("65536"));
+    }
+
+    @Test
+    public void invalidCoverageStripesFallBackToOne() {
+        assertEquals(1, coverageStripesOf("0"));
+        assertEquals(1, coverageStripesOf("-4"));
+        assertEquals(1, coverageStripesOf("65537"));
+        assertEquals(1, coverageStripesOf("many"));
+    }
+
+    private static int coverageStripesOf(String property) {
+        System.setProperty("coverageStripes", property);
+        Config.updateCoverageStripes();
+        return Config.coverageStripes;
+    }
+}
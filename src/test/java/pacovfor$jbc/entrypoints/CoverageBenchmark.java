@@ -0,0 +1,155 @@
+package pacovfor$jbc.entrypoints;
+
+import pacovfor$jbc.analysis.FlowType;
+import pacovfor$jbc.analysis.graphtypes.MethodCoverage;
+import pacovfor$jbc.analysis.graphtypes.ProbePositionIDCfg;
+import pacovfor$jbc.analysis.nodetypes.ProbePositionID;
+import pacovfor$jbc.config.Config;
+import pacovfor$jbc.graph.Node;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Scaling benchmark of covering recorded paths when many threads run the same hot method, with and
+ * without striped coverage bits (see Config.coverageStripes).
+ * <p>
+ * The method is a loop (entry -> header -> body -> header ... -> exit) measured at edge-pair level, written
+ * to a temporary cfgs directory and loaded as at runtime. Every run loads a new MethodCoverage of the method,
+ * and all its threads repeatedly cover the same path through the loop in it.
+ * <p>
+ * Usage: CoverageBenchmark [max threads (default: available processors)] [loop iterations per path
+ * (default 16)]. Threads double from 1 to max; covers/ms should grow with the threads.
+ */
+public class CoverageBenchmark {
+
+    private static final long WARMUP_MILLIS = 500;
+    private static final long MEASURED_MILLIS = 1000;
+
+    // results are accumulated here so that the JIT can not eliminate the measured work
+    private static volatile long blackhole;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        File cfgsDir = Files.createTempDirectory("pacovfor-coverage-benchmark").toFile();
+        Config.cfgsDir = cfgsDir.getPath();
+        try {
+            String methodFile = writeLoopMethod();
+            int[] path = loopPath(iterations);
+
+            System.out.printf("%-10s %-10s %-14s %-10s%n", "threads", "stripes", "covers/ms", "speedup");
+            for (int stripes : new int[]{1, Integer.highestOneBit(maxThreads)}) {
+                double coversPerMillisOfOneThread = 0;
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    double coversPerMillis = bench(methodFile, path, threads, stripes);
+                    coversPerMillisOfOneThread = threads == 1 ? coversPerMillis : coversPerMillisOfOneThread;
+                    System.out.printf("%-10d %-10d %-14.1f %-10.2f%n", threads, stripes, coversPerMillis,
+                            coversPerMillis / coversPerMillisOfOneThread);
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(cfgsDir.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Covers path in coverage of the loop method on threads threads for MEASURED_MILLIS after a warmup and
+     * returns the number of covers per millisecond of all threads.
+     */
+    private static double bench(String methodFile, int[] path, int threads, int stripes)
+            throws InterruptedException {
+        Config.coverageStripes = stripes;
+        MethodCoverage coverage = MethodCoverage.readFromFile(methodFile, shapeFile -> {
+            ProbePositionIDCfg shape = ProbePositionIDCfg.readCfgFromFile(shapeFile);
+            shape.updateTestRequirements();
+            return shape;
+        });
+
+        LongAdder covers = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] window = new long[2]; // measured window [start, end) in System.nanoTime()
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                int[] ids = new int[path.length];
+                long count = 0;
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                long now;
+                while ((now = System.nanoTime()) < window[1]) {
+                    // coverTestRequirements may overwrite the ids
+                    System.arraycopy(path, 0, ids, 0, path.length);
+                    coverage.coverTestRequirements(ids, path.length);
+                    if (now >= window[0]) {
+                        count++;
+                    }
+                }
+                covers.add(count);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+
+        window[0] = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+        window[1] = window[0] + MEASURED_MILLIS * 1_000_000;
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        blackhole += coverage.getCoverageInfoKeyPairs().size();
+        return covers.sum() * 1.0d / MEASURED_MILLIS;
+    }
+
+    /**
+     * Writes the cfg of the loop method (0 -> 1, 1 -> 2, 2 -> 1, 1 -> 3) and returns its method file.
+     */
+    private static String writeLoopMethod() {
+        String methodFile = "bench.Loop" + File.separator + "0";
+        ProbePositionIDCfg cfg = new ProbePositionIDCfg(methodFile, "bench.Loop/loop(I)I");
+
+        List<Node<ProbePositionID>> nodes = new ArrayList<>();
+        for (int id = 0; id < 4; id++) {
+            nodes.add(new Node<>(new ProbePositionID(id)));
+            cfg.addNode(nodes.get(id));
+        }
+        cfg.addEdge(nodes.get(0), nodes.get(1), FlowType.NORMAL_FLOW);
+        cfg.addEdge(nodes.get(1), nodes.get(2), FlowType.NORMAL_FLOW);
+        cfg.addEdge(nodes.get(2), nodes.get(1), FlowType.NORMAL_FLOW);
+        cfg.addEdge(nodes.get(1), nodes.get(3), FlowType.NORMAL_FLOW);
+        cfg.setRoot(nodes.get(0));
+        cfg.freeze();
+
+        cfg.printToFile();
+        return methodFile;
+    }
+
+    private static int[] loopPath(int iterations) {
+        int[] path = new int[2 * iterations + 3];
+        int size = 0;
+        path[size++] = 0;
+        for (int i = 0; i < iterations; i++) {
+            path[size++] = 1;
+            path[size++] = 2;
+        }
+        path[size++] = 1;
+        path[size++] = 3;
+        return path;
+    }
+}
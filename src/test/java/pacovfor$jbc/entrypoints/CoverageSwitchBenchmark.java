@@ -0,0 +1,155 @@
+package pacovfor$jbc.entrypoints;
+
+import pacovfor$jbc.analysis.Instrumenter;
+import pacovfor$jbc.backend.asmadapters.ClassAdapter;
+import pacovfor$jbc.classloaders.ClassLoaderAdapter;
+import pacovfor$jbc.config.Config;
+import pacovfor$jbc.frontend.graphadapters.GraphAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Benchmark of methods instrumented with the coverage switch (see Config.coverageSwitch) while coverage is
+ * disabled, against the same methods uninstrumented.
+ * <p>
+ * The workload class is instrumented in process, with coverage disabled at startup, into a temporary
+ * directory that also gets the cfgs and, once coverage is enabled, the logs; its path is printed. The
+ * uninstrumented and the instrumented workload are measured one after the other, the latter while coverage
+ * is disabled, enabled and disabled again; nanoseconds per call of the hot method should be about the same
+ * uninstrumented and disabled.
+ * <p>
+ * Usage: CoverageSwitchBenchmark [calls per workload run (default 1000)].
+ */
+public class CoverageSwitchBenchmark {
+
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURED_MILLIS = 2000;
+
+    private static final String WORKLOAD_CLASS_NAME = Workload.class.getName();
+
+    // results are accumulated here so that the JIT can not eliminate the measured work
+    private static volatile long blackhole;
+
+    /**
+     * Calls a small method with a branch n times; every call runs the prologue of the instrumented method.
+     */
+    public static class Workload implements IntUnaryOperator {
+
+        @Override
+        public int applyAsInt(int n) {
+            int sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += step(i);
+            }
+            return sum;
+        }
+
+        private static int step(int i) {
+            return (i & 1) == 0 ? i >> 1 : 3 * i + 1;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, ReflectiveOperationException {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+
+        File benchmarkDir = Files.createTempDirectory("pacovfor-coverage-switch-benchmark").toFile();
+        Config.cfgsDir = benchmarkDir.getPath() + File.separator + "cfgs";
+        Config.logDir = benchmarkDir.getPath() + File.separator + "logs";
+        Config.coverageSwitch = true;
+        Config.coverageEnabled = false;
+        System.out.println("cfgs and logs in: " + benchmarkDir.getPath());
+
+        IntUnaryOperator uninstrumented = new Workload();
+        IntUnaryOperator instrumented = loadInstrumentedWorkload(benchmarkDir);
+
+        System.out.printf("%-26s %-12s %-10s%n", "workload", "ns/call", "ratio");
+        double nanosOfUninstrumented = bench(uninstrumented, calls);
+        System.out.printf("%-26s %-12.2f %-10.2f%n", "uninstrumented", nanosOfUninstrumented, 1.0d);
+        printBench("instrumented, disabled", instrumented, calls, nanosOfUninstrumented);
+        GraphAdapter.setCoverageEnabled(true);
+        printBench("instrumented, enabled", instrumented, calls, nanosOfUninstrumented);
+        GraphAdapter.setCoverageEnabled(false);
+        printBench("instrumented, disabled", instrumented, calls, nanosOfUninstrumented);
+    }
+
+    private static void printBench(String name, IntUnaryOperator workload, int calls, double nanosOfUninstrumented) {
+        double nanos = bench(workload, calls);
+        System.out.printf("%-26s %-12.2f %-10.2f%n", name, nanos, nanos / nanosOfUninstrumented);
+    }
+
+    /**
+     * Runs workload for MEASURED_MILLIS after a warmup and returns the nanoseconds per call of its hot method.
+     */
+    private static double bench(IntUnaryOperator workload, int calls) {
+        long sum = 0;
+        long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+        while (System.nanoTime() < warmupEnd) {
+            sum += workload.applyAsInt(calls);
+        }
+
+        long runs = 0;
+        long start = System.nanoTime();
+        long end = start + MEASURED_MILLIS * 1_000_000;
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            sum += workload.applyAsInt(calls);
+            runs++;
+        }
+
+        blackhole += sum;
+        return (now - start) * 1.0d / (runs * calls);
+    }
+
+    /**
+     * Instruments the workload class as Main does and defines the instrumented class in a class loader of
+     * its own, whose parent defines the runtime.
+     */
+    private static IntUnaryOperator loadInstrumentedWorkload(File benchmarkDir)
+            throws IOException, ReflectiveOperationException {
+        String classFile = WORKLOAD_CLASS_NAME.replace('.', '/') + ".class";
+        File classesDir = new File(benchmarkDir, "classes");
+        File workloadFile = new File(classesDir, classFile);
+        if (!workloadFile.getParentFile().mkdirs()) {
+            throw new IllegalStateException("directory " + workloadFile.getParent() + " could not be created");
+        }
+        try (InputStream in = CoverageSwitchBenchmark.class.getClassLoader().getResourceAsStream(classFile)) {
+            if (in == null) {
+                throw new IllegalStateException("class file " + classFile + " is not found");
+            }
+            Files.copy(in, workloadFile.toPath());
+        }
+
+        Config.checkIfFileExistsElseCreateFile(Config.cfgsDir);
+        ClassLoaderAdapter cla = new ClassLoaderAdapter(classesDir.getPath(),
+                new File(benchmarkDir, "instrumented").getPath(), Collections.emptyList());
+        ClassAdapter classAdapter = new ClassAdapter(cla.loadClassAsBytes(WORKLOAD_CLASS_NAME), cla);
+        Instrumenter.instrument(classAdapter);
+        byte[] instrumentedBytes = classAdapter.toByteArray();
+
+        ClassLoader loader = new ClassLoader(CoverageSwitchBenchmark.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (!name.equals(WORKLOAD_CLASS_NAME)) {
+                    return super.loadClass(name, resolve);
+                }
+
+                synchronized (getClassLoadingLock(name)) {
+                    Class<?> loaded = findLoadedClass(name);
+                    return loaded != null ? loaded : defineClass(name, instrumentedBytes, 0, instrumentedBytes.length);
+                }
+            }
+        };
+
+        try {
+            return (IntUnaryOperator) loader.loadClass(WORKLOAD_CLASS_NAME).getConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("instrumented workload could not be created", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package pacovfor$jbc.entrypoints;
+
+import pacovfor$jbc.graph.CsrGraph;
+import pacovfor$jbc.graph.DominatorTree;
+import pacovfor$jbc.graph.LoopNestingForest;
+import pacovfor$jbc.graph.StronglyConnectedComponents;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * Scaling benchmark of the graph algorithms on synthetic cfgs. A synthetic cfg is a chain of
+ * randomly chosen regions (if-else diamonds, loops, nested loops, switches, forward gotos and an
+ * occasional irreducible entry), so that it has the shape of a large method rather than of a
+ * random graph.
+ * <p>
+ * Usage: GraphAlgorithmsBenchmark [smallest node count (default 100000)] [number of sizes (default 4)].
+ * Each size doubles the previous one; the time per node + edge should stay roughly constant.
+ */
+public class GraphAlgorithmsBenchmark {
+
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    // results are accumulated here so that the JIT can not eliminate the measured work
+    private static volatile long blackhole;
+
+    public static void main(String[] args) {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int sizes = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        System.out.printf("%-12s %-12s %-22s %-12s %-14s%n", "nodes", "edges", "algorithm", "best ms",
+                "ns/(node+edge)");
+
+        for (int i = 0; i < sizes; i++, nodeCount *= 2) {
+            CsrGraph cfg = syntheticCfg(nodeCount, new Random(nodeCount));
+
+            bench(cfg, "dominators", () -> DominatorTree.dominatorsOf(cfg, 0).immediateDominator(1));
+            bench(cfg, "post-dominators", () -> DominatorTree.postDominatorsOf(cfg).immediateDominator(0));
+            bench(cfg, "tarjan-scc", () -> StronglyConnectedComponents.of(cfg).componentCount());
+            bench(cfg, "loop-nesting-forest", () -> LoopNestingForest.of(cfg, 0).loopCount());
+        }
+    }
+
+    private static void bench(CsrGraph cfg, String algorithm, IntSupplier run) {
+        long sink = 0;
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            sink += run.getAsInt();
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            sink += run.getAsInt();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        blackhole += sink;
+        System.out.printf("%-12d %-12d %-22s %-12.2f %-14.2f%n", cfg.nodeCount(), cfg.edgeCount(), algorithm,
+                best / 1e6, best * 1.0d / (cfg.nodeCount() + cfg.edgeCount()));
+    }
+
+    /**
+     * Generates a cfg with nodeCount nodes; node 0 is the entry and node nodeCount - 1 the exit.
+     */
+    static CsrGraph syntheticCfg(int nodeCount, Random random) {
+        EdgeList edges = new EdgeList(nodeCount * 2);
+        int current = 0;
+
+        while (current + 12 < nodeCount - 1) {
+            int kind = random.nextInt(6);
+            switch (kind) {
+                case 0: { // if-else diamond: current -> a | b -> join
+                    int a = current + 1, b = current + 2, join = current + 3;
+                    edges.add(current, a);
+                    edges.add(current, b);
+                    edges.add(a, join);
+                    edges.add(b, join);
+                    current = join;
+                    break;
+                }
+                case 1: { // while loop: current -> header -> body -> header, header -> after
+                    int header = current + 1, body = current + 2, after = current + 3;
+                    edges.add(current, header);
+                    edges.add(header, body);
+                    edges.add(body, header);
+                    edges.add(header, after);
+                    current = after;
+                    break;
+                }
+                case 2: { // nested loops with an early exit (break) from the inner loop
+                    int outer = current + 1, inner = current + 2, innerBody = current + 3, latch = current + 4;
+                    int after = current + 5;
+                    edges.add(current, outer);
+                    edges.add(outer, inner);
+                    edges.add(inner, innerBody);
+                    edges.add(innerBody, inner);
+                    edges.add(innerBody, after);
+                    edges.add(inner, latch);
+                    edges.add(latch, outer);
+                    edges.add(outer, after);
+                    current = after;
+                    break;
+                }
+                case 3: { // switch with 8 cases falling into a join
+                    int join = current + 9;
+                    for (int c = 1; c <= 8; c++) {
+                        edges.add(current, current + c);
+                        edges.add(current + c, join);
+                    }
+                    current = join;
+                    break;
+                }
+                case 4: { // forward goto over a few straight-line nodes
+                    int target = current + 4;
+                    for (int v = current; v < target; v++) {
+                        edges.add(v, v + 1);
+                    }
+                    edges.add(current, target);
+                    current = target;
+                    break;
+                }
+                default: { // irreducible loop: two entries into the cycle a <-> b
+                    int a = current + 1, b = current + 2, after = current + 3;
+                    edges.add(current, a);
+                    edges.add(current, b);
+                    edges.add(a, b);
+                    edges.add(b, a);
+                    edges.add(b, after);
+                    current = after;
+                    break;
+                }
+            }
+        }
+
+        // straight line to the exit
+        for (int v = current; v < nodeCount - 1; v++) {
+            edges.add(v, v + 1);
+        }
+
+        return new CsrGraph(nodeCount, edges.sources(), edges.destinations());
+    }
+
+    private static class EdgeList {
+        private int[] sources;
+        private int[] destinations;
+        private int size;
+
+        EdgeList(int capacity) {
+            this.sources = new int[capacity];
+            this.destinations = new int[capacity];
+        }
+
+        void add(int source, int destination) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                destinations = Arrays.copyOf(destinations, size * 2);
+            }
+            sources[size] = source;
+            destinations[size] = destination;
+            size++;
+        }
+
+        int[] sources() {
+            return Arrays.copyOf(sources, size);
+        }
+
+        int[] destinations() {
+            return Arrays.copyOf(destinations, size);
+        }
+    }
+}
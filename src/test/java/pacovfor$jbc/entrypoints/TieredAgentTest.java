@@ -0,0 +1,147 @@
+package pacovfor$jbc.entrypoints;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.V11;
+
+/**
+ * Runs TieredAgentFixture in a JVM of its own with the tiered agent and checks the coverage it reports. The
+ * agent jar only has the manifest; the agent is loaded from the class path of the tests.
+ */
+public class TieredAgentTest {
+
+    private static final long TIMEOUT_SECONDS = 60;
+    // more instructions than a method whose original body is copied may have (see MethodAdapter)
+    private static final int INSTRUCTIONS_OF_LARGE_METHOD = 9000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void escalatedMethodsAreCoveredOnceTheirClassIsRetransformed() throws IOException, InterruptedException {
+        File logDir = runFixture();
+
+        List<String> log = Files.readAllLines(new File(logDir, "logs.txt").toPath());
+        assertTrue(log.toString(), log.contains("escalated-methods: 4"));
+        assertTrue(log.toString(), log.contains("loaded-cfgs: 3"));
+
+        // the invocation of main that escalated it is not recorded
+        List<String> main = methodLog(logDir, log, "TieredAgentFixture/main([Ljava.lang.String;)V");
+        assertTrue(main.toString(), main.contains("METHOD_ENTERED: 1"));
+        assertTrue(main.toString(), main.contains("NODES_COVERED: 0"));
+
+        List<String> hot = methodLog(logDir, log, "TieredAgentFixture/hot(I)I");
+        assertTrue(hot.toString(), hot.contains("METHOD_ENTERED: 1"));
+        assertEquals(hot.toString(), value(hot, "TOTAL_NODES"), value(hot, "NODES_COVERED"));
+        assertEquals(hot.toString(), value(hot, "TOTAL_EDGES"), value(hot, "EDGES_COVERED"));
+
+        assertTrue(log.toString(), log.stream().noneMatch(line -> line.endsWith("TieredAgentFixture/never()I")));
+    }
+
+    @Test
+    public void escalatedMethodsThatAreNeverBoundAreReportedAsEntered() throws IOException, InterruptedException {
+        File logDir = runFixture();
+
+        // the method of TieredAgentLarge is too large to be instrumented in tiers, so it is never bound
+        List<String> log = Files.readAllLines(new File(logDir, "logs.txt").toPath());
+        int unbound = log.indexOf("unbound-escalated-methods: 1");
+        assertTrue(log.toString(), unbound >= 0);
+        assertEquals("TieredAgentLarge" + File.separator + "0: entered, coverage unknown", log.get(unbound + 1));
+        assertTrue(log.toString(), log.stream().noneMatch(line -> line.startsWith("TieredAgentLarge" +
+                File.separator + "0: TieredAgentLarge")));
+    }
+
+    /**
+     * Runs TieredAgentFixture with the agent and returns the directory of its logs.
+     */
+    private File runFixture() throws IOException, InterruptedException {
+        File classesDir = folder.newFolder("classes");
+        Files.write(new File(classesDir, "TieredAgentLarge.class").toPath(), largeClass());
+
+        File agentJar = new File(folder.getRoot(), "agent.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Premain-Class", TieredAgent.class.getName());
+        manifest.getMainAttributes().putValue("Can-Retransform-Classes", "true");
+        new JarOutputStream(new FileOutputStream(agentJar), manifest).close();
+
+        File cfgsDir = new File(folder.getRoot(), "cfgs");
+        File logDir = new File(folder.getRoot(), "logs");
+        List<String> command = new ArrayList<>(Arrays.asList(
+                new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath(),
+                "-javaagent:" + agentJar.getPath(),
+                "-DcfgsDir=" + cfgsDir.getPath(),
+                "-DlogDir=" + logDir.getPath(),
+                "-cp", classesDir.getPath() + File.pathSeparator + System.getProperty("java.class.path"),
+                "TieredAgentFixture", "TieredAgentLarge"));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertTrue(output, process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(output, 0, process.exitValue());
+        return logDir;
+    }
+
+    /**
+     * Returns the log of the method whose full name is fullMethodName, as listed in the loaded cfgs of log.
+     */
+    private static List<String> methodLog(File logDir, List<String> log, String fullMethodName) throws IOException {
+        String relativeFilePath = log.stream().filter(line -> line.endsWith(": " + fullMethodName)).findFirst().
+                map(line -> line.substring(0, line.indexOf(": "))).
+                orElseThrow(() -> new AssertionError(fullMethodName + " is not loaded: " + log));
+        return Files.readAllLines(new File(logDir, relativeFilePath).toPath());
+    }
+
+    private static String value(List<String> methodLog, String key) {
+        return methodLog.stream().filter(line -> line.startsWith(key + ": ")).findFirst().
+                map(line -> line.substring(key.length() + 2)).orElse(null);
+    }
+
+    /**
+     * Returns the class file of TieredAgentLarge, whose only method is
+     * static int run() { int i = 0; i++; ... i++; return i; }
+     */
+    private static byte[] largeClass() {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(V11, ACC_PUBLIC, "TieredAgentLarge", null, "java/lang/Object", null);
+
+        MethodVisitor run = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, "run", "()I", null, null);
+        run.visitCode();
+        run.visitInsn(ICONST_0);
+        run.visitVarInsn(ISTORE, 0);
+        for (int i = 0; i < INSTRUCTIONS_OF_LARGE_METHOD; i++) {
+            run.visitIincInsn(0, 1);
+        }
+        run.visitVarInsn(ILOAD, 0);
+        run.visitInsn(IRETURN);
+        run.visitMaxs(0, 0);
+        run.visitEnd();
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+}
@@ -0,0 +1,224 @@
+package pacovfor$jbc.frontend.graphadapters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pacovfor$jbc.analysis.FlowType;
+import pacovfor$jbc.analysis.graphtypes.MethodCoverage;
+import pacovfor$jbc.analysis.graphtypes.ProbePositionIDCfg;
+import pacovfor$jbc.analysis.nodetypes.ProbePositionID;
+import pacovfor$jbc.config.Backpressure;
+import pacovfor$jbc.config.Config;
+import pacovfor$jbc.graph.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Paths are published for a method whose cfg is a fan 0 -> 1 .. n, so that path i (0 -> i) covers node i and
+ * the number of covered nodes tells how many distinct paths were covered.
+ */
+public class CoverQueueTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Rule
+    public TemporaryFolder cfgsDir = new TemporaryFolder();
+    private String savedCfgsDir;
+
+    @Before
+    public void setCfgsDir() {
+        savedCfgsDir = Config.cfgsDir;
+        Config.cfgsDir = cfgsDir.getRoot().getPath();
+    }
+
+    @After
+    public void restoreCfgsDir() {
+        Config.cfgsDir = savedCfgsDir;
+    }
+
+    @Test
+    public void offerAndPollWrapAround() {
+        MethodCoverage coverage = fan(40);
+        CoverQueue queue = new CoverQueue(4, err());
+
+        int next = 1;
+        for (int lap = 0; lap < 10; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(coverage, path(next++)));
+            }
+            assertFalse(queue.offer(coverage, path(next)));
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.poll());
+            }
+            assertFalse(queue.poll());
+            assertEquals(next, coveredNodes(coverage));
+        }
+    }
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwoOfAtLeastTwo() {
+        MethodCoverage coverage = fan(8);
+        assertEquals(2, offersUntilFull(new CoverQueue(1, err()), coverage));
+        assertEquals(4, offersUntilFull(new CoverQueue(3, err()), coverage));
+        assertEquals(8, offersUntilFull(new CoverQueue(8, err()), coverage));
+    }
+
+    @Test
+    public void dropCountsThePathsOfAFullQueue() {
+        MethodCoverage coverage = fan(10);
+        CoverQueue queue = new CoverQueue(4, err());
+
+        for (int i = 1; i <= 10; i++) {
+            queue.publish(coverage, path(i), Backpressure.DROP);
+        }
+        assertEquals(6, queue.getDroppedPaths());
+        assertEquals(0, coveredNodes(coverage));
+
+        queue.drain();
+        assertEquals(5, coveredNodes(coverage));
+    }
+
+    @Test
+    public void inlineCoversThePathsOfAFullQueueOnTheCallingThread() {
+        MethodCoverage coverage = fan(10);
+        CoverQueue queue = new CoverQueue(4, err());
+
+        for (int i = 1; i <= 10; i++) {
+            queue.publish(coverage, path(i), Backpressure.INLINE);
+        }
+        assertEquals(0, queue.getDroppedPaths());
+        assertEquals(7, coveredNodes(coverage));
+
+        queue.drain();
+        assertEquals(11, coveredNodes(coverage));
+    }
+
+    @Test
+    public void blockWaitsForACoverThread() throws InterruptedException {
+        MethodCoverage coverage = fan(10);
+        CoverQueue queue = new CoverQueue(2, err());
+
+        // no cover thread runs yet, so the producer blocks on the third path until one is started
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= 10; i++) {
+                queue.publish(coverage, path(i), Backpressure.BLOCK);
+            }
+        });
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        queue.start(1);
+        producer.join(TIMEOUT_MILLIS);
+        assertFalse(producer.isAlive());
+
+        queue.drain();
+        assertEquals(0, queue.getDroppedPaths());
+        assertEquals(11, coveredNodes(coverage));
+    }
+
+    @Test
+    public void blockLosesNoPathOfManyProducers() throws InterruptedException {
+        int producers = 4;
+        int pathsPerProducer = 20_000;
+        MethodCoverage coverage = fan(producers * pathsPerProducer);
+        CoverQueue queue = new CoverQueue(4, err());
+        queue.start(2);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int first = 1 + p * pathsPerProducer;
+            Thread producer = new Thread(() -> {
+                for (int i = first; i < first + pathsPerProducer; i++) {
+                    queue.publish(coverage, path(i), Backpressure.BLOCK);
+                }
+            });
+            threads.add(producer);
+            producer.start();
+        }
+        for (Thread producer : threads) {
+            producer.join(TIMEOUT_MILLIS);
+            assertFalse(producer.isAlive());
+        }
+
+        queue.drain();
+        assertEquals(0, queue.getDroppedPaths());
+        assertEquals(1 + producers * pathsPerProducer, coveredNodes(coverage));
+    }
+
+    @Test
+    public void drainCoversEveryPublishedPathAndLaterPathsInline() {
+        MethodCoverage coverage = fan(10);
+        CoverQueue queue = new CoverQueue(16, err());
+        queue.start(1);
+
+        for (int i = 1; i <= 8; i++) {
+            queue.publish(coverage, path(i), Backpressure.BLOCK);
+        }
+        queue.drain();
+        assertEquals(9, coveredNodes(coverage));
+        assertFalse(queue.poll());
+
+        queue.publish(coverage, path(9), Backpressure.DROP);
+        queue.publish(coverage, path(10), Backpressure.BLOCK);
+        assertEquals(11, coveredNodes(coverage));
+    }
+
+    private static int offersUntilFull(CoverQueue queue, MethodCoverage coverage) {
+        int offers = 0;
+        while (queue.offer(coverage, path(1))) {
+            offers++;
+        }
+        return offers;
+    }
+
+    /**
+     * Returns the coverage of a method whose cfg is 0 -> 1 .. n, written to and read from the cfgs directory
+     * as instrumented methods are.
+     */
+    private static MethodCoverage fan(int n) {
+        String methodFile = "test.Fan" + File.separator + n;
+        ProbePositionIDCfg shape = new ProbePositionIDCfg(methodFile, "test.Fan/fan()V");
+        Node<ProbePositionID> root = new Node<>(new ProbePositionID(0));
+        shape.addNode(root);
+        for (int id = 1; id <= n; id++) {
+            Node<ProbePositionID> node = new Node<>(new ProbePositionID(id));
+            shape.addNode(node);
+            shape.addEdge(root, node, FlowType.NORMAL_FLOW);
+        }
+        shape.setRoot(root);
+        shape.freeze();
+        shape.printToFile();
+
+        return MethodCoverage.readFromFile(methodFile, shapeFile -> {
+            ProbePositionIDCfg readShape = ProbePositionIDCfg.readCfgFromFile(shapeFile);
+            readShape.updateTestRequirements();
+            return readShape;
+        });
+    }
+
+    private static Path path(int leaf) {
+        Path path = new Path();
+        path.addProbePositionID(0);
+        path.addProbePositionID(leaf);
+        return path;
+    }
+
+    private static int coveredNodes(MethodCoverage coverage) {
+        return coverage.getCoverageInfoKeyPairs().get(ProbePositionIDCfg.NODES_COVERED);
+    }
+
+    private static PrintStream err() {
+        return new PrintStream(new ByteArrayOutputStream());
+    }
+}
@@ -0,0 +1,177 @@
+package pacovfor$jbc.frontend.graphadapters;
+
+import org.junit.Test;
+import pacovfor$jbc.analysis.BallLarusNumbering;
+import pacovfor$jbc.analysis.graphtypes.Degradation;
+import pacovfor$jbc.analysis.graphtypes.MethodCoverage;
+import pacovfor$jbc.analysis.graphtypes.OverheadMeter;
+import pacovfor$jbc.analysis.graphtypes.ProbePositionIDCfg;
+import pacovfor$jbc.analysis.nodetypes.ProbePositionID;
+import pacovfor$jbc.config.CoverageLevel;
+import pacovfor$jbc.graph.Node;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The governor is checked directly with a budget of BUDGET_NANOS per interval, and every method reports the
+ * cost its fake meter is given.
+ */
+public class OverheadGovernorTest {
+
+    private static final long BUDGET_NANOS = 1_000_000;
+    // the budget is a fraction of the time of all processors, so an interval of BUDGET_NANOS takes this one
+    private static final double BUDGET = 1.0 / Runtime.getRuntime().availableProcessors();
+
+    private final List<MethodCoverage> methods = new ArrayList<>();
+    private final OverheadGovernor governor = new OverheadGovernor(BUDGET, 1000, methods,
+            new PrintStream(new ByteArrayOutputStream()));
+
+    @Test
+    public void nothingIsDegradedUnderTheBudget() {
+        Governed m1 = method(CoverageLevel.EDGE_PAIR, false);
+        Governed m2 = method(CoverageLevel.EDGE_PAIR, false);
+
+        m1.meter.spend(300_000, 10);
+        m2.meter.spend(400_000, 20);
+        governor.check(BUDGET_NANOS);
+
+        assertEquals(Degradation.NONE, m1.getDegradation());
+        assertEquals(Degradation.NONE, m2.getDegradation());
+        assertEquals(700_000, governor.getCostNanosOfLastInterval());
+        assertEquals(30, governor.getCallsOfLastInterval());
+        assertEquals(0, governor.getDegradations());
+    }
+
+    @Test
+    public void theCostliestMethodsAreDegradedFirst() {
+        Governed cheap = method(CoverageLevel.EDGE_PAIR, false);
+        Governed costliest = method(CoverageLevel.EDGE_PAIR, false);
+        Governed costly = method(CoverageLevel.EDGE_PAIR, false);
+
+        // 500 us over the budget: degrading the costliest method is assumed to save its 900 us
+        cheap.meter.spend(100_000, 1);
+        costliest.meter.spend(900_000, 1);
+        costly.meter.spend(500_000, 1);
+        governor.check(BUDGET_NANOS);
+
+        assertEquals(Degradation.NONE, cheap.getDegradation());
+        assertEquals(Degradation.NODES_ONLY, costliest.getDegradation());
+        assertEquals(Degradation.NONE, costly.getDegradation());
+
+        // 1300 us over the budget: the costliest saves 1200 us, so the next costliest is degraded too
+        cheap.meter.spend(300_000, 1);
+        costliest.meter.spend(1_200_000, 1);
+        costly.meter.spend(800_000, 1);
+        governor.check(BUDGET_NANOS);
+
+        assertEquals(Degradation.NONE, cheap.getDegradation());
+        assertEquals(Degradation.SAMPLED, costliest.getDegradation());
+        assertEquals(Degradation.NODES_ONLY, costly.getDegradation());
+        assertEquals(3, governor.getDegradations());
+    }
+
+    @Test
+    public void aMethodIsDegradedOneStepPerCheck() {
+        Governed method = method(CoverageLevel.EDGE_PAIR, false);
+        List<Degradation> degradations = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            method.meter.spend(2 * BUDGET_NANOS, 1);
+            governor.check(BUDGET_NANOS);
+            degradations.add(method.getDegradation());
+        }
+
+        assertEquals(List.of(Degradation.NODES_ONLY, Degradation.SAMPLED, Degradation.OFF, Degradation.OFF),
+                degradations);
+        assertEquals(3, governor.getDegradations());
+        assertEquals(Collections.singletonMap(method.getRelativeFilePath(), "off"), governor.getDegradedMethods());
+
+        // only the cost since the last check counts
+        governor.check(BUDGET_NANOS);
+        assertEquals(0, governor.getCostNanosOfLastInterval());
+    }
+
+    @Test
+    public void methodsThatCountPathsOrCoverOnlyNodesAreSampledRightAway() {
+        Governed pathProfiled = method(CoverageLevel.EDGE_PAIR, true);
+        Governed nodes = method(CoverageLevel.NODE, false);
+
+        pathProfiled.meter.spend(2 * BUDGET_NANOS, 1);
+        nodes.meter.spend(2 * BUDGET_NANOS, 1);
+        governor.check(BUDGET_NANOS);
+        assertEquals(Degradation.SAMPLED, pathProfiled.getDegradation());
+        assertEquals(Degradation.SAMPLED, nodes.getDegradation());
+
+        pathProfiled.meter.spend(2 * BUDGET_NANOS, 1);
+        nodes.meter.spend(2 * BUDGET_NANOS, 1);
+        governor.check(BUDGET_NANOS);
+        assertEquals(Degradation.OFF, pathProfiled.getDegradation());
+        assertEquals(Degradation.OFF, nodes.getDegradation());
+    }
+
+    private Governed method(CoverageLevel coverageLevel, boolean pathProfiling) {
+        String filePath = "test.Governed/" + methods.size();
+        ProbePositionIDCfg shape = new ProbePositionIDCfg(filePath, "test.Governed/m" + methods.size() + "()V");
+        Node<ProbePositionID> root = new Node<>(new ProbePositionID(0));
+        shape.addNode(root);
+        shape.setRoot(root);
+        shape.setCoverageLevel(coverageLevel);
+        if (pathProfiling) {
+            shape.setBallLarusNumbering(BallLarusNumbering.number(0, Collections.emptyList(),
+                    Collections.emptySet()));
+        }
+        shape.freeze();
+        shape.updateTestRequirements();
+
+        Governed method = new Governed(filePath, shape);
+        methods.add(method);
+        return method;
+    }
+
+    /**
+     * The coverage of a method whose cost is given to its meter by the test.
+     */
+    private static class Governed extends MethodCoverage {
+
+        final FakeMeter meter = new FakeMeter();
+
+        Governed(String filePath, ProbePositionIDCfg shape) {
+            super(filePath, shape.getFullMethodName(), shape, null, 1, false);
+        }
+
+        @Override
+        public OverheadMeter getOverheadMeter() {
+            return meter;
+        }
+    }
+
+    private static class FakeMeter extends OverheadMeter {
+
+        private long nanos;
+        private long calls;
+
+        FakeMeter() {
+            super(1);
+        }
+
+        void spend(long nanos, long calls) {
+            this.nanos += nanos;
+            this.calls += calls;
+        }
+
+        @Override
+        public long getCalls() {
+            return calls;
+        }
+
+        @Override
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package pacovfor$jbc.graph;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static pacovfor$jbc.graph.Graphs.graph;
+import static pacovfor$jbc.graph.Graphs.randomGraph;
+
+public class CsrGraphTest {
+
+    @Test
+    public void edgeBetweenFindsFirstEdgeOfSwitch() {
+        // 0 -> 1 .. 20 in reverse order, with a second edge 0 -> 7, as in a switch with two cases jumping to 7
+        int[] edges = new int[2 * 21];
+        for (int i = 0; i < 20; i++) {
+            edges[2 * i + 1] = 20 - i;
+        }
+        edges[2 * 20 + 1] = 7;
+        CsrGraph graph = graph(21, edges);
+
+        assertEquals(13, graph.edgeBetween(0, 7));
+        assertEquals(0, graph.edgeBetween(0, 20));
+        assertEquals(-1, graph.edgeBetween(0, 0));
+        assertEquals(-1, graph.edgeBetween(7, 0));
+    }
+
+    @Test
+    public void randomGraphs() {
+        Random random = new Random(13);
+        for (int i = 0; i < 200; i++) {
+            int n = 1 + random.nextInt(40);
+            CsrGraph graph = randomGraph(random, n, random.nextDouble());
+            for (int v = 0; v < n; v++) {
+                for (int w = 0; w < n; w++) {
+                    assertEquals(v + " -> " + w, firstEdge(graph, v, w), graph.edgeBetween(v, w));
+                }
+            }
+
+            for (int e = 0; e < graph.edgeCount(); e++) {
+                int destination = graph.edgeDestination(e);
+                assertEquals(e, graph.predecessorEdgeAt(graph.predecessorsStart(destination) + graph.edgeInSlot(e)));
+            }
+        }
+    }
+
+    private static int firstEdge(CsrGraph graph, int from, int to) {
+        for (int e = graph.successorsStart(from); e < graph.successorsEnd(from); e++) {
+            if (graph.successorAt(e) == to) {
+                return e;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,149 @@
+package pacovfor$jbc.graph;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static pacovfor$jbc.graph.Graphs.graph;
+import static pacovfor$jbc.graph.Graphs.immediateDominators;
+import static pacovfor$jbc.graph.Graphs.naiveDominators;
+import static pacovfor$jbc.graph.Graphs.randomGraph;
+import static pacovfor$jbc.graph.Graphs.reversedWithExit;
+
+public class DominatorTreeTest {
+
+    @Test
+    public void diamond() {
+        // 0 -> 1 -> 3, 0 -> 2 -> 3
+        CsrGraph graph = graph(4, 0, 1, 0, 2, 1, 3, 2, 3);
+        DominatorTree dominators = DominatorTree.dominatorsOf(graph, 0);
+        assertEquals(-1, dominators.immediateDominator(0));
+        assertEquals(0, dominators.immediateDominator(1));
+        assertEquals(0, dominators.immediateDominator(2));
+        assertEquals(0, dominators.immediateDominator(3));
+
+        DominatorTree postDominators = DominatorTree.postDominatorsOf(graph);
+        assertEquals(4, postDominators.getEntry());
+        assertEquals(3, postDominators.immediateDominator(0));
+        assertEquals(3, postDominators.immediateDominator(1));
+        assertEquals(3, postDominators.immediateDominator(2));
+        assertEquals(4, postDominators.immediateDominator(3));
+    }
+
+    @Test
+    public void irreducibleLoop() {
+        // 0 -> 1, 0 -> 2, 1 <-> 2, 2 -> 3: neither 1 nor 2 dominates the other
+        CsrGraph graph = graph(4, 0, 1, 0, 2, 1, 2, 2, 1, 2, 3);
+        assertMatchesOracle(graph, 0);
+        DominatorTree dominators = DominatorTree.dominatorsOf(graph, 0);
+        assertEquals(0, dominators.immediateDominator(1));
+        assertEquals(0, dominators.immediateDominator(2));
+        assertEquals(2, dominators.immediateDominator(3));
+    }
+
+    @Test
+    public void unreachableNodes() {
+        // 3 -> 1 is an edge from an unreachable node, 4 is isolated
+        CsrGraph graph = graph(5, 0, 1, 1, 2, 3, 1);
+        DominatorTree dominators = DominatorTree.dominatorsOf(graph, 0);
+        assertFalse(dominators.isReachable(3));
+        assertFalse(dominators.isReachable(4));
+        assertEquals(-1, dominators.immediateDominator(3));
+        assertEquals(0, dominators.immediateDominator(1));
+        assertFalse(dominators.dominates(3, 1));
+        assertFalse(dominators.dominates(3, 3));
+        assertMatchesOracle(graph, 0);
+    }
+
+    @Test
+    public void postDominatorsWithSeveralExits() {
+        // 0 -> 1 -> 3 (exit), 0 -> 2 -> 4 (exit), 2 -> 1: only the virtual exit post-dominates 0
+        CsrGraph graph = graph(5, 0, 1, 0, 2, 1, 3, 2, 4, 2, 1);
+        DominatorTree postDominators = DominatorTree.postDominatorsOf(graph);
+        assertEquals(5, postDominators.immediateDominator(0));
+        assertEquals(3, postDominators.immediateDominator(1));
+        assertEquals(5, postDominators.immediateDominator(2));
+        assertEquals(5, postDominators.immediateDominator(3));
+        assertEquals(5, postDominators.immediateDominator(4));
+        assertMatchesOracle(graph, 0);
+    }
+
+    @Test
+    public void postDominatorsWithInfiniteLoop() {
+        // 0 -> 1 -> 2 (exit), 0 -> 3 <-> 4: 3 and 4 can not reach an exit
+        CsrGraph graph = graph(5, 0, 1, 1, 2, 0, 3, 3, 4, 4, 3);
+        DominatorTree postDominators = DominatorTree.postDominatorsOf(graph);
+        assertFalse(postDominators.isReachable(3));
+        assertFalse(postDominators.isReachable(4));
+        assertTrue(postDominators.isReachable(0));
+        assertEquals(1, postDominators.immediateDominator(0));
+        assertMatchesOracle(graph, 0);
+    }
+
+    @Test
+    public void postDominatorsWithoutExit() {
+        CsrGraph graph = graph(2, 0, 1, 1, 0);
+        DominatorTree postDominators = DominatorTree.postDominatorsOf(graph);
+        assertFalse(postDominators.isReachable(0));
+        assertFalse(postDominators.isReachable(1));
+        assertTrue(postDominators.isReachable(2));
+    }
+
+    @Test
+    public void longChain() {
+        int n = 100_000;
+        int[] edges = new int[2 * (n - 1)];
+        for (int v = 0; v < n - 1; v++) {
+            edges[2 * v] = v;
+            edges[2 * v + 1] = v + 1;
+        }
+        CsrGraph graph = graph(n, edges);
+        DominatorTree dominators = DominatorTree.dominatorsOf(graph, 0);
+        DominatorTree postDominators = DominatorTree.postDominatorsOf(graph);
+        for (int v = 1; v < n; v++) {
+            assertEquals(v - 1, dominators.immediateDominator(v));
+            assertEquals(v, postDominators.immediateDominator(v - 1));
+        }
+        assertTrue(dominators.dominates(0, n - 1));
+        assertTrue(postDominators.dominates(n - 1, 0));
+    }
+
+    @Test
+    public void randomGraphs() {
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            int n = 1 + random.nextInt(25);
+            CsrGraph graph = randomGraph(random, n, random.nextDouble() * 4.0d / n);
+            assertMatchesOracle(graph, random.nextInt(n));
+        }
+    }
+
+    /**
+     * Compares the dominator tree from entry and the post-dominator tree of graph with the naive oracle.
+     */
+    private static void assertMatchesOracle(CsrGraph graph, int entry) {
+        assertTreeMatches(DominatorTree.dominatorsOf(graph, entry), naiveDominators(graph, entry), graph.nodeCount());
+
+        CsrGraph reversed = reversedWithExit(graph);
+        assertTreeMatches(DominatorTree.postDominatorsOf(graph), naiveDominators(reversed, graph.nodeCount()),
+                graph.nodeCount() + 1);
+    }
+
+    private static void assertTreeMatches(DominatorTree tree, BitSet[] expected, int nodeCount) {
+        int[] expectedIdom = immediateDominators(expected);
+        for (int v = 0; v < nodeCount; v++) {
+            assertEquals("reachability of " + v, expected[v] != null, tree.isReachable(v));
+            if (v != tree.getEntry()) {
+                assertEquals("immediate dominator of " + v, expectedIdom[v], tree.immediateDominator(v));
+            }
+            for (int w = 0; w < nodeCount; w++) {
+                boolean dominates = expected[w] != null && expected[w].get(v);
+                assertEquals(v + " dominates " + w, dominates, tree.dominates(v, w));
+            }
+        }
+    }
+}
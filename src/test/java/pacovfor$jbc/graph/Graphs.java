@@ -0,0 +1,152 @@
+package pacovfor$jbc.graph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Graphs and naive oracles shared by the tests of the graph algorithms.
+ */
+final class Graphs {
+
+    private Graphs() {
+    }
+
+    /**
+     * Creates a graph from pairs of source and destination, e.g., graph(3, 0, 1, 1, 2) is 0 -> 1 -> 2.
+     */
+    static CsrGraph graph(int nodeCount, int... edges) {
+        int[] sources = new int[edges.length / 2];
+        int[] destinations = new int[edges.length / 2];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = edges[2 * i];
+            destinations[i] = edges[2 * i + 1];
+        }
+        return new CsrGraph(nodeCount, sources, destinations);
+    }
+
+    /**
+     * Creates a random graph where every ordered pair of nodes, including self-loops, is an edge with
+     * probability density.
+     */
+    static CsrGraph randomGraph(Random random, int nodeCount, double density) {
+        List<Integer> edges = new ArrayList<>();
+        for (int v = 0; v < nodeCount; v++) {
+            for (int w = 0; w < nodeCount; w++) {
+                if (random.nextDouble() < density) {
+                    edges.add(v);
+                    edges.add(w);
+                }
+            }
+        }
+        return graph(nodeCount, edges.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Returns the graph with an additional node (index nodeCount()) every node without successors has an
+     * edge to, with all edges reversed.
+     */
+    static CsrGraph reversedWithExit(CsrGraph graph) {
+        List<Integer> edges = new ArrayList<>();
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            for (int e = graph.successorsStart(v); e < graph.successorsEnd(v); e++) {
+                edges.add(graph.successorAt(e));
+                edges.add(v);
+            }
+            if (graph.outDegree(v) == 0) {
+                edges.add(graph.nodeCount());
+                edges.add(v);
+            }
+        }
+        return graph(graph.nodeCount() + 1, edges.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Returns the nodes reachable from node within allowed (node itself only if it is on a cycle in allowed,
+     * or with reflexive set to true).
+     */
+    static BitSet reachable(CsrGraph graph, int node, BitSet allowed, boolean reflexive) {
+        BitSet visited = new BitSet();
+        List<Integer> worklist = new ArrayList<>();
+        worklist.add(node);
+        while (!worklist.isEmpty()) {
+            int v = worklist.remove(worklist.size() - 1);
+            for (int e = graph.successorsStart(v); e < graph.successorsEnd(v); e++) {
+                int w = graph.successorAt(e);
+                if (allowed.get(w) && !visited.get(w)) {
+                    visited.set(w);
+                    worklist.add(w);
+                }
+            }
+        }
+        if (reflexive) {
+            visited.set(node);
+        }
+        return visited;
+    }
+
+    static BitSet allNodes(CsrGraph graph) {
+        BitSet all = new BitSet();
+        all.set(0, graph.nodeCount());
+        return all;
+    }
+
+    /**
+     * Computes the dominators of every node by iterating Dom(v) = {v} + intersection of Dom(p) over the
+     * reachable predecessors p of v to a fixed point. Unreachable nodes get null.
+     */
+    static BitSet[] naiveDominators(CsrGraph graph, int entry) {
+        int n = graph.nodeCount();
+        BitSet reachable = reachable(graph, entry, allNodes(graph), true);
+        BitSet[] dominators = new BitSet[n];
+        for (int v = reachable.nextSetBit(0); v >= 0; v = reachable.nextSetBit(v + 1)) {
+            dominators[v] = (BitSet) reachable.clone();
+        }
+        dominators[entry] = new BitSet();
+        dominators[entry].set(entry);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int v = reachable.nextSetBit(0); v >= 0; v = reachable.nextSetBit(v + 1)) {
+                if (v == entry) {
+                    continue;
+                }
+                BitSet next = (BitSet) reachable.clone();
+                for (int e = graph.predecessorsStart(v); e < graph.predecessorsEnd(v); e++) {
+                    int p = graph.predecessorAt(e);
+                    if (reachable.get(p)) {
+                        next.and(dominators[p]);
+                    }
+                }
+                next.set(v);
+                if (!next.equals(dominators[v])) {
+                    dominators[v] = next;
+                    changed = true;
+                }
+            }
+        }
+        return dominators;
+    }
+
+    /**
+     * Returns the immediate dominator of every node from its dominators, i.e., the strict dominator with
+     * the most dominators; -1 for the entry and unreachable nodes.
+     */
+    static int[] immediateDominators(BitSet[] dominators) {
+        int[] idom = new int[dominators.length];
+        for (int v = 0; v < dominators.length; v++) {
+            idom[v] = -1;
+            if (dominators[v] == null) {
+                continue;
+            }
+            for (int d = dominators[v].nextSetBit(0); d >= 0; d = dominators[v].nextSetBit(d + 1)) {
+                if (d != v && (idom[v] < 0 || dominators[d].cardinality() > dominators[idom[v]].cardinality())) {
+                    idom[v] = d;
+                }
+            }
+        }
+        return idom;
+    }
+}
@@ -0,0 +1,190 @@
+package pacovfor$jbc.graph;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static pacovfor$jbc.graph.Graphs.allNodes;
+import static pacovfor$jbc.graph.Graphs.graph;
+import static pacovfor$jbc.graph.Graphs.randomGraph;
+import static pacovfor$jbc.graph.Graphs.reachable;
+
+public class LoopNestingForestTest {
+
+    @Test
+    public void nestedLoops() {
+        // 0 -> 1 -> 2 -> 3 -> 2, 3 -> 1, 3 -> 4
+        CsrGraph graph = graph(5, 0, 1, 1, 2, 2, 3, 3, 2, 3, 1, 3, 4);
+        LoopNestingForest forest = LoopNestingForest.of(graph, 0);
+        assertEquals(2, forest.loopCount());
+        int outer = forest.loopOf(1);
+        int inner = forest.loopOf(3);
+        assertEquals(1, forest.headerOf(outer));
+        assertEquals(2, forest.headerOf(inner));
+        assertEquals(outer, forest.parentOf(inner));
+        assertEquals(-1, forest.parentOf(outer));
+        assertEquals(2, forest.depthOf(3));
+        assertEquals(0, forest.depthOf(4));
+        assertFalse(forest.isIrreducible(outer));
+        assertMatchesOracle(graph, 0);
+    }
+
+    @Test
+    public void irreducibleLoop() {
+        // 0 -> 1, 0 -> 2, 1 <-> 2: the loop is entered at 1 and at 2
+        CsrGraph graph = graph(3, 0, 1, 0, 2, 1, 2, 2, 1);
+        LoopNestingForest forest = LoopNestingForest.of(graph, 0);
+        assertEquals(1, forest.loopCount());
+        assertTrue(forest.isIrreducible(0));
+        assertEquals(1, forest.headerOf(0));
+        assertMatchesOracle(graph, 0);
+    }
+
+    @Test
+    public void selfLoopAndUnreachableLoop() {
+        // 1 has a self-loop; 3 <-> 4 is unreachable from 0
+        CsrGraph graph = graph(5, 0, 1, 1, 1, 1, 2, 3, 4, 4, 3);
+        LoopNestingForest forest = LoopNestingForest.of(graph, 0);
+        assertEquals(2, forest.loopCount());
+        assertEquals(1, forest.headerOf(forest.loopOf(1)));
+        assertEquals(-1, forest.loopOf(0));
+        assertMatchesOracle(graph, 0);
+    }
+
+    @Test
+    public void randomGraphs() {
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            int n = 1 + random.nextInt(20);
+            assertMatchesOracle(randomGraph(random, n, random.nextDouble() * 3.0d / n), random.nextInt(n));
+        }
+    }
+
+    private static final class Loop {
+        final BitSet members;
+        final int header;
+        final BitSet parentMembers;
+        final boolean irreducible;
+
+        Loop(BitSet members, int header, BitSet parentMembers, boolean irreducible) {
+            this.members = members;
+            this.header = header;
+            this.parentMembers = parentMembers;
+            this.irreducible = irreducible;
+        }
+    }
+
+    /**
+     * Compares the forest with loops found by recursively splitting regions into components of mutually
+     * reachable nodes and removing the headers.
+     */
+    private static void assertMatchesOracle(CsrGraph graph, int entry) {
+        int[] preOrder = new int[graph.nodeCount()];
+        Arrays.fill(preOrder, -1);
+        numberPreOrder(graph, entry, preOrder, new int[]{0});
+
+        List<Loop> expected = new ArrayList<>();
+        naiveLoops(graph, entry, preOrder, allNodes(graph), null, expected);
+
+        LoopNestingForest forest = LoopNestingForest.of(graph, entry);
+        assertEquals("loop count", expected.size(), forest.loopCount());
+
+        Map<BitSet, Integer> loopOfMembers = new HashMap<>();
+        BitSet[] members = new BitSet[forest.loopCount()];
+        for (int loop = 0; loop < forest.loopCount(); loop++) {
+            members[loop] = new BitSet();
+        }
+        for (int v = 0; v < graph.nodeCount(); v++) {
+            int depth = 0;
+            for (int loop = forest.loopOf(v); loop >= 0; loop = forest.parentOf(loop)) {
+                members[loop].set(v);
+                depth++;
+            }
+            assertEquals("depth of " + v, depth, forest.depthOf(v));
+        }
+        for (int loop = 0; loop < forest.loopCount(); loop++) {
+            loopOfMembers.put(members[loop], loop);
+        }
+
+        for (Loop loop : expected) {
+            Integer actual = loopOfMembers.get(loop.members);
+            assertTrue("loop " + loop.members, actual != null);
+            assertEquals("header of " + loop.members, loop.header, forest.headerOf(actual));
+            assertEquals("irreducibility of " + loop.members, loop.irreducible, forest.isIrreducible(actual));
+            int parent = forest.parentOf(actual);
+            assertEquals("parent of " + loop.members, loop.parentMembers, parent < 0 ? null : members[parent]);
+        }
+    }
+
+    private static void naiveLoops(CsrGraph graph, int entry, int[] preOrder, BitSet region, BitSet parent,
+                                   List<Loop> loops) {
+        BitSet remaining = (BitSet) region.clone();
+        for (int v = remaining.nextSetBit(0); v >= 0; v = remaining.nextSetBit(v + 1)) {
+            BitSet component = new BitSet();
+            BitSet reach = reachable(graph, v, region, false);
+            for (int w = reach.nextSetBit(0); w >= 0; w = reach.nextSetBit(w + 1)) {
+                if (reachable(graph, w, region, false).get(v)) {
+                    component.set(w);
+                }
+            }
+            remaining.andNot(component);
+            if (component.isEmpty()) {
+                // v is in no cycle of the region
+                continue;
+            }
+
+            int header = -1;
+            int entries = 0;
+            for (int w = component.nextSetBit(0); w >= 0; w = component.nextSetBit(w + 1)) {
+                boolean isEntered = w == entry;
+                for (int e = graph.predecessorsStart(w); e < graph.predecessorsEnd(w); e++) {
+                    isEntered |= !component.get(graph.predecessorAt(e));
+                }
+                if (isEntered) {
+                    entries++;
+                    if (header < 0 || isBefore(w, header, preOrder)) {
+                        header = w;
+                    }
+                }
+            }
+            if (header < 0) {
+                for (int w = component.nextSetBit(0); w >= 0; w = component.nextSetBit(w + 1)) {
+                    if (header < 0 || isBefore(w, header, preOrder)) {
+                        header = w;
+                    }
+                }
+            }
+
+            loops.add(new Loop(component, header, parent, entries > 1));
+            BitSet nested = (BitSet) component.clone();
+            nested.clear(header);
+            naiveLoops(graph, entry, preOrder, nested, component, loops);
+        }
+    }
+
+    // nodes in preorder first, then unreachable nodes by index
+    private static boolean isBefore(int a, int b, int[] preOrder) {
+        if (preOrder[a] >= 0 && preOrder[b] >= 0) {
+            return preOrder[a] < preOrder[b];
+        }
+        return preOrder[a] >= 0 || (preOrder[b] < 0 && a < b);
+    }
+
+    private static void numberPreOrder(CsrGraph graph, int v, int[] preOrder, int[] count) {
+        preOrder[v] = count[0]++;
+        for (int e = graph.successorsStart(v); e < graph.successorsEnd(v); e++) {
+            if (preOrder[graph.successorAt(e)] < 0) {
+                numberPreOrder(graph, graph.successorAt(e), preOrder, count);
+            }
+        }
+    }
+}
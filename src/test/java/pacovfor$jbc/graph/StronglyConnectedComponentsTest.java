@@ -0,0 +1,91 @@
+package pacovfor$jbc.graph;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static pacovfor$jbc.graph.Graphs.allNodes;
+import static pacovfor$jbc.graph.Graphs.graph;
+import static pacovfor$jbc.graph.Graphs.randomGraph;
+import static pacovfor$jbc.graph.Graphs.reachable;
+
+public class StronglyConnectedComponentsTest {
+
+    @Test
+    public void cyclesAndSelfLoop() {
+        // 0 -> 1 <-> 2 -> 3 (self-loop) -> 4
+        CsrGraph graph = graph(5, 0, 1, 1, 2, 2, 1, 2, 3, 3, 3, 3, 4);
+        StronglyConnectedComponents components = StronglyConnectedComponents.of(graph);
+        assertEquals(4, components.componentCount());
+        assertEquals(components.componentOf(1), components.componentOf(2));
+        assertEquals(2, components.componentSize(components.componentOf(1)));
+        assertMatchesOracle(graph);
+    }
+
+    @Test
+    public void unreachableNodes() {
+        // components of nodes that no other node reaches are still found
+        CsrGraph graph = graph(6, 0, 1, 2, 3, 3, 2, 4, 0);
+        assertEquals(5, StronglyConnectedComponents.of(graph).componentCount());
+        assertMatchesOracle(graph);
+    }
+
+    @Test
+    public void longCycle() {
+        int n = 100_000;
+        int[] edges = new int[2 * n];
+        for (int v = 0; v < n; v++) {
+            edges[2 * v] = v;
+            edges[2 * v + 1] = (v + 1) % n;
+        }
+        StronglyConnectedComponents components = StronglyConnectedComponents.of(graph(n, edges));
+        assertEquals(1, components.componentCount());
+        assertEquals(n, components.membersOf(0).length);
+    }
+
+    @Test
+    public void randomGraphs() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            int n = 1 + random.nextInt(25);
+            assertMatchesOracle(randomGraph(random, n, random.nextDouble() * 3.0d / n));
+        }
+    }
+
+    /**
+     * Two nodes are in the same component iff they reach each other, and the components are in reverse
+     * topological order.
+     */
+    private static void assertMatchesOracle(CsrGraph graph) {
+        int n = graph.nodeCount();
+        StronglyConnectedComponents components = StronglyConnectedComponents.of(graph);
+        BitSet[] reach = new BitSet[n];
+        for (int v = 0; v < n; v++) {
+            reach[v] = reachable(graph, v, allNodes(graph), true);
+        }
+
+        for (int v = 0; v < n; v++) {
+            for (int w = 0; w < n; w++) {
+                boolean strong = reach[v].get(w) && reach[w].get(v);
+                assertEquals(v + " and " + w, strong, components.componentOf(v) == components.componentOf(w));
+            }
+            for (int e = graph.successorsStart(v); e < graph.successorsEnd(v); e++) {
+                int w = graph.successorAt(e);
+                assertTrue("edge " + v + " -> " + w, components.componentOf(w) <= components.componentOf(v));
+            }
+        }
+
+        int members = 0;
+        for (int c = 0; c < components.componentCount(); c++) {
+            assertEquals(components.componentSize(c), components.membersOf(c).length);
+            for (int v : components.membersOf(c)) {
+                assertEquals(c, components.componentOf(v));
+            }
+            members += components.componentSize(c);
+        }
+        assertEquals(n, members);
+    }
+}